@@ -17,8 +17,6 @@
  */
 package org.wso2.analytics.apim.idp.client;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.gson.Gson;
 import feign.Response;
 import feign.gson.GsonDecoder;
@@ -30,8 +28,10 @@ import org.wso2.analytics.apim.idp.client.dto.CustomUrlInfoDevPortalDTO;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientInfo;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientResponse;
 import org.wso2.analytics.apim.idp.client.dto.DCRError;
+import org.wso2.analytics.apim.idp.client.token.IntrospectedToken;
 import org.wso2.analytics.apim.idp.client.token.TokenData;
 import org.wso2.analytics.apim.idp.client.token.TokenDataHolder;
+import org.wso2.analytics.apim.idp.client.token.TokenIntrospectionCache;
 import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
 import org.wso2.carbon.analytics.idp.client.core.models.Role;
@@ -42,7 +42,6 @@ import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2IntrospectionResp
 import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2TokenInfo;
 import org.wso2.carbon.analytics.idp.client.external.impl.DCRMServiceStub;
 import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
-import org.wso2.carbon.analytics.idp.client.external.models.ExternalSession;
 import org.wso2.carbon.analytics.idp.client.external.models.OAuthApplicationInfo;
 
 import java.io.IOException;
@@ -50,7 +49,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.ANY_TENANT_DOMAIN_SCOPE_POSTFIX;
 import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.API_VIEW_SCOPE;
@@ -88,7 +86,7 @@ public class ApimIdPClient extends ExternalIdPClient {
     private String adminScopeName;
     private String allScopes;
     private OAuthAppDAO oAuthAppDAO;
-    private Cache<String, ExternalSession> tokenCache;
+    private TokenIntrospectionCache tokenCache;
     private boolean isSSOEnabled;
     private String ssoLogoutURL;
     private boolean isHostnameVerifierEnabled;
@@ -99,7 +97,8 @@ public class ApimIdPClient extends ExternalIdPClient {
 
     public ApimIdPClient(String adminServiceUsername, String baseUrl, OAuthAppDAO oAuthAppDAO, String authorizeEndpoint,
                          String grantType, String adminScopeName, String allScopes,
-                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout, String kmUserName,
+                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout,
+                         int cacheRefreshAheadTime, int negativeCacheTimeout, String kmUserName,
                          DCRMServiceStub dcrmServiceStub, OAuth2ServiceStubs oAuth2ServiceStubs,
                          boolean isSSOEnabled, String ssoLogoutURL, boolean isHostnameVerifierEnabled,
                          ApimAdminApiClient apimAdminApiClient, String portalAppContext, String brAppContext) {
@@ -117,9 +116,9 @@ public class ApimIdPClient extends ExternalIdPClient {
         this.oAuthAppDAO = oAuthAppDAO;
         this.dcrmServiceStub = dcrmServiceStub;
         this.oAuth2ServiceStubs = oAuth2ServiceStubs;
-        this.tokenCache = CacheBuilder.newBuilder()
-                .expireAfterWrite(cacheTimeout, TimeUnit.SECONDS)
-                .build();
+        this.tokenCache = new TokenIntrospectionCache(cacheTimeout, cacheRefreshAheadTime, negativeCacheTimeout,
+                this::introspect);
+        this.tokenCache.registerMBean();
         this.isSSOEnabled = isSSOEnabled;
         this.ssoLogoutURL = ssoLogoutURL;
         this.isHostnameVerifierEnabled = isHostnameVerifierEnabled;
@@ -382,8 +381,8 @@ public class ApimIdPClient extends ExternalIdPClient {
                         tokenValidityPeriod
                 );
                 TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
-                tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                        new ExternalSession(username, oAuth2TokenInfo.getAccessToken()));
+                tokenCache.put(oAuth2TokenInfo.getAccessToken(), username, oAuth2TokenInfo.getScope(),
+                        tokenValidityPeriod);
                 return returnProperties;
             } catch (IOException e) {
                 throw new IdPClientException("Error occurred while parsing token response for user. Response: '" +
@@ -412,9 +411,9 @@ public class ApimIdPClient extends ExternalIdPClient {
         if (!this.oAuthAppInfoMap.containsKey(oAuthAppContext)) {
             oAuthAppContext = ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT;
         }
-        ExternalSession session = tokenCache.getIfPresent(token);
+        IntrospectedToken introspectedToken = tokenCache.getIfPresent(token);
         String username;
-        if (session == null) {
+        if (introspectedToken == null || !introspectedToken.isActive()) {
             try {
                 OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
                 username = introspectResponse.getUsername();
@@ -422,7 +421,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 throw new IdPClientException("Error occurred while introspecting the token '" + token + "'.", e);
             }
         } else {
-            username = session.getUserName();
+            username = introspectedToken.getUsername();
         }
         TokenDataHolder.getInstance().removeTokenDataFromMap(username);
         tokenCache.invalidate(token);
@@ -530,8 +529,8 @@ public class ApimIdPClient extends ExternalIdPClient {
                     }
                 }
                 if (authUser != null) {
-                    tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                            new ExternalSession(authUser, oAuth2TokenInfo.getAccessToken()));
+                    tokenCache.put(oAuth2TokenInfo.getAccessToken(), authUser, oAuth2TokenInfo.getScope(),
+                            tokenValidityPeriod);
                     TokenData tokenData = new TokenData(
                             oAuth2TokenInfo.getAccessToken(),
                             oAuth2TokenInfo.getScope(),
@@ -557,18 +556,44 @@ public class ApimIdPClient extends ExternalIdPClient {
         }
     }
 
+    /**
+     * Stops the background refresh of the token introspection cache.
+     */
+    public void shutdown() {
+        tokenCache.shutdown();
+    }
+
     @Override
     public String authenticate(String token) throws AuthenticationException, IdPClientException {
-        ExternalSession session = tokenCache.getIfPresent(token);
-        if (session != null) {
-            return session.getUserName();
+        IntrospectedToken introspectedToken = tokenCache.get(token);
+        if (!introspectedToken.isActive()) {
+            throw new AuthenticationException("The token is not active.");
+        }
+        return introspectedToken.getUsername();
+    }
+
+    /**
+     * Introspects a token for the token cache. The token data of the user is updated when the token is active, and
+     * the result of an inactive token is cached briefly, so that the requests with the token are not introspected
+     * again and again.
+     * @param token  token which needs to be introspected
+     * @param currentTime time in milliseconds at which the introspection started
+     * @throws IdPClientException thrown when an error occurred when performing introspect
+     * @return the introspected token
+     */
+    private IntrospectedToken introspect(String token, long currentTime) throws IdPClientException {
+        OAuth2IntrospectionResponse introspectResponse = introspectToken(token);
+        if (!introspectResponse.isActive()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("The token is not active. Response: " + introspectResponse.toString());
+            }
+            return new IntrospectedToken(null, null, false, tokenCache.getNegativeExpiryTime(currentTime));
         }
-        OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
         String username = introspectResponse.getUsername();
-        tokenCache.put(token, new ExternalSession(username, token));
         TokenData tokenData = new TokenData(token, introspectResponse.getScope(), introspectResponse.getExp());
         TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
-        return username;
+        return new IntrospectedToken(username, introspectResponse.getScope(), true,
+                tokenCache.getExpiryTime(currentTime, introspectResponse.getExp()));
     }
 
     /**
@@ -580,6 +605,25 @@ public class ApimIdPClient extends ExternalIdPClient {
      */
     private OAuth2IntrospectionResponse getIntrospectResponse(String token) throws IdPClientException,
             AuthenticationException {
+        OAuth2IntrospectionResponse introspectResponse = introspectToken(token);
+        if (introspectResponse.isActive()) {
+            return introspectResponse;
+        } else {
+            String error = "The token is not active.";
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(error + " Response: " + introspectResponse.toString());
+            }
+            throw new AuthenticationException(error);
+        }
+    }
+
+    /**
+     * This method returns response got from the introspection, whether the token is active or not.
+     * @param token  token which needs to be introspected
+     * @throws IdPClientException thrown when an error occurred when performing introspect
+     * @return the introspect response
+     */
+    private OAuth2IntrospectionResponse introspectToken(String token) throws IdPClientException {
         Response response = oAuth2ServiceStubs.getIntrospectionServiceStub().introspectAccessToken(token);
 
         if (response == null) {
@@ -589,17 +633,8 @@ public class ApimIdPClient extends ExternalIdPClient {
         try {
             int responseStatus = response.status();
             if (responseStatus == 200) {  //200 - OK
-                OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) new GsonDecoder()
+                return (OAuth2IntrospectionResponse) new GsonDecoder()
                         .decode(response, OAuth2IntrospectionResponse.class);
-                if (introspectResponse.isActive()) {
-                    return introspectResponse;
-                } else {
-                    String error = "The token is not active.";
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug(error + " Response: " + introspectResponse.toString());
-                    }
-                    throw new AuthenticationException(error);
-                }
             } else if (responseStatus == 400) {  //400 - Known Error
                 try {
                     DCRError error = (DCRError) new GsonDecoder().decode(response, DCRError.class);
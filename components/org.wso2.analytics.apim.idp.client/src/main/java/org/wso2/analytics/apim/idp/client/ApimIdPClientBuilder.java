@@ -38,6 +38,8 @@ public class ApimIdPClientBuilder {
     private String allScopes;
     private Map<String, OAuthApplicationInfo> oAuthAppInfoMap;
     private int cacheTimeout;
+    private int cacheRefreshAheadTime;
+    private int negativeCacheTimeout;
     private String kmUserName;
     private DCRMServiceStub dcrmServiceStub;
     private OAuth2ServiceStubs oAuth2ServiceStubs;
@@ -102,6 +104,18 @@ public class ApimIdPClientBuilder {
         return this;
     }
 
+    public ApimIdPClientBuilder setCacheRefreshAheadTime(int cacheRefreshAheadTime) {
+
+        this.cacheRefreshAheadTime = cacheRefreshAheadTime;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setNegativeCacheTimeout(int negativeCacheTimeout) {
+
+        this.negativeCacheTimeout = negativeCacheTimeout;
+        return this;
+    }
+
     public ApimIdPClientBuilder setKmUserName(String kmUserName) {
 
         this.kmUserName = kmUserName;
@@ -159,9 +173,9 @@ public class ApimIdPClientBuilder {
     public ApimIdPClient createApimIdPClient() {
 
         return new ApimIdPClient(adminServiceUsername, baseUrl, oAuthAppDAO, authorizeEndpoint, grantType,
-                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, kmUserName, dcrmServiceStub,
-                oAuth2ServiceStubs, isSSOEnabled, ssoLogoutURL, isHostnameVerifierEnabled, apimAdminApiClient,
-                portalAppContext, brAppContext);
+                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, cacheRefreshAheadTime, negativeCacheTimeout,
+                kmUserName, dcrmServiceStub, oAuth2ServiceStubs, isSSOEnabled, ssoLogoutURL, isHostnameVerifierEnabled,
+                apimAdminApiClient, portalAppContext, brAppContext);
     }
 
 
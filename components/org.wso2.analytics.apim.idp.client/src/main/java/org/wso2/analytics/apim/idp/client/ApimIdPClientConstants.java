@@ -45,6 +45,8 @@ public class ApimIdPClientConstants {
     public static final String PORTAL_CLIENT_SECRET = "portalClientSecret";
     public static final String BR_DB_CLIENT_SECRET = "businessRulesClientSecret";
     public static final String CACHE_TIMEOUT = "cacheTimeout";
+    public static final String CACHE_REFRESH_AHEAD_TIME = "cacheRefreshAheadTime";
+    public static final String NEGATIVE_CACHE_TIMEOUT = "negativeCacheTimeout";
     public static final String DATABASE_NAME = "databaseName";
     public static final String DCR_APP_OWNER = "dcrAppOwner";
     public static final String CONNECTION_TIMEOUT = "connectionTimeout";
@@ -68,6 +70,8 @@ public class ApimIdPClientConstants {
     public static final String DEFAULT_PORTAL_APP_CONTEXT = "analytics-dashboard";
     public static final String DEFAULT_BR_DB_APP_CONTEXT = "business-rules";
     public static final String DEFAULT_CACHE_TIMEOUT = "30";
+    public static final String DEFAULT_CACHE_REFRESH_AHEAD_TIME = "5";
+    public static final String DEFAULT_NEGATIVE_CACHE_TIMEOUT = "5";
     public static final String DEFAULT_DATABASE_NAME = "AM_DB";
     public static final String DEFAULT_CONNECTION_TIMEOUT = "10000";
     public static final String DEFAULT_READ_TIMEOUT = "60000";
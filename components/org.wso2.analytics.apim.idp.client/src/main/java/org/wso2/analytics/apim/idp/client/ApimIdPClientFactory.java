@@ -45,7 +45,9 @@ import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
 import org.wso2.carbon.utils.StringUtils;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Factory for APIM IdPClient.
@@ -61,6 +63,7 @@ public class ApimIdPClientFactory implements IdPClientFactory {
     private AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService;
     private static final String CUSTOM_URL_API_ENDPOINT = "/api/am/admin/v1/custom-urls";
     private TokenDataMapCleaner tokenDataMapCleaner;
+    private final List<ApimIdPClient> idPClients = new CopyOnWriteArrayList<>();
 
     private boolean isSSLConfigsExistInConfigProvider = false;
     private String keyStorePassword;
@@ -96,6 +99,12 @@ public class ApimIdPClientFactory implements IdPClientFactory {
 
         // Stop tokenData map cleaner.
         this.tokenDataMapCleaner.stopTokenDataMapCleaner();
+
+        // Stop the token cache refresh of the created clients.
+        for (ApimIdPClient idPClient : idPClients) {
+            idPClient.shutdown();
+        }
+        idPClients.clear();
     }
 
     /**
@@ -238,7 +247,7 @@ public class ApimIdPClientFactory implements IdPClientFactory {
         oAuthAppInfoMap.put(portalAppContext, portalOAuthApp);
         oAuthAppInfoMap.put(businessAppContext, businessOAuthApp);
 
-        int cacheTimeout, connectionTimeout, readTimeout;
+        int cacheTimeout, cacheRefreshAheadTime, negativeCacheTimeout, connectionTimeout, readTimeout;
         try {
             cacheTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CACHE_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CACHE_TIMEOUT));
@@ -246,6 +255,22 @@ public class ApimIdPClientFactory implements IdPClientFactory {
             throw new IdPClientException("Cache timeout overriding property '" +
                     properties.get(ApimIdPClientConstants.CACHE_TIMEOUT) + "' is invalid.", e);
         }
+        try {
+            cacheRefreshAheadTime = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.CACHE_REFRESH_AHEAD_TIME,
+                    ApimIdPClientConstants.DEFAULT_CACHE_REFRESH_AHEAD_TIME));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Cache refresh ahead time overriding property '" +
+                    properties.get(ApimIdPClientConstants.CACHE_REFRESH_AHEAD_TIME) + "' is invalid.", e);
+        }
+        try {
+            negativeCacheTimeout = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.NEGATIVE_CACHE_TIMEOUT,
+                    ApimIdPClientConstants.DEFAULT_NEGATIVE_CACHE_TIMEOUT));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Negative cache timeout overriding property '" +
+                    properties.get(ApimIdPClientConstants.NEGATIVE_CACHE_TIMEOUT) + "' is invalid.", e);
+        }
         try {
             connectionTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CONNECTION_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CONNECTION_TIMEOUT));
@@ -282,7 +307,7 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                         adminServicePassword);
 
         // Using builder pattern to create ApimIdpClient object.
-        return new ApimIdPClientBuilder()
+        ApimIdPClient idPClient = new ApimIdPClientBuilder()
                 .setAdminServiceUsername(adminServiceUsername)
                 .setBaseUrl(baseUrl).setoAuthAppDAO(oAuthAppDAO)
                 .setAuthorizeEndpoint(kmTokenUrlForRedirectUrl + ApimIdPClientConstants.AUTHORIZE_POSTFIX)
@@ -291,6 +316,8 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setAllScopes(allScopes)
                 .setoAuthAppInfoMap(oAuthAppInfoMap)
                 .setCacheTimeout(cacheTimeout)
+                .setCacheRefreshAheadTime(cacheRefreshAheadTime)
+                .setNegativeCacheTimeout(negativeCacheTimeout)
                 .setKmUserName(dcrAppOwner)
                 .setDcrmServiceStub(dcrmServiceStub)
                 .setoAuth2ServiceStubs(keyManagerServiceStubs)
@@ -301,5 +328,7 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setPortalAppContext(portalAppContext)
                 .setBrAppContext(businessAppContext)
                 .createApimIdPClient();
+        idPClients.add(idPClient);
+        return idPClient;
     }
 }
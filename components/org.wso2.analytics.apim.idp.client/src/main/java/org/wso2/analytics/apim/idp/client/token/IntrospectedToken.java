@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.idp.client.token;
+
+/**
+ * Result of the introspection of an access token, as cached by the {@link TokenIntrospectionCache}.
+ */
+public class IntrospectedToken {
+
+    private final String username;
+    private final String scopes;
+    private final boolean active;
+    private final long expiryTime;
+
+    /**
+     * @param username   name of the user of the token, or null if the token is not active
+     * @param scopes     scopes of the token, or null if the token is not active
+     * @param active     whether the token is active
+     * @param expiryTime time in milliseconds until which the result is cached
+     */
+    public IntrospectedToken(String username, String scopes, boolean active, long expiryTime) {
+        this.username = username;
+        this.scopes = scopes;
+        this.active = active;
+        this.expiryTime = expiryTime;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getScopes() {
+        return scopes;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    boolean isExpired(long currentTime) {
+        return currentTime >= expiryTime;
+    }
+}
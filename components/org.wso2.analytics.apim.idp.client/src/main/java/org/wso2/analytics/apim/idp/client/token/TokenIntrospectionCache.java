@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.idp.client.token;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cache of the introspection results of the access tokens. A token missing in the cache is introspected once,
+ * however many requests of the token arrive while it is introspected, and the cached result of an active token is
+ * refreshed in the background once it is older than the refresh time, so that the requests of a token in use keep
+ * being served from the cache. The result of an active token is cached until its expiry time or the cache timeout,
+ * whichever is earlier, and that of an inactive token for the negative cache timeout.
+ */
+public class TokenIntrospectionCache implements TokenIntrospectionCacheMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenIntrospectionCache.class);
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim.idp.client:type=TokenIntrospectionCache";
+    private static final long REFRESH_THREAD_KEEP_ALIVE_TIME = 60;
+
+    private final LoadingCache<String, IntrospectedToken> cache;
+    private final Introspector introspector;
+    private final ExecutorService refreshExecutor;
+    private final long cacheTimeout;
+    private final long negativeCacheTimeout;
+    private final AtomicInteger inFlightLoadCount = new AtomicInteger();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong inactiveHitCount = new AtomicLong();
+
+    /**
+     * Introspects an access token with the key manager.
+     */
+    public interface Introspector {
+
+        /**
+         * @param token access token
+         * @param currentTime time in milliseconds at which the introspection started
+         * @return introspection result of the token
+         * @throws IdPClientException if the token could not be introspected
+         */
+        IntrospectedToken introspect(String token, long currentTime) throws IdPClientException;
+    }
+
+    /**
+     * @param cacheTimeout         maximum time in seconds the result of an active token is cached
+     * @param refreshAheadTime     time in seconds before the cache timeout from which the result of an active token
+     *                             is refreshed when it is requested
+     * @param negativeCacheTimeout time in seconds the result of an inactive token is cached
+     * @param introspector         introspector of the tokens
+     */
+    public TokenIntrospectionCache(int cacheTimeout, int refreshAheadTime, int negativeCacheTimeout,
+                                   Introspector introspector) {
+        this.introspector = introspector;
+        this.cacheTimeout = TimeUnit.SECONDS.toMillis(cacheTimeout);
+        this.negativeCacheTimeout = TimeUnit.SECONDS.toMillis(negativeCacheTimeout);
+        ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(1, 1, REFRESH_THREAD_KEEP_ALIVE_TIME,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "apim-idp-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.allowCoreThreadTimeOut(true);
+        this.refreshExecutor = refreshExecutor;
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheTimeout, TimeUnit.SECONDS)
+                .recordStats();
+        if (refreshAheadTime > 0 && refreshAheadTime < cacheTimeout) {
+            cacheBuilder.refreshAfterWrite(cacheTimeout - refreshAheadTime, TimeUnit.SECONDS);
+        }
+        this.cache = cacheBuilder.build(new CacheLoader<String, IntrospectedToken>() {
+            @Override
+            public IntrospectedToken load(String token) throws IdPClientException {
+                return introspect(token);
+            }
+
+            @Override
+            public ListenableFuture<IntrospectedToken> reload(String token, IntrospectedToken oldValue) {
+                ListenableFutureTask<IntrospectedToken> task = ListenableFutureTask.create(() -> {
+                    refreshCount.incrementAndGet();
+                    return introspect(token);
+                });
+                try {
+                    refreshExecutor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // the cache is shut down
+                    task.run();
+                }
+                return task;
+            }
+        });
+    }
+
+    /**
+     * Returns the introspection result of a token, introspecting it if it is not cached or its cached result is
+     * expired.
+     *
+     * @param token access token
+     * @return introspection result of the token
+     * @throws IdPClientException if the token could not be introspected
+     */
+    public IntrospectedToken get(String token) throws IdPClientException {
+        try {
+            IntrospectedToken introspectedToken = cache.get(token);
+            if (introspectedToken.isExpired(System.currentTimeMillis())) {
+                // only the expired result is removed, in case another request has already replaced it
+                cache.asMap().remove(token, introspectedToken);
+                introspectedToken = cache.get(token);
+                long currentTime = System.currentTimeMillis();
+                if (introspectedToken.isActive() && introspectedToken.isExpired(currentTime)) {
+                    // the key manager reports an expiry time in the past, as its clock is ahead of ours
+                    IntrospectedToken expiredToken = introspectedToken;
+                    introspectedToken = new IntrospectedToken(null, null, false, getNegativeExpiryTime(currentTime));
+                    cache.asMap().replace(token, expiredToken, introspectedToken);
+                }
+            }
+            if (!introspectedToken.isActive()) {
+                inactiveHitCount.incrementAndGet();
+            }
+            return introspectedToken;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IdPClientException) {
+                throw (IdPClientException) e.getCause();
+            }
+            throw new IdPClientException("Error occurred while introspecting the token '" + token + "'.",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Returns the cached introspection result of a token, without introspecting it.
+     *
+     * @param token access token
+     * @return introspection result of the token, or null if it is not cached or expired
+     */
+    public IntrospectedToken getIfPresent(String token) {
+        IntrospectedToken introspectedToken = cache.getIfPresent(token);
+        if (introspectedToken == null || introspectedToken.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return introspectedToken;
+    }
+
+    /**
+     * Caches an active token issued to a user, for which no introspection is needed.
+     *
+     * @param token    access token
+     * @param username name of the user
+     * @param scopes   scopes of the token
+     * @param expiry   expiry time of the token in seconds since the epoch
+     */
+    public void put(String token, String username, String scopes, long expiry) {
+        cache.put(token, new IntrospectedToken(username, scopes, true,
+                getExpiryTime(System.currentTimeMillis(), expiry)));
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(token);
+    }
+
+    /**
+     * Returns the time until which the result of an active token is cached.
+     *
+     * @param currentTime time in milliseconds
+     * @param expiry      expiry time of the token in seconds since the epoch, or 0 if it is not known
+     * @return time in milliseconds
+     */
+    public long getExpiryTime(long currentTime, long expiry) {
+        long expiryTime = currentTime + cacheTimeout;
+        if (expiry > 0) {
+            expiryTime = Math.min(expiryTime, TimeUnit.SECONDS.toMillis(expiry));
+        }
+        return expiryTime;
+    }
+
+    /**
+     * Returns the time until which the result of an inactive token is cached.
+     *
+     * @param currentTime time in milliseconds
+     * @return time in milliseconds
+     */
+    public long getNegativeExpiryTime(long currentTime) {
+        return currentTime + negativeCacheTimeout;
+    }
+
+    private IntrospectedToken introspect(String token) throws IdPClientException {
+        inFlightLoadCount.incrementAndGet();
+        try {
+            return introspector.introspect(token, System.currentTimeMillis());
+        } finally {
+            inFlightLoadCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the background refresh thread once the pending refreshes are done. The cached results are refreshed by
+     * the requesting threads afterwards.
+     */
+    public void shutdown() {
+        refreshExecutor.shutdown();
+    }
+
+    /**
+     * Registers the metrics of the cache in the platform MBean server, replacing those of an earlier cache.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            LOG.warn("Could not register the token introspection cache metrics MBean.", e);
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return cache.stats().loadCount();
+    }
+
+    @Override
+    public long getLoadExceptionCount() {
+        return cache.stats().loadExceptionCount();
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public double getAverageLoadTime() {
+        CacheStats stats = cache.stats();
+        return stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public int getInFlightLoadCount() {
+        return inFlightLoadCount.get();
+    }
+
+    @Override
+    public long getInactiveHitCount() {
+        return inactiveHitCount.get();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.idp.client.token;
+
+/**
+ * JMX view of the {@link TokenIntrospectionCache}. The counts are cumulative since the cache was created.
+ */
+public interface TokenIntrospectionCacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    /**
+     * Returns the number of introspections performed, including the refreshes ahead of expiry.
+     */
+    long getLoadCount();
+
+    long getLoadExceptionCount();
+
+    long getRefreshCount();
+
+    /**
+     * Returns the average time in milliseconds taken by an introspection.
+     */
+    double getAverageLoadTime();
+
+    /**
+     * Returns the number of introspections in progress.
+     */
+    int getInFlightLoadCount();
+
+    /**
+     * Returns the number of requests rejected from the cached results of inactive tokens.
+     */
+    long getInactiveHitCount();
+
+    long getSize();
+}
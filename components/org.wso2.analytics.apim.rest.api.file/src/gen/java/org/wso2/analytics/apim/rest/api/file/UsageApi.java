@@ -42,6 +42,8 @@ public class UsageApi implements Microservice  {
         })
     }, tags={  })
     @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "OK. File with the same content is already uploaded. ", response = void.class),
+        
         @io.swagger.annotations.ApiResponse(code = 201, message = "Created. File uploaded successfully. ", response = void.class),
         
         @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class),
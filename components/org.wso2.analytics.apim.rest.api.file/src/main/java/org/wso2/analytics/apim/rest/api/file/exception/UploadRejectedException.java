@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.rest.api.file.exception;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Thrown when an uploaded usage file is rejected because of the upload limits.
+ */
+public class UploadRejectedException extends Exception {
+
+    private final Response.Status status;
+
+    public UploadRejectedException(String message, Response.Status status) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Returns the status to respond with.
+     *
+     * @return HTTP status of the rejection
+     */
+    public Response.Status getStatus() {
+        return status;
+    }
+}
@@ -19,17 +19,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.rest.api.file.NotFoundException;
 import org.wso2.analytics.apim.rest.api.file.UsageApiService;
+import org.wso2.analytics.apim.rest.api.file.exception.UploadRejectedException;
 import org.wso2.analytics.apim.rest.api.file.internal.ServiceHolder;
+import org.wso2.analytics.apim.rest.api.file.util.AdminRoleCache;
+import org.wso2.analytics.apim.rest.api.file.util.UploadDigestIndex;
 import org.wso2.analytics.apim.rest.api.file.util.UploadServiceConstants;
+import org.wso2.analytics.apim.rest.api.file.util.UsageFileSpool;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
 import org.wso2.carbon.analytics.idp.client.core.models.Role;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.formparam.FileInfo;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Base64;
@@ -59,7 +65,7 @@ public class UsageApiServiceImpl extends UsageApiService {
                 return Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build();
             }
             String userName = extractUsernameFromAuthHeader(authorization);
-            boolean isAdmin = isUserAdmin(userName);
+            boolean isAdmin = isUserAdmin(userName, authorization.get(0));
             if (!isAdmin) {
                 String errorMessage = "Authenticated user does not have admin role.\n";
                 log.error(errorMessage);
@@ -75,13 +81,74 @@ public class UsageApiServiceImpl extends UsageApiService {
                         .build();
             }
 
-            //Add the uploaded file into the database
-            long timeStamp = Long.parseLong(uploadedFileName.split("\\.")[2]);
-            MGWFileInfoDTO dto = new MGWFileInfoDTO(uploadedFileName, timeStamp);
-            MGWFileSourceDAO.persistUploadedFile(dto, analyticsInputStream);
+            //Stage the uploaded file on disk, so that a database connection is not held during the transfer
+            UsageFileSpool spool = UsageFileSpool.getInstance();
+            if (!spool.tryAcquireUpload()) {
+                String errorMessage = "Too many API Usage files are being uploaded. Please retry later.\n";
+                log.warn(errorMessage);
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(errorMessage).build();
+            }
+            try (UsageFileSpool.SpooledFile spooledFile = spool.spool(analyticsInputStream)) {
+                if (!spooledFile.isUsageArchive()) {
+                    String errorMessage = "Uploaded file is not a complete zip archive of "
+                            + MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME + " or "
+                            + MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME + ".\n";
+                    log.error(errorMessage + " File : " + uploadedFileName);
+                    return Response.status(Response.Status.BAD_REQUEST).entity(errorMessage).build();
+                }
+                //Retried uploads are detected by the digest of their content, which is computed while spooling
+                String digest = spooledFile.getDigest();
+                UploadDigestIndex digestIndex = UploadDigestIndex.getInstance();
+                UploadDigestIndex.State state = digestIndex.reserve(digest);
+                if (state == UploadDigestIndex.State.IN_PROGRESS) {
+                    String errorMessage = "Same API Usage file is being uploaded. Please retry later.\n";
+                    log.warn(errorMessage + " File : " + uploadedFileName);
+                    return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(errorMessage).build();
+                }
+                if (state == UploadDigestIndex.State.UPLOADED) {
+                    return duplicateUploadResponse(uploadedFileName);
+                }
+                boolean persisted = false;
+                try {
+                    if (MGWFileSourceDAO.isContentUploaded(digest)) {
+                        persisted = true;
+                        return duplicateUploadResponse(uploadedFileName);
+                    }
+                    //Add the uploaded file into the database
+                    long timeStamp = Long.parseLong(uploadedFileName.split("\\.")[2]);
+                    MGWFileInfoDTO dto = new MGWFileInfoDTO(uploadedFileName, timeStamp);
+                    dto.setContentDigest(digest);
+                    try {
+                        MGWFileSourceDAO.persistUploadedFile(dto, spooledFile.getPath());
+                    } catch (MGWFileSourceException e) {
+                        //The same file may have been persisted concurrently through another node
+                        if (!MGWFileSourceDAO.isContentUploaded(digest)) {
+                            throw e;
+                        }
+                        persisted = true;
+                        return duplicateUploadResponse(uploadedFileName);
+                    }
+                    persisted = true;
+                } finally {
+                    if (persisted) {
+                        digestIndex.markUploaded(digest);
+                    } else {
+                        digestIndex.release(digest);
+                    }
+                }
+            } finally {
+                spool.releaseUpload();
+            }
             log.info("Successfully uploaded the API Usage file [" + uploadedFileName + "]");
             return Response.status(Response.Status.CREATED).entity("File uploaded successfully.\n").build();
 
+        } catch (UploadRejectedException e) {
+            log.warn("Rejected API Usage file : " + uploadedFileName + ". " + e.getMessage());
+            return Response.status(e.getStatus()).entity(e.getMessage() + "\n").build();
+        } catch (IOException e) {
+            String msg = "Error occurred while receiving API Usage file : " + uploadedFileName;
+            log.error(msg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(msg).build();
         } catch (MGWFileSourceException e) {
             String msg = "Error occurred while uploading API Usage file : " + uploadedFileName;
             log.error(msg, e);
@@ -90,22 +157,44 @@ public class UsageApiServiceImpl extends UsageApiService {
     }
 
     /**
-     * This method will return a boolean on whether the user has admin role or not.
+     * Builds the response to an upload whose content is already uploaded. The upload is acknowledged as successful,
+     * so that the gateway does not retry it again.
+     * @param uploadedFileName name of the uploaded file
+     * @return
+     */
+    private Response duplicateUploadResponse(String uploadedFileName) {
+        log.info("API Usage file [" + uploadedFileName + "] is already uploaded. Ignoring the duplicate upload.");
+        return Response.status(Response.Status.OK).entity("File is already uploaded.\n").build();
+    }
+
+    /**
+     * This method will return a boolean on whether the user has admin role or not. The decision is cached against
+     * the credentials of the request.
      * @param userName username of the user who invoked the API
+     * @param credentials value of the Authorization header of the request
      * @return
      */
-    private boolean isUserAdmin(String userName) {
+    private boolean isUserAdmin(String userName, String credentials) {
+        AdminRoleCache adminRoleCache = AdminRoleCache.getInstance();
+        Boolean cachedDecision = adminRoleCache.get(credentials);
+        if (cachedDecision != null) {
+            return cachedDecision;
+        }
         IdPClient idPClient = ServiceHolder.getInstance().getIdPClient();
         try {
             String adminRole = idPClient.getAdminRole().getDisplayName();
             List<Role> userRoles = idPClient.getUserRoles(userName);
+            boolean isAdmin = false;
             for (Role role : userRoles) {
                 if (adminRole.equals(role.getDisplayName())) {
-                    return true;
+                    isAdmin = true;
+                    break;
                 }
             }
-            return false;
+            adminRoleCache.put(credentials, isAdmin);
+            return isAdmin;
         } catch (IdPClientException e) {
+            // the failure is not cached as it may be transient
             String msg = "User needs admin role to perform this operation";
             log.error(msg, e);
             return false;
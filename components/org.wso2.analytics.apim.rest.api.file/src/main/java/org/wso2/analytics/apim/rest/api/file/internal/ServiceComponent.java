@@ -22,6 +22,7 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.wso2.analytics.apim.rest.api.file.util.AdminRoleCache;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 
 /**
@@ -35,10 +36,12 @@ import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 public class ServiceComponent {
     @Activate
     protected void start(BundleContext bundleContext) {
+        AdminRoleCache.getInstance().registerMBean();
     }
 
     @Deactivate
     protected void stop() {
+        AdminRoleCache.getInstance().unregisterMBean();
     }
 
     @Reference(
@@ -50,9 +53,12 @@ public class ServiceComponent {
     )
     protected void registerIdP(IdPClient client) {
         ServiceHolder.getInstance().setIdPClient(client);
+        // the decisions of the previous identity provider are no longer valid
+        AdminRoleCache.getInstance().invalidateAll();
     }
 
     protected void unregisterIdP(IdPClient client) {
         ServiceHolder.getInstance().setIdPClient(null);
+        AdminRoleCache.getInstance().invalidateAll();
     }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.rest.api.file.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Bounded cache of the admin role decisions of the usage upload endpoint, keyed by a digest of the credentials of the
+ * request, so that the roles of a gateway are not fetched from the identity provider for every upload. Denied
+ * decisions are cached for a shorter time than granted ones, and failures to fetch the roles are not cached.
+ */
+public final class AdminRoleCache implements AdminRoleCacheMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminRoleCache.class);
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim:type=AdminRoleCache";
+    private static final AdminRoleCache instance = new AdminRoleCache();
+
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Decision> decisions;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private AdminRoleCache() {
+        this.ttl = Long.parseLong(getProperty(UploadServiceConstants.AUTH_CACHE_TTL_PROPERTY,
+                UploadServiceConstants.DEFAULT_AUTH_CACHE_TTL));
+        this.negativeTtl = Long.parseLong(getProperty(UploadServiceConstants.AUTH_CACHE_NEGATIVE_TTL_PROPERTY,
+                UploadServiceConstants.DEFAULT_AUTH_CACHE_NEGATIVE_TTL));
+        final int maxSize = Integer.parseInt(getProperty(UploadServiceConstants.AUTH_CACHE_SIZE_PROPERTY,
+                UploadServiceConstants.DEFAULT_AUTH_CACHE_SIZE));
+        this.decisions = new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Provide instance of AdminRoleCache class.
+     *
+     * @return Instance of AdminRoleCache
+     */
+    public static AdminRoleCache getInstance() {
+        return instance;
+    }
+
+    private static String getProperty(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            log.debug("Default value will be used for {}", name);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached decision for the given credentials.
+     *
+     * @param credentials value of the Authorization header of the request
+     * @return true if the user is an admin, false if not or null if there is no valid decision cached
+     */
+    public Boolean get(String credentials) {
+        String key = toKey(credentials);
+        Decision decision;
+        synchronized (decisions) {
+            decision = decisions.get(key);
+            if (decision != null && decision.expiryTime <= System.currentTimeMillis()) {
+                decisions.remove(key);
+                decision = null;
+            }
+        }
+        if (decision == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return decision.admin;
+    }
+
+    /**
+     * Caches the decision for the given credentials.
+     *
+     * @param credentials value of the Authorization header of the request
+     * @param admin       whether the user is an admin
+     */
+    public void put(String credentials, boolean admin) {
+        long expiryTime = System.currentTimeMillis() + (admin ? ttl : negativeTtl);
+        synchronized (decisions) {
+            decisions.put(toKey(credentials), new Decision(admin, expiryTime));
+        }
+    }
+
+    /**
+     * Removes the cached decision for the given credentials.
+     *
+     * @param credentials value of the Authorization header of the request
+     */
+    public void invalidate(String credentials) {
+        synchronized (decisions) {
+            decisions.remove(toKey(credentials));
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        synchronized (decisions) {
+            decisions.clear();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    /**
+     * Registers the cache in the platform MBean server.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the admin role cache MBean.", e);
+        }
+    }
+
+    /**
+     * Unregisters the cache from the platform MBean server.
+     */
+    public void unregisterMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not unregister the admin role cache MBean.", e);
+        }
+    }
+
+    /**
+     * The credentials are only kept as a digest in the cache.
+     */
+    private static String toKey(String credentials) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(credentials.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the platform", e);
+        }
+    }
+
+    private static final class Decision {
+
+        private final boolean admin;
+        private final long expiryTime;
+
+        private Decision(boolean admin, long expiryTime) {
+            this.admin = admin;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
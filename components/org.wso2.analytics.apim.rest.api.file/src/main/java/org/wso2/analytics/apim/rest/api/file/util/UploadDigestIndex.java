@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.rest.api.file.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded index of the content digests of the files recently uploaded to this node. It lets the upload endpoint
+ * answer retried uploads without querying the database, and detects a retry which arrives while the original upload
+ * is still being persisted.
+ */
+public final class UploadDigestIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadDigestIndex.class);
+    private static final UploadDigestIndex instance = new UploadDigestIndex();
+
+    /**
+     * State of an upload with a given content digest.
+     */
+    public enum State {
+        /** No upload with the digest is known, the upload is reserved by the caller. */
+        NEW,
+        /** An upload with the digest is being persisted. */
+        IN_PROGRESS,
+        /** An upload with the digest is persisted. */
+        UPLOADED
+    }
+
+    // value is true once the upload is persisted
+    private final Map<String, Boolean> digests;
+
+    private UploadDigestIndex() {
+        String value = System.getProperty(UploadServiceConstants.DIGEST_INDEX_SIZE_PROPERTY);
+        if (value == null || value.isEmpty()) {
+            log.debug("Default value will be used for {}", UploadServiceConstants.DIGEST_INDEX_SIZE_PROPERTY);
+            value = UploadServiceConstants.DEFAULT_DIGEST_INDEX_SIZE;
+        }
+        final int maxSize = Integer.parseInt(value);
+        this.digests = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Provide instance of UploadDigestIndex class.
+     *
+     * @return Instance of UploadDigestIndex
+     */
+    public static UploadDigestIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reserves the given digest for an upload, unless an upload with the same digest is already known. A reserved
+     * digest should be either marked as uploaded or released.
+     *
+     * @param digest content digest of the upload
+     * @return {@link State#NEW} if the digest is reserved, otherwise the state of the known upload
+     */
+    public synchronized State reserve(String digest) {
+        Boolean uploaded = digests.get(digest);
+        if (uploaded == null) {
+            digests.put(digest, Boolean.FALSE);
+            return State.NEW;
+        }
+        return uploaded ? State.UPLOADED : State.IN_PROGRESS;
+    }
+
+    /**
+     * Marks the upload with the given digest as persisted.
+     *
+     * @param digest content digest of the upload
+     */
+    public synchronized void markUploaded(String digest) {
+        digests.put(digest, Boolean.TRUE);
+    }
+
+    /**
+     * Releases a reserved digest whose upload could not be persisted, so that it can be retried.
+     *
+     * @param digest content digest of the upload
+     */
+    public synchronized void release(String digest) {
+        if (Boolean.FALSE.equals(digests.get(digest))) {
+            digests.remove(digest);
+        }
+    }
+}
@@ -29,4 +29,36 @@ public final class UploadServiceConstants {
 
     public static final String FILE_NAME_HEADER = "FileName";
 
+    public static final String SPOOL_DIRECTORY_PROPERTY = "usage.upload.spool.directory";
+
+    public static final String DEFAULT_SPOOL_DIRECTORY_NAME = "mgw-usage-spool";
+
+    public static final String MAX_CONCURRENT_UPLOADS_PROPERTY = "usage.upload.max.concurrent";
+
+    public static final String DEFAULT_MAX_CONCURRENT_UPLOADS = "10";
+
+    public static final String MAX_FILE_SIZE_PROPERTY = "usage.upload.max.file.size";
+
+    public static final String DEFAULT_MAX_FILE_SIZE = "104857600";
+
+    public static final String SPOOL_CAPACITY_PROPERTY = "usage.upload.spool.capacity";
+
+    public static final String DEFAULT_SPOOL_CAPACITY = "1073741824";
+
+    public static final String DIGEST_INDEX_SIZE_PROPERTY = "usage.upload.digest.index.size";
+
+    public static final String DEFAULT_DIGEST_INDEX_SIZE = "10000";
+
+    public static final String AUTH_CACHE_TTL_PROPERTY = "usage.upload.auth.cache.ttl";
+
+    public static final String DEFAULT_AUTH_CACHE_TTL = "300000";
+
+    public static final String AUTH_CACHE_NEGATIVE_TTL_PROPERTY = "usage.upload.auth.cache.negative.ttl";
+
+    public static final String DEFAULT_AUTH_CACHE_NEGATIVE_TTL = "30000";
+
+    public static final String AUTH_CACHE_SIZE_PROPERTY = "usage.upload.auth.cache.size";
+
+    public static final String DEFAULT_AUTH_CACHE_SIZE = "1000";
+
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.rest.api.file.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.rest.api.file.exception.UploadRejectedException;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import javax.ws.rs.core.Response;
+
+/**
+ * Stages the uploaded usage files on the local disk before they are persisted, so that a database connection is
+ * only used for a local copy instead of for the whole network transfer of a file. The number of concurrent uploads,
+ * the size of a single file and the total size of the staged files are bounded.
+ */
+public final class UsageFileSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageFileSpool.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final UsageFileSpool instance = new UsageFileSpool();
+
+    private final Path directory;
+    private final Semaphore uploadPermits;
+    private final long maxFileSize;
+    private final long capacity;
+    private final AtomicLong spooledBytes = new AtomicLong();
+
+    private UsageFileSpool() {
+        String spoolDirectory = getProperty(UploadServiceConstants.SPOOL_DIRECTORY_PROPERTY,
+                Paths.get(System.getProperty("java.io.tmpdir"), UploadServiceConstants.DEFAULT_SPOOL_DIRECTORY_NAME)
+                        .toString());
+        this.directory = Paths.get(spoolDirectory);
+        this.uploadPermits = new Semaphore(Integer.parseInt(getProperty(
+                UploadServiceConstants.MAX_CONCURRENT_UPLOADS_PROPERTY,
+                UploadServiceConstants.DEFAULT_MAX_CONCURRENT_UPLOADS)));
+        this.maxFileSize = Long.parseLong(getProperty(UploadServiceConstants.MAX_FILE_SIZE_PROPERTY,
+                UploadServiceConstants.DEFAULT_MAX_FILE_SIZE));
+        this.capacity = Long.parseLong(getProperty(UploadServiceConstants.SPOOL_CAPACITY_PROPERTY,
+                UploadServiceConstants.DEFAULT_SPOOL_CAPACITY));
+    }
+
+    /**
+     * Provide instance of UsageFileSpool class.
+     *
+     * @return Instance of UsageFileSpool
+     */
+    public static UsageFileSpool getInstance() {
+        return instance;
+    }
+
+    private static String getProperty(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            log.debug("Default value will be used for {}", name);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /**
+     * Acquires a permit for an upload without waiting. {@link #releaseUpload()} should be called once the upload is
+     * completed, if a permit is acquired.
+     *
+     * @return false if the maximum number of concurrent uploads is reached
+     */
+    public boolean tryAcquireUpload() {
+        return uploadPermits.tryAcquire();
+    }
+
+    /**
+     * Releases the permit of a completed upload.
+     */
+    public void releaseUpload() {
+        uploadPermits.release();
+    }
+
+    /**
+     * Copies an uploaded file to the spool directory, computing the SHA-256 digest of its content on the way.
+     *
+     * @param content content of the uploaded file
+     * @return staged file, which should be closed once it is persisted
+     * @throws IOException             if the content cannot be read or written to the spool directory
+     * @throws UploadRejectedException if the file is too large or the spool is full
+     */
+    public SpooledFile spool(InputStream content) throws IOException, UploadRejectedException {
+        Files.createDirectories(directory);
+        MessageDigest digest = newDigest();
+        SpooledFile spooledFile = new SpooledFile(Files.createTempFile(directory, "upload-", ".zip"));
+        try {
+            try (OutputStream target = Files.newOutputStream(spooledFile.path, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    spooledFile.reserve(read);
+                    digest.update(buffer, 0, read);
+                    target.write(buffer, 0, read);
+                }
+            }
+            spooledFile.digest = toHex(digest.digest());
+            return spooledFile;
+        } catch (IOException | UploadRejectedException | RuntimeException e) {
+            spooledFile.close();
+            throw e;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the platform", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * An uploaded file staged in the spool directory. Closing it deletes the file and releases its space in the
+     * spool.
+     */
+    public final class SpooledFile implements Closeable {
+
+        private final Path path;
+        private long size;
+        private String digest;
+
+        private SpooledFile(Path path) {
+            this.path = path;
+        }
+
+        private void reserve(int length) throws UploadRejectedException {
+            if (size + length > maxFileSize) {
+                throw new UploadRejectedException("Uploaded file exceeds the maximum size of " + maxFileSize
+                        + " bytes.", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            if (spooledBytes.addAndGet(length) > capacity) {
+                spooledBytes.addAndGet(-length);
+                throw new UploadRejectedException("Upload spool is full. Please retry later.",
+                        Response.Status.SERVICE_UNAVAILABLE);
+            }
+            size += length;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the hex encoded SHA-256 digest of the staged content.
+         *
+         * @return content digest
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Validates the structure of the staged file without inflating it. The central directory of the archive
+         * is read, hence a truncated upload is detected, and its first entry should be the usage file in either the
+         * text or the binary format, which is the only entry published from the archive.
+         *
+         * @return true if the staged file is a complete archive of a usage file
+         * @throws IOException if the staged file cannot be read
+         */
+        public boolean isUsageArchive() throws IOException {
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                if (!entries.hasMoreElements()) {
+                    return false;
+                }
+                String entryName = new File(entries.nextElement().getName()).getName();
+                return MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME.equals(entryName)
+                        || MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME.equals(entryName);
+            } catch (ZipException e) {
+                log.debug("Uploaded file is not a valid zip archive", e);
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            spooledBytes.addAndGet(-size);
+            size = 0;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete the spooled usage file " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Receives the messages of a single call of the analytics services. The inbound flow control of the call is handled
+ * here, requesting a message from the transport for each message published, so that at most a flow control window
+ * of messages is buffered for a call. While the server is paused the received messages are queued, and no further
+ * messages are requested until they are published once the server is resumed.
+ *
+ * @param <T> type of the messages of the call
+ * @param <R> type of the responses of the call
+ */
+abstract class AnalyticsCallObserver<T, R> implements StreamObserver<T> {
+
+    private static final Log log = LogFactory.getLog(AnalyticsCallObserver.class);
+
+    protected final AnalyticsServer server;
+    protected final ServerCallStreamObserver<R> responseObserver;
+    private final Queue<T> pendingMessages = new ArrayDeque<>();
+    private final Set<AnalyticsStreamType> unregisteredStreams = EnumSet.noneOf(AnalyticsStreamType.class);
+    private boolean unknownStreamReported;
+    private boolean completed;
+    private boolean closed;
+
+    AnalyticsCallObserver(AnalyticsServer server, ServerCallStreamObserver<R> responseObserver) {
+        this.server = server;
+        this.responseObserver = responseObserver;
+    }
+
+    /**
+     * Takes over the inbound flow control of the call and requests its first window of messages. This has to be called
+     * by the service method which receives the call.
+     */
+    void start() {
+        responseObserver.disableAutoInboundFlowControl();
+        responseObserver.setOnCancelHandler(() -> server.removeCall(this));
+        server.addCall(this);
+        responseObserver.request(server.getConfig().getFlowControlWindow());
+    }
+
+    @Override
+    public synchronized void onNext(T message) {
+        if (closed) {
+            return;
+        }
+        if (server.isPaused() || !pendingMessages.isEmpty()) {
+            pendingMessages.add(message);
+            return;
+        }
+        publish(message);
+        if (!closed) {
+            responseObserver.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        server.removeCall(this);
+        if (log.isDebugEnabled()) {
+            log.debug("Analytics call of a micro gateway was closed with an error.", throwable);
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        completed = true;
+        if (pendingMessages.isEmpty() && !closed) {
+            complete();
+        }
+    }
+
+    /**
+     * Publishes the messages queued while the server was paused and resumes requesting messages of the call.
+     */
+    synchronized void resume() {
+        T message;
+        while (!closed && !server.isPaused() && (message = pendingMessages.poll()) != null) {
+            publish(message);
+            if (!completed && !closed) {
+                responseObserver.request(1);
+            }
+        }
+        if (completed && pendingMessages.isEmpty() && !closed) {
+            complete();
+        }
+    }
+
+    /**
+     * Called periodically by the server while the call is open, to send the responses which are due by time.
+     */
+    synchronized void onTimer() {
+        if (!closed) {
+            sendPeriodicResponse();
+        }
+    }
+
+    /**
+     * Publishes a message of the call to the sources of its streams.
+     *
+     * @param message message received
+     */
+    protected abstract void publish(T message);
+
+    /**
+     * Sends the final responses of the call once all its messages are published. The call is completed afterwards.
+     */
+    protected abstract void sendFinalResponse();
+
+    /**
+     * Sends the responses of the call which are due by time. Nothing is sent by default.
+     */
+    protected void sendPeriodicResponse() {
+    }
+
+    /**
+     * Returns the stream of a message, reporting once per call that the stream of a message is unknown.
+     *
+     * @param message message received
+     * @return stream, or null if the stream is not known
+     */
+    protected AnalyticsStreamType getStreamType(AnalyticsStreamMessage message) {
+        AnalyticsStreamType streamType = AnalyticsStreamType.fromMessage(message);
+        if (streamType == null && !unknownStreamReported) {
+            unknownStreamReported = true;
+            log.warn("Dropping analytics messages of unknown stream " + message.getMessageStreamType() + " "
+                    + message.getMessageStreamName() + ". Further messages of unknown streams of the call are "
+                    + "dropped silently.");
+        }
+        return streamType;
+    }
+
+    /**
+     * Returns the listener of the source of a stream, reporting once per call that a stream has no source.
+     *
+     * @param streamType stream
+     * @return listener, or null if no source is registered for the stream
+     */
+    protected SourceEventListener getListener(AnalyticsStreamType streamType) {
+        SourceEventListener listener = server.getListener(streamType);
+        if (listener == null && unregisteredStreams.add(streamType)) {
+            log.warn("Dropping analytics messages of " + streamType.getMessageStreamName()
+                    + " as no source is registered for the stream.");
+        }
+        return listener;
+    }
+
+    /**
+     * Publishes the events of a stream to its source together.
+     *
+     * @param streamType stream
+     * @param events     events of the stream
+     * @return false if the events are dropped, as no source is registered for the stream or the source failed
+     */
+    protected boolean publish(AnalyticsStreamType streamType, List<Event> events) {
+        if (events.isEmpty()) {
+            return true;
+        }
+        SourceEventListener listener = getListener(streamType);
+        if (listener == null) {
+            return false;
+        }
+        try {
+            listener.onEvent(events.toArray(new Event[0]), null);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Error occurred while publishing a batch of " + events.size() + " analytics events of "
+                    + streamType.getMessageStreamName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Closes the call with an error, discarding the messages which are not published yet.
+     *
+     * @param status status of the error
+     */
+    protected void fail(Status status) {
+        closed = true;
+        pendingMessages.clear();
+        server.removeCall(this);
+        responseObserver.onError(status.asRuntimeException());
+    }
+
+    private void complete() {
+        closed = true;
+        server.removeCall(this);
+        sendFinalResponse();
+        responseObserver.onCompleted();
+    }
+}
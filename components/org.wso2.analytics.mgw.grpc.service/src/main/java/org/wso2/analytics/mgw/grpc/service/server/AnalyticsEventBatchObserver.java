@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEvent;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEventBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the event batches of a sendAnalyticsEvents call. The strings of the events are decoded with the string
+ * dictionary of the call, and the events of a batch are published to each stream together.
+ */
+class AnalyticsEventBatchObserver extends AnalyticsCallObserver<AnalyticsEventBatch, Empty> {
+
+    private static final Log log = LogFactory.getLog(AnalyticsEventBatchObserver.class);
+    private static final AnalyticsStreamType[] STREAM_TYPES = AnalyticsStreamType.values();
+
+    private final AnalyticsStringDictionary dictionary;
+    private boolean unknownTypeReported;
+
+    AnalyticsEventBatchObserver(AnalyticsServer server, ServerCallStreamObserver<Empty> responseObserver) {
+        super(server, responseObserver);
+        this.dictionary = new AnalyticsStringDictionary(server.getConfig().getDictionaryMaxSize());
+    }
+
+    @Override
+    protected void publish(AnalyticsEventBatch batch) {
+        if (!dictionary.addAll(batch.getDictionaryList())) {
+            fail(Status.RESOURCE_EXHAUSTED.withDescription("The string dictionary of the call exceeds "
+                    + server.getConfig().getDictionaryMaxSize() + " strings. Start a new call."));
+            return;
+        }
+        List<List<Event>> streamEvents = new ArrayList<>(STREAM_TYPES.length);
+        for (int i = 0; i < STREAM_TYPES.length; i++) {
+            streamEvents.add(new ArrayList<>());
+        }
+        try {
+            for (AnalyticsEvent event : batch.getEventsList()) {
+                AnalyticsStreamType streamType = AnalyticsStreamType.fromEventType(event.getEventType());
+                if (streamType == null) {
+                    if (!unknownTypeReported) {
+                        unknownTypeReported = true;
+                        log.warn("Dropping analytics events of unknown type " + event.getEventType()
+                                + ". Further events of unknown types of the call are dropped silently.");
+                    }
+                    continue;
+                }
+                streamEvents.get(streamType.ordinal()).add(new Event(-1, streamType.toEventData(event, dictionary)));
+            }
+        } catch (IllegalArgumentException e) {
+            fail(Status.INVALID_ARGUMENT.withDescription(e.getMessage()));
+            return;
+        }
+        for (AnalyticsStreamType streamType : STREAM_TYPES) {
+            publish(streamType, streamEvents.get(streamType.ordinal()));
+        }
+    }
+
+    @Override
+    protected void sendFinalResponse() {
+        responseObserver.onNext(Empty.getDefaultInstance());
+    }
+}
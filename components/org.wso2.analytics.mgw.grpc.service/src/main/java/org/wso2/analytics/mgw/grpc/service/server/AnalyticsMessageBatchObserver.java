@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsBatchAck;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsMessageBatch;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the message batches of a sendAnalyticsBatch call. The messages of a batch are published to each stream
+ * together, and the published batches are acknowledged once a number of them are published since the last
+ * acknowledgement, or periodically by the server, so that a gateway only has to keep a bounded window of batches to
+ * resend. A batch which cannot be published is never acknowledged, instead the call is failed after acknowledging the
+ * batches published before it, so that the gateway resends the batches from there.
+ */
+class AnalyticsMessageBatchObserver extends AnalyticsCallObserver<AnalyticsMessageBatch, AnalyticsBatchAck> {
+
+    private static final Log log = LogFactory.getLog(AnalyticsMessageBatchObserver.class);
+    private static final AnalyticsStreamType[] STREAM_TYPES = AnalyticsStreamType.values();
+
+    private long publishedSequenceNumber = Long.MIN_VALUE;
+    private long acknowledgedSequenceNumber = Long.MIN_VALUE;
+    private int unacknowledgedBatchCount;
+
+    AnalyticsMessageBatchObserver(AnalyticsServer server,
+                                  ServerCallStreamObserver<AnalyticsBatchAck> responseObserver) {
+        super(server, responseObserver);
+    }
+
+    @Override
+    protected void publish(AnalyticsMessageBatch batch) {
+        if (batch.getSequenceNumber() > publishedSequenceNumber) {
+            List<List<Event>> streamEvents = new ArrayList<>(STREAM_TYPES.length);
+            for (int i = 0; i < STREAM_TYPES.length; i++) {
+                streamEvents.add(new ArrayList<>(batch.getMessagesCount()));
+            }
+            for (AnalyticsStreamMessage message : batch.getMessagesList()) {
+                AnalyticsStreamType streamType = getStreamType(message);
+                if (streamType != null) {
+                    streamEvents.get(streamType.ordinal()).add(new Event(-1, streamType.toEventData(message)));
+                }
+            }
+            // the sources are checked first, so that a batch is not published in part for a missing source
+            for (AnalyticsStreamType streamType : STREAM_TYPES) {
+                if (!streamEvents.get(streamType.ordinal()).isEmpty() && server.getListener(streamType) == null) {
+                    failBatch(batch, "no source is registered for " + streamType.getMessageStreamName());
+                    return;
+                }
+            }
+            for (AnalyticsStreamType streamType : STREAM_TYPES) {
+                if (!publish(streamType, streamEvents.get(streamType.ordinal()))) {
+                    failBatch(batch, "the source of " + streamType.getMessageStreamName() + " failed");
+                    return;
+                }
+            }
+            publishedSequenceNumber = batch.getSequenceNumber();
+        }
+        // a resent batch is acknowledged as well, as the gateway is waiting for it
+        if (++unacknowledgedBatchCount >= server.getConfig().getAckBatchCount()) {
+            acknowledge();
+        }
+    }
+
+    private void failBatch(AnalyticsMessageBatch batch, String reason) {
+        String message = "Batch " + batch.getSequenceNumber() + " is not published as " + reason
+                + ". Resend the batches after the last acknowledged batch.";
+        log.warn("Failing the analytics call of a micro gateway. " + message);
+        acknowledge();
+        fail(Status.UNAVAILABLE.withDescription(message));
+    }
+
+    @Override
+    protected void sendPeriodicResponse() {
+        acknowledge();
+    }
+
+    @Override
+    protected void sendFinalResponse() {
+        acknowledge();
+    }
+
+    private void acknowledge() {
+        unacknowledgedBatchCount = 0;
+        if (publishedSequenceNumber == acknowledgedSequenceNumber) {
+            return;
+        }
+        acknowledgedSequenceNumber = publishedSequenceNumber;
+        responseObserver.onNext(AnalyticsBatchAck.newBuilder().setSequenceNumber(publishedSequenceNumber).build());
+    }
+}
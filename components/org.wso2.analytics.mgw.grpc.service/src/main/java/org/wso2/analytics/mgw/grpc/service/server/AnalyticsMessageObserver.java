@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+/**
+ * Receives the analytics messages of a sendAnalytics call, publishing each message as an event.
+ */
+class AnalyticsMessageObserver extends AnalyticsCallObserver<AnalyticsStreamMessage, Empty> {
+
+    private static final Log log = LogFactory.getLog(AnalyticsMessageObserver.class);
+
+    AnalyticsMessageObserver(AnalyticsServer server, ServerCallStreamObserver<Empty> responseObserver) {
+        super(server, responseObserver);
+    }
+
+    @Override
+    protected void publish(AnalyticsStreamMessage message) {
+        AnalyticsStreamType streamType = getStreamType(message);
+        if (streamType == null) {
+            return;
+        }
+        SourceEventListener listener = getListener(streamType);
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onEvent(new Event(-1, streamType.toEventData(message)), null);
+        } catch (RuntimeException e) {
+            log.error("Error occurred while publishing an analytics message of "
+                    + streamType.getMessageStreamName(), e);
+        }
+    }
+
+    @Override
+    protected void sendFinalResponse() {
+        responseObserver.onNext(Empty.getDefaultInstance());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsBatchAck;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsMessageBatch;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsSendServiceGrpc;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+/**
+ * Implementation of the AnalyticsSendService, which receives each call with its own flow controlled observer.
+ * The messages of a sendAnalytics call are published one by one, and those of a sendAnalyticsBatch call a batch at
+ * a time.
+ */
+class AnalyticsSendServiceImpl extends AnalyticsSendServiceGrpc.AnalyticsSendServiceImplBase {
+
+    private final AnalyticsServer server;
+
+    AnalyticsSendServiceImpl(AnalyticsServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public StreamObserver<AnalyticsStreamMessage> sendAnalytics(StreamObserver<Empty> responseObserver) {
+        AnalyticsMessageObserver call = new AnalyticsMessageObserver(server,
+                (ServerCallStreamObserver<Empty>) responseObserver);
+        call.start();
+        return call;
+    }
+
+    @Override
+    public StreamObserver<AnalyticsMessageBatch> sendAnalyticsBatch(
+            StreamObserver<AnalyticsBatchAck> responseObserver) {
+        AnalyticsMessageBatchObserver call = new AnalyticsMessageBatchObserver(server,
+                (ServerCallStreamObserver<AnalyticsBatchAck>) responseObserver);
+        call.start();
+        return call;
+    }
+}
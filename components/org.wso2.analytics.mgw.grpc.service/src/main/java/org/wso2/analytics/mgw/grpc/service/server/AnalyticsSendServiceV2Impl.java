@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEventBatch;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsSendServiceV2Grpc;
+
+/**
+ * Implementation of the AnalyticsSendServiceV2, which receives each call with its own flow controlled observer and
+ * string dictionary.
+ */
+class AnalyticsSendServiceV2Impl extends AnalyticsSendServiceV2Grpc.AnalyticsSendServiceV2ImplBase {
+
+    private final AnalyticsServer server;
+
+    AnalyticsSendServiceV2Impl(AnalyticsServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public StreamObserver<AnalyticsEventBatch> sendAnalyticsEvents(StreamObserver<Empty> responseObserver) {
+        AnalyticsEventBatchObserver call = new AnalyticsEventBatchObserver(server,
+                (ServerCallStreamObserver<Empty>) responseObserver);
+        call.start();
+        return call;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+
+/**
+ * gRPC server receiving the analytics messages of the micro gateways through the AnalyticsSendService, and the
+ * dictionary encoded event batches through the AnalyticsSendServiceV2. A server is
+ * started on a port when the first mgwgrpc source of the port connects and is shut down when the last one
+ * disconnects. The messages are decoded by their message stream name and published to the source of that stream, so
+ * that each source only receives the events of its own stream.
+ */
+public class AnalyticsServer {
+
+    private static final Log log = LogFactory.getLog(AnalyticsServer.class);
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+    private static final Map<Integer, AnalyticsServer> servers = new HashMap<>();
+
+    private final AnalyticsServerConfig config;
+    private final SourceEventListener[] listeners = new SourceEventListener[AnalyticsStreamType.values().length];
+    private final Set<AnalyticsStreamType> pausedStreams = EnumSet.noneOf(AnalyticsStreamType.class);
+    private final Set<AnalyticsCallObserver<?, ?>> calls = ConcurrentHashMap.newKeySet();
+    private volatile boolean paused;
+    private Server server;
+    private ScheduledExecutorService timer;
+
+    private AnalyticsServer(AnalyticsServerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Registers the listener of a stream with the server of the configured port, starting the server if this is the
+     * first stream of the port.
+     *
+     * @param config     configuration of the source
+     * @param streamType stream the listener receives
+     * @param listener   listener of the source
+     * @throws IOException if the server could not be started
+     */
+    public static synchronized void register(AnalyticsServerConfig config, AnalyticsStreamType streamType,
+                                             SourceEventListener listener) throws IOException {
+        AnalyticsServer analyticsServer = servers.get(config.getPort());
+        if (analyticsServer == null) {
+            analyticsServer = new AnalyticsServer(config);
+            analyticsServer.start();
+            servers.put(config.getPort(), analyticsServer);
+        } else if (!analyticsServer.config.equals(config)) {
+            log.warn("The configuration of the source of " + streamType.getMessageStreamName() + " differs from the "
+                    + "configuration of the analytics server already running on port " + config.getPort()
+                    + ". The running server is used as it is.");
+        }
+        if (analyticsServer.listeners[streamType.ordinal()] != null) {
+            log.warn("A source is already registered for " + streamType.getMessageStreamName() + " on port "
+                    + config.getPort() + ". The events of the stream are published to the latest source.");
+        }
+        analyticsServer.listeners[streamType.ordinal()] = listener;
+    }
+
+    /**
+     * Unregisters the listener of a stream, shutting down the server of the port if no streams are left.
+     *
+     * @param port       port of the server
+     * @param streamType stream the listener receives
+     * @param listener   listener of the source
+     */
+    public static synchronized void unregister(int port, AnalyticsStreamType streamType,
+                                               SourceEventListener listener) {
+        AnalyticsServer analyticsServer = servers.get(port);
+        if (analyticsServer == null || analyticsServer.listeners[streamType.ordinal()] != listener) {
+            return;
+        }
+        analyticsServer.listeners[streamType.ordinal()] = null;
+        analyticsServer.setPaused(streamType, false);
+        for (SourceEventListener registered : analyticsServer.listeners) {
+            if (registered != null) {
+                return;
+            }
+        }
+        servers.remove(port);
+        analyticsServer.stop();
+    }
+
+    /**
+     * Pauses or resumes receiving the messages of the server of a port on behalf of a stream. Messages are not
+     * received while the source of any stream of the server is paused, as a call carries the messages of all the
+     * streams.
+     *
+     * @param port       port of the server
+     * @param streamType stream of the paused or resumed source
+     * @param paused     whether the source is paused
+     */
+    public static synchronized void setPaused(int port, AnalyticsStreamType streamType, boolean paused) {
+        AnalyticsServer analyticsServer = servers.get(port);
+        if (analyticsServer != null) {
+            analyticsServer.setPaused(streamType, paused);
+        }
+    }
+
+    private void setPaused(AnalyticsStreamType streamType, boolean isPaused) {
+        if (isPaused) {
+            pausedStreams.add(streamType);
+        } else {
+            pausedStreams.remove(streamType);
+        }
+        boolean wasPaused = paused;
+        paused = !pausedStreams.isEmpty();
+        if (wasPaused && !paused) {
+            for (AnalyticsCallObserver<?, ?> call : calls) {
+                call.resume();
+            }
+        }
+    }
+
+    private void start() throws IOException {
+        NettyServerBuilder builder = NettyServerBuilder.forPort(config.getPort())
+                .addService(new AnalyticsSendServiceImpl(this))
+                .addService(new AnalyticsSendServiceV2Impl(this));
+        if (config.isSslEnabled()) {
+            char[] password = config.getKeyStorePassword().toCharArray();
+            try (InputStream inputStream = new FileInputStream(config.getKeyStoreFile())) {
+                KeyStore keyStore = KeyStore.getInstance(config.getKeyStoreType());
+                keyStore.load(inputStream, password);
+                KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(config.getKeyStoreAlgorithm());
+                keyManagerFactory.init(keyStore, password);
+                builder.sslContext(GrpcSslContexts.configure(SslContextBuilder.forServer(keyManagerFactory)).build());
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Error while loading the key store " + config.getKeyStoreFile(), e);
+            }
+        }
+        server = builder.build().start();
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mgwgrpc-timer-" + config.getPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::onTimer, config.getAckInterval(), config.getAckInterval(),
+                TimeUnit.MILLISECONDS);
+        log.info("Started the micro gateway analytics gRPC server on port " + config.getPort());
+    }
+
+    private void onTimer() {
+        for (AnalyticsCallObserver<?, ?> call : calls) {
+            try {
+                call.onTimer();
+            } catch (RuntimeException e) {
+                log.error("Error occurred while sending the periodic response of an analytics call.", e);
+            }
+        }
+    }
+
+    private void stop() {
+        timer.shutdownNow();
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        calls.clear();
+        log.info("Stopped the micro gateway analytics gRPC server on port " + config.getPort());
+    }
+
+    AnalyticsServerConfig getConfig() {
+        return config;
+    }
+
+    SourceEventListener getListener(AnalyticsStreamType streamType) {
+        return listeners[streamType.ordinal()];
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    void addCall(AnalyticsCallObserver<?, ?> call) {
+        calls.add(call);
+    }
+
+    void removeCall(AnalyticsCallObserver<?, ?> call) {
+        calls.remove(call);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import io.siddhi.core.util.transport.OptionHolder;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Configuration of an {@link AnalyticsServer}, read from the options of a mgwgrpc source. All the sources on the same
+ * port share a server, which is configured by the source that starts it.
+ */
+public class AnalyticsServerConfig {
+
+    public static final String MESSAGE_STREAM_NAME = "message.stream.name";
+    public static final String PORT = "port";
+    public static final String DEFAULT_PORT = "9806";
+    public static final String ENABLE_SSL = "enable.ssl";
+    public static final String DEFAULT_ENABLE_SSL = "false";
+    public static final String KEYSTORE_FILE = "keystore.file";
+    public static final String KEYSTORE_PASSWORD = "keystore.password";
+    public static final String DEFAULT_KEYSTORE_PASSWORD = "wso2carbon";
+    public static final String KEYSTORE_ALGORITHM = "keystore.algorithm";
+    public static final String DEFAULT_KEYSTORE_ALGORITHM = "SunX509";
+    public static final String TLS_STORE_TYPE = "tls.store.type";
+    public static final String DEFAULT_TLS_STORE_TYPE = "JKS";
+    public static final String FLOW_CONTROL_WINDOW = "flow.control.window";
+    public static final String DEFAULT_FLOW_CONTROL_WINDOW = "256";
+    public static final String DICTIONARY_MAX_SIZE = "dictionary.max.size";
+    public static final String DEFAULT_DICTIONARY_MAX_SIZE = "100000";
+    public static final String ACK_BATCH_COUNT = "ack.batch.count";
+    public static final String DEFAULT_ACK_BATCH_COUNT = "16";
+    public static final String ACK_INTERVAL = "ack.interval";
+    public static final String DEFAULT_ACK_INTERVAL = "1000";
+
+    private final int port;
+    private final boolean sslEnabled;
+    private final String keyStoreFile;
+    private final String keyStorePassword;
+    private final String keyStoreAlgorithm;
+    private final String keyStoreType;
+    private final int flowControlWindow;
+    private final int dictionaryMaxSize;
+    private final int ackBatchCount;
+    private final long ackInterval;
+
+    public AnalyticsServerConfig(OptionHolder optionHolder) {
+        this.port = Integer.parseInt(optionHolder.validateAndGetStaticValue(PORT, DEFAULT_PORT));
+        this.sslEnabled = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(ENABLE_SSL, DEFAULT_ENABLE_SSL));
+        this.keyStoreFile = optionHolder.validateAndGetStaticValue(KEYSTORE_FILE, System.getProperty("carbon.home")
+                + File.separator + "resources" + File.separator + "security" + File.separator + "wso2carbon.jks");
+        this.keyStorePassword = optionHolder.validateAndGetStaticValue(KEYSTORE_PASSWORD, DEFAULT_KEYSTORE_PASSWORD);
+        this.keyStoreAlgorithm = optionHolder.validateAndGetStaticValue(KEYSTORE_ALGORITHM,
+                DEFAULT_KEYSTORE_ALGORITHM);
+        this.keyStoreType = optionHolder.validateAndGetStaticValue(TLS_STORE_TYPE, DEFAULT_TLS_STORE_TYPE);
+        this.flowControlWindow = Math.max(1, Integer.parseInt(
+                optionHolder.validateAndGetStaticValue(FLOW_CONTROL_WINDOW, DEFAULT_FLOW_CONTROL_WINDOW)));
+        this.dictionaryMaxSize = Integer.parseInt(
+                optionHolder.validateAndGetStaticValue(DICTIONARY_MAX_SIZE, DEFAULT_DICTIONARY_MAX_SIZE));
+        this.ackBatchCount = Math.max(1, Integer.parseInt(
+                optionHolder.validateAndGetStaticValue(ACK_BATCH_COUNT, DEFAULT_ACK_BATCH_COUNT)));
+        this.ackInterval = Math.max(1, Long.parseLong(
+                optionHolder.validateAndGetStaticValue(ACK_INTERVAL, DEFAULT_ACK_INTERVAL)));
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isSslEnabled() {
+        return sslEnabled;
+    }
+
+    public String getKeyStoreFile() {
+        return keyStoreFile;
+    }
+
+    public String getKeyStorePassword() {
+        return keyStorePassword;
+    }
+
+    public String getKeyStoreAlgorithm() {
+        return keyStoreAlgorithm;
+    }
+
+    public String getKeyStoreType() {
+        return keyStoreType;
+    }
+
+    /**
+     * Returns the number of messages or event batches of a call which are requested from the transport ahead of
+     * being published. The gateways are held back by the HTTP/2 flow control once this many messages are waiting to
+     * be published.
+     *
+     * @return number of messages
+     */
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * Returns the maximum number of strings of the string dictionary of a sendAnalyticsEvents call. A call exceeding
+     * it is closed, after which the gateway starts a new call with an empty dictionary.
+     *
+     * @return number of strings
+     */
+    public int getDictionaryMaxSize() {
+        return dictionaryMaxSize;
+    }
+
+    /**
+     * Returns the number of batches of a sendAnalyticsBatch call published before they are acknowledged.
+     *
+     * @return number of batches
+     */
+    public int getAckBatchCount() {
+        return ackBatchCount;
+    }
+
+    /**
+     * Returns the interval in milliseconds at which the published batches of the sendAnalyticsBatch calls are
+     * acknowledged, when fewer than the ack batch count are published in the meantime.
+     *
+     * @return interval in milliseconds
+     */
+    public long getAckInterval() {
+        return ackInterval;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AnalyticsServerConfig that = (AnalyticsServerConfig) o;
+        return port == that.port && sslEnabled == that.sslEnabled && flowControlWindow == that.flowControlWindow
+                && dictionaryMaxSize == that.dictionaryMaxSize && ackBatchCount == that.ackBatchCount
+                && ackInterval == that.ackInterval
+                && Objects.equals(keyStoreFile, that.keyStoreFile)
+                && Objects.equals(keyStorePassword, that.keyStorePassword)
+                && Objects.equals(keyStoreAlgorithm, that.keyStoreAlgorithm)
+                && Objects.equals(keyStoreType, that.keyStoreType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(port, sslEnabled, keyStoreFile, keyStorePassword, keyStoreAlgorithm, keyStoreType,
+                flowControlWindow, dictionaryMaxSize, ackBatchCount, ackInterval);
+    }
+}
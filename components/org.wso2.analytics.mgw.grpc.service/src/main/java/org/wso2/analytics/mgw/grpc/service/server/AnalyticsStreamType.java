@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEvent;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEventType;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+/**
+ * Streams of the analytics messages sent by the gateways, identified by the messageStreamType or messageStreamName
+ * of the messages, or by the eventType of the compact events. Each stream decodes the fields of a message or an event
+ * into the attributes of its Siddhi stream, in the order of the stream definition.
+ */
+public enum AnalyticsStreamType {
+
+    REQUEST("InComingRequestStream") {
+        @Override
+        public Object[] toEventData(AnalyticsStreamMessage message) {
+            return new Object[]{
+                    message.getMetaClientType(),
+                    message.getApplicationConsumerKey(),
+                    message.getApplicationName(),
+                    message.getApplicationId(),
+                    message.getApplicationOwner(),
+                    message.getApiContext(),
+                    message.getApiName(),
+                    message.getApiVersion(),
+                    message.getApiResourcePath(),
+                    message.getApiResourceTemplate(),
+                    message.getApiMethod(),
+                    message.getApiCreator(),
+                    message.getApiCreatorTenantDomain(),
+                    message.getApiTier(),
+                    message.getApiHostname(),
+                    message.getUsername(),
+                    message.getUserTenantDomain(),
+                    message.getUserIp(),
+                    message.getUserAgent(),
+                    message.getRequestTimestamp(),
+                    message.getThrottledOut(),
+                    message.getResponseTime(),
+                    message.getServiceTime(),
+                    message.getBackendTime(),
+                    message.getResponseCacheHit(),
+                    message.getResponseSize(),
+                    message.getProtocol(),
+                    message.getResponseCode(),
+                    message.getDestination(),
+                    message.getSecurityLatency(),
+                    message.getThrottlingLatency(),
+                    message.getRequestMedLat(),
+                    message.getResponseMedLat(),
+                    message.getBackendLatency(),
+                    message.getOtherLatency(),
+                    message.getGatewayType(),
+                    message.getLabel()
+            };
+        }
+
+        @Override
+        public Object[] toEventData(AnalyticsEvent event, AnalyticsStringDictionary dictionary) {
+            return new Object[]{
+                    dictionary.get(event.getMetaClientType()),
+                    dictionary.get(event.getApplicationConsumerKey()),
+                    dictionary.get(event.getApplicationName()),
+                    dictionary.get(event.getApplicationId()),
+                    dictionary.get(event.getApplicationOwner()),
+                    dictionary.get(event.getApiContext()),
+                    dictionary.get(event.getApiName()),
+                    dictionary.get(event.getApiVersion()),
+                    event.getApiResourcePath(),
+                    dictionary.get(event.getApiResourceTemplate()),
+                    dictionary.get(event.getApiMethod()),
+                    dictionary.get(event.getApiCreator()),
+                    dictionary.get(event.getApiCreatorTenantDomain()),
+                    dictionary.get(event.getApiTier()),
+                    dictionary.get(event.getApiHostname()),
+                    dictionary.get(event.getUsername()),
+                    dictionary.get(event.getUserTenantDomain()),
+                    event.getUserIp(),
+                    dictionary.get(event.getUserAgent()),
+                    event.getRequestTimestamp(),
+                    event.getThrottledOut(),
+                    event.getResponseTime(),
+                    event.getServiceTime(),
+                    event.getBackendTime(),
+                    event.getResponseCacheHit(),
+                    event.getResponseSize(),
+                    dictionary.get(event.getProtocol()),
+                    event.getResponseCode(),
+                    dictionary.get(event.getDestination()),
+                    event.getSecurityLatency(),
+                    event.getThrottlingLatency(),
+                    event.getRequestMedLat(),
+                    event.getResponseMedLat(),
+                    event.getBackendLatency(),
+                    event.getOtherLatency(),
+                    dictionary.get(event.getGatewayType()),
+                    dictionary.get(event.getLabel())
+            };
+        }
+    },
+
+    THROTTLED_OUT("ThrottledOutStream") {
+        @Override
+        public Object[] toEventData(AnalyticsStreamMessage message) {
+            return new Object[]{
+                    message.getMetaClientType(),
+                    message.getUsername(),
+                    message.getUserTenantDomain(),
+                    message.getApiName(),
+                    message.getApiVersion(),
+                    message.getApiContext(),
+                    message.getApiCreator(),
+                    message.getApiCreatorTenantDomain(),
+                    message.getApplicationId(),
+                    message.getApplicationName(),
+                    message.getSubscriber(),
+                    message.getThrottledOutReason(),
+                    message.getGatewayType(),
+                    message.getThrottledOutTimestamp(),
+                    message.getHostname()
+            };
+        }
+
+        @Override
+        public Object[] toEventData(AnalyticsEvent event, AnalyticsStringDictionary dictionary) {
+            return new Object[]{
+                    dictionary.get(event.getMetaClientType()),
+                    dictionary.get(event.getUsername()),
+                    dictionary.get(event.getUserTenantDomain()),
+                    dictionary.get(event.getApiName()),
+                    dictionary.get(event.getApiVersion()),
+                    dictionary.get(event.getApiContext()),
+                    dictionary.get(event.getApiCreator()),
+                    dictionary.get(event.getApiCreatorTenantDomain()),
+                    dictionary.get(event.getApplicationId()),
+                    dictionary.get(event.getApplicationName()),
+                    dictionary.get(event.getSubscriber()),
+                    dictionary.get(event.getThrottledOutReason()),
+                    dictionary.get(event.getGatewayType()),
+                    event.getThrottledOutTimestamp(),
+                    dictionary.get(event.getHostname())
+            };
+        }
+    },
+
+    FAULT("FaultStream") {
+        @Override
+        public Object[] toEventData(AnalyticsStreamMessage message) {
+            return new Object[]{
+                    message.getMetaClientType(),
+                    message.getApplicationConsumerKey(),
+                    message.getApiName(),
+                    message.getApiVersion(),
+                    message.getApiContext(),
+                    message.getApiResourcePath(),
+                    message.getApiMethod(),
+                    message.getApiCreator(),
+                    message.getUsername(),
+                    message.getUserTenantDomain(),
+                    message.getApiCreatorTenantDomain(),
+                    message.getHostname(),
+                    message.getApplicationId(),
+                    message.getApplicationName(),
+                    message.getProtocol(),
+                    message.getErrorCode(),
+                    message.getErrorMessage(),
+                    message.getRequestTimestamp()
+            };
+        }
+
+        @Override
+        public Object[] toEventData(AnalyticsEvent event, AnalyticsStringDictionary dictionary) {
+            return new Object[]{
+                    dictionary.get(event.getMetaClientType()),
+                    dictionary.get(event.getApplicationConsumerKey()),
+                    dictionary.get(event.getApiName()),
+                    dictionary.get(event.getApiVersion()),
+                    dictionary.get(event.getApiContext()),
+                    event.getApiResourcePath(),
+                    dictionary.get(event.getApiMethod()),
+                    dictionary.get(event.getApiCreator()),
+                    dictionary.get(event.getUsername()),
+                    dictionary.get(event.getUserTenantDomain()),
+                    dictionary.get(event.getApiCreatorTenantDomain()),
+                    dictionary.get(event.getHostname()),
+                    dictionary.get(event.getApplicationId()),
+                    dictionary.get(event.getApplicationName()),
+                    dictionary.get(event.getProtocol()),
+                    dictionary.get(event.getErrorCode()),
+                    event.getErrorMessage(),
+                    event.getRequestTimestamp()
+            };
+        }
+    };
+
+    private final String messageStreamName;
+
+    AnalyticsStreamType(String messageStreamName) {
+        this.messageStreamName = messageStreamName;
+    }
+
+    /**
+     * Returns the messageStreamName with which the gateways send the messages of this stream.
+     *
+     * @return message stream name
+     */
+    public String getMessageStreamName() {
+        return messageStreamName;
+    }
+
+    /**
+     * Decodes a message into the attributes of the Siddhi stream.
+     *
+     * @param message message sent by a gateway
+     * @return event data
+     */
+    public abstract Object[] toEventData(AnalyticsStreamMessage message);
+
+    /**
+     * Decodes a compact event into the attributes of the Siddhi stream.
+     *
+     * @param event      event sent by a gateway
+     * @param dictionary string dictionary of the call
+     * @return event data
+     * @throws IllegalArgumentException if a string id of the event is not defined in the dictionary
+     */
+    public abstract Object[] toEventData(AnalyticsEvent event, AnalyticsStringDictionary dictionary);
+
+    /**
+     * Returns the stream of a message. The stream is selected by the messageStreamType of the message, and by its
+     * messageStreamName when the gateway does not set the type.
+     *
+     * @param message message sent by a gateway
+     * @return stream, or null if the stream is not known
+     */
+    public static AnalyticsStreamType fromMessage(AnalyticsStreamMessage message) {
+        AnalyticsStreamType streamType = fromEventType(message.getMessageStreamType());
+        return streamType != null ? streamType : fromMessageStreamName(message.getMessageStreamName());
+    }
+
+    /**
+     * Returns the stream of a message stream name.
+     *
+     * @param messageStreamName messageStreamName of a message
+     * @return stream, or null if the name is not known
+     */
+    public static AnalyticsStreamType fromMessageStreamName(String messageStreamName) {
+        switch (messageStreamName) {
+        case "InComingRequestStream":
+            return REQUEST;
+        case "ThrottledOutStream":
+            return THROTTLED_OUT;
+        case "FaultStream":
+            return FAULT;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stream of the type of a compact event or a message.
+     *
+     * @param eventType eventType of an event, or messageStreamType of a message
+     * @return stream, or null if the type is not known
+     */
+    public static AnalyticsStreamType fromEventType(AnalyticsEventType eventType) {
+        switch (eventType) {
+        case REQUEST_EVENT:
+            return REQUEST;
+        case THROTTLED_OUT_EVENT:
+            return THROTTLED_OUT;
+        case FAULT_EVENT:
+            return FAULT;
+        default:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * String dictionary of a sendAnalyticsEvents call. Id 0 is the empty string and the strings added by the batches of
+ * the call take the next ids in order. The dictionary is bounded, as it is kept for the lifetime of the call.
+ */
+public class AnalyticsStringDictionary {
+
+    private final List<String> strings = new ArrayList<>();
+    private final int maxSize;
+
+    public AnalyticsStringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+        strings.add("");
+    }
+
+    /**
+     * Adds the strings of a batch to the dictionary.
+     *
+     * @param batchStrings strings of the batch, in the order of their ids
+     * @return false if the dictionary would exceed its maximum size, in which case no strings are added
+     */
+    public boolean addAll(List<String> batchStrings) {
+        if (strings.size() + batchStrings.size() > maxSize) {
+            return false;
+        }
+        strings.addAll(batchStrings);
+        return true;
+    }
+
+    /**
+     * Returns the string of an id.
+     *
+     * @param id id of the string
+     * @return string
+     * @throws IllegalArgumentException if the id is not defined in the dictionary
+     */
+    public String get(int id) {
+        if (id < 0 || id >= strings.size()) {
+            throw new IllegalArgumentException("String id " + (id & 0xFFFFFFFFL) + " is not defined in the "
+                    + "dictionary of " + strings.size() + " strings");
+        }
+        return strings.get(id);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.analytics.mgw.grpc.service.source;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.ServiceDeploymentInfo;
+import io.siddhi.core.stream.input.source.Source;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.transport.OptionHolder;
+import org.wso2.analytics.mgw.grpc.service.server.AnalyticsServer;
+import org.wso2.analytics.mgw.grpc.service.server.AnalyticsServerConfig;
+import org.wso2.analytics.mgw.grpc.service.server.AnalyticsStreamType;
+
+import java.io.IOException;
+
+/**
+ * Micro Gateway gRPC Source.
+ */
+
+@Extension(name = "mgwgrpc", namespace = "source", description = "Event source to receive WSO2 Microgateway analytics"
+        + " data through the AnalyticsSendService and AnalyticsSendServiceV2 gRPC services. The analytics messages "
+        + "are decoded by the services into the events of the stream selected by their message stream name or event "
+        + "type, which are published with the passThrough mapper.",
+        parameters = {
+        @Parameter(name = "message.stream.name",
+                description = "Message stream name of the analytics messages received by the source. One of "
+                        + "'InComingRequestStream', 'ThrottledOutStream' or 'FaultStream'.",
+                type = {
+                DataType.STRING }),
+        @Parameter(name = "port",
+                description = "Port of the gRPC server. The sources on the same port share a server, which is "
+                        + "configured by the first source connected.",
+                type = {
+                DataType.INT },
+                optional = true,
+                defaultValue = "9806"),
+        @Parameter(name = "enable.ssl",
+                description = "Whether the gRPC server accepts TLS connections.",
+                type = {
+                DataType.BOOL },
+                optional = true,
+                defaultValue = "false"),
+        @Parameter(name = "keystore.file",
+                description = "Key store of the gRPC server when TLS is enabled.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "${carbon.home}/resources/security/wso2carbon.jks"),
+        @Parameter(name = "keystore.password",
+                description = "Password of the key store and its key.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "wso2carbon"),
+        @Parameter(name = "keystore.algorithm",
+                description = "Algorithm of the key manager of the key store.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "SunX509"),
+        @Parameter(name = "tls.store.type",
+                description = "Type of the key store.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "JKS"),
+        @Parameter(name = "flow.control.window",
+                description = "Number of messages or event batches of a gRPC call requested ahead of being "
+                        + "published. A gateway is held back by the gRPC flow control while this many of its messages "
+                        + "are waiting to be published, such as while the source is paused.",
+                type = {
+                DataType.INT },
+                optional = true,
+                defaultValue = "256"),
+        @Parameter(name = "dictionary.max.size",
+                description = "Maximum number of strings in the string dictionary of a call of the "
+                        + "AnalyticsSendServiceV2. A call exceeding it is closed with RESOURCE_EXHAUSTED, after which "
+                        + "the gateway starts a new call with an empty dictionary.",
+                type = {
+                DataType.INT },
+                optional = true,
+                defaultValue = "100000"),
+        @Parameter(name = "ack.batch.count",
+                description = "Number of batches of a sendAnalyticsBatch call published before they are "
+                        + "acknowledged to the gateway.",
+                type = {
+                DataType.INT },
+                optional = true,
+                defaultValue = "16"),
+        @Parameter(name = "ack.interval",
+                description = "Interval in milliseconds at which the published batches of the sendAnalyticsBatch "
+                        + "calls are acknowledged, when fewer than ack.batch.count batches are published in the "
+                        + "meantime.",
+                type = {
+                DataType.LONG },
+                optional = true,
+                defaultValue = "1000"), },
+        examples = {
+                @Example(
+                        syntax = "@source(type = 'mgwgrpc', message.stream.name = 'InComingRequestStream', "
+                                + "@map(type = 'passThrough'))",
+                        description = "Receives the request events of the micro gateways on port 9806."
+                )
+        }
+)
+
+public class MGWGrpcSource extends Source {
+    private SourceEventListener sourceEventListener;
+    private AnalyticsStreamType streamType;
+    private AnalyticsServerConfig config;
+
+    @Override
+    protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
+        return null;
+    }
+
+    /**
+     * The initialization method for {@link Source}, will be called before other methods. It used to validate
+     * all configurations and to get initial values.
+     * @param sourceEventListener After receiving events, the source should trigger onEvent() of this listener.
+     *                            Listener will then pass on the events to the appropriate mappers for processing .
+     * @param optionHolder        Option holder containing static configuration related to the {@link Source}
+     * @param configReader        ConfigReader is used to read the {@link Source} related system configuration.
+     * @param siddhiAppContext    the context of the {@link io.siddhi.query.api.SiddhiApp} used to get Siddhi
+     *                            related utility functions.
+     */
+    @Override
+    public StateFactory init(SourceEventListener sourceEventListener, OptionHolder optionHolder,
+                             String[] requestedTransportPropertyNames, ConfigReader configReader,
+                             SiddhiAppContext siddhiAppContext) {
+        this.sourceEventListener = sourceEventListener;
+        String messageStreamName = optionHolder.validateAndGetStaticValue(AnalyticsServerConfig.MESSAGE_STREAM_NAME);
+        streamType = AnalyticsStreamType.fromMessageStreamName(messageStreamName);
+        if (streamType == null) {
+            throw new SiddhiAppCreationException("Unknown message stream name '" + messageStreamName
+                    + "' of the mgwgrpc source in " + siddhiAppContext.getName());
+        }
+        try {
+            config = new AnalyticsServerConfig(optionHolder);
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppCreationException("Invalid numeric option of the mgwgrpc source in "
+                    + siddhiAppContext.getName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the list of classes which this source can output.
+     *
+     * @return Array of classes that will be output by the source.
+     * Null or empty array if it can produce any type of class.
+     */
+    @Override
+    public Class[] getOutputEventClasses() {
+        return new Class[]{Event.class};
+    }
+
+    /**
+     * Initially Called to connect to the end point for start retrieving the messages asynchronously .
+     *
+     * @param connectionCallback Callback to pass the ConnectionUnavailableException in case of connection failure after
+     *                           initial successful connection. (can be used when events are receiving asynchronously)
+     * @throws ConnectionUnavailableException if it cannot connect to the source backend immediately.
+     */
+    @Override
+    public void connect(ConnectionCallback connectionCallback, State state) throws ConnectionUnavailableException {
+        try {
+            AnalyticsServer.register(config, streamType, sourceEventListener);
+        } catch (IOException e) {
+            throw new ConnectionUnavailableException("Unable to start the micro gateway analytics gRPC server on "
+                    + "port " + config.getPort(), e);
+        }
+    }
+
+    /**
+     * This method can be called when it is needed to disconnect from the end point.
+     */
+    @Override
+    public void disconnect() {
+        AnalyticsServer.unregister(config.getPort(), streamType, sourceEventListener);
+    }
+
+    /**
+     * Called at the end to clean all the resources consumed by the {@link Source}.
+     */
+    @Override
+    public void destroy() {
+        AnalyticsServer.unregister(config.getPort(), streamType, sourceEventListener);
+    }
+
+    /**
+     * Called to pause event consumption.
+     */
+    @Override
+    public void pause() {
+        AnalyticsServer.setPaused(config.getPort(), streamType, true);
+    }
+
+    /**
+     * Called to resume event consumption.
+     */
+    @Override
+    public void resume() {
+        AnalyticsServer.setPaused(config.getPort(), streamType, false);
+    }
+}
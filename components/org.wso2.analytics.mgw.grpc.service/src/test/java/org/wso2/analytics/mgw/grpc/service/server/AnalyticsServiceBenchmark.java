@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.mgw.grpc.service.server;
+
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEvent;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEventBatch;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsEventType;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of sending request events with sendAnalytics, a message per event, and with
+ * sendAnalyticsEvents, dictionary encoded event batches. The messages of a call are encoded as a gateway does and
+ * decoded into Siddhi events as the server does, while the transport, which is the same for both services, is left
+ * out. The wire size includes the 5 byte gRPC frame header of each message.
+ * <p>
+ * This is not run with the tests, but on demand with mvn test -Dtest=AnalyticsServiceBenchmark. An operation is run
+ * benchmark.warmup.runs times before it is timed for benchmark.measured.runs runs, and the time of the fastest run is
+ * reported.
+ */
+public class AnalyticsServiceBenchmark {
+
+    private static final Log log = LogFactory.getLog(AnalyticsServiceBenchmark.class);
+    private static final int EVENT_COUNT = Integer.getInteger("benchmark.events", 100000);
+    private static final int BATCH_SIZE = Integer.getInteger("benchmark.batch.size", 100);
+    private static final int WARMUP_RUNS = Integer.getInteger("benchmark.warmup.runs", 5);
+    private static final int MEASURED_RUNS = Integer.getInteger("benchmark.measured.runs", 10);
+    private static final int FRAME_HEADER_SIZE = 5;
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.149 Safari/537.36",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:75.0) Gecko/20100101 Firefox/75.0",
+            "curl/7.68.0",
+            "okhttp/4.4.1",
+            "PostmanRuntime/7.24.0"
+    };
+
+    // the results of the operations are added up, so that the JIT cannot drop the work of the operations
+    private static volatile long sink;
+
+    private List<AnalyticsStreamMessage> messages;
+    private List<byte[]> messageCall;
+    private List<byte[]> batchCall;
+
+    /**
+     * An operation to time.
+     */
+    private interface Operation {
+
+        long run() throws Exception;
+    }
+
+    @BeforeClass
+    public void createCalls() throws Exception {
+        messages = new ArrayList<>(EVENT_COUNT);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            messages.add(createMessage(i));
+        }
+        messageCall = encodeMessages();
+        batchCall = encodeBatches();
+        long messageBytes = wireSize(messageCall);
+        long batchBytes = wireSize(batchCall);
+        log.info(String.format("sendAnalytics: %d bytes, %.1f bytes per event", messageBytes,
+                messageBytes / (double) EVENT_COUNT));
+        log.info(String.format("sendAnalyticsEvents with batches of %d events: %d bytes, %.1f bytes per event, "
+                        + "%.2f times smaller", BATCH_SIZE, batchBytes, batchBytes / (double) EVENT_COUNT,
+                messageBytes / (double) batchBytes));
+    }
+
+    @Test
+    public void testSameEventData() throws Exception {
+        List<Object[]> messageEvents = new ArrayList<>();
+        decodeMessages(messageEvents);
+        List<Object[]> batchEvents = new ArrayList<>();
+        decodeBatches(batchEvents);
+        Assert.assertEquals(batchEvents.size(), messageEvents.size());
+        for (int i = 0; i < messageEvents.size(); i++) {
+            Assert.assertEquals(batchEvents.get(i), messageEvents.get(i), "Unexpected event at " + i);
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        long encodeMessagesNanos = measure("sendAnalytics encoding", () -> encodeMessages().size());
+        long encodeBatchesNanos = measure("sendAnalyticsEvents encoding", () -> encodeBatches().size());
+        compare("sendAnalyticsEvents encoding", encodeMessagesNanos, encodeBatchesNanos);
+        long decodeMessagesNanos = measure("sendAnalytics decoding", () -> decodeMessages(null));
+        long decodeBatchesNanos = measure("sendAnalyticsEvents decoding", () -> decodeBatches(null));
+        compare("sendAnalyticsEvents decoding", decodeMessagesNanos, decodeBatchesNanos);
+    }
+
+    /**
+     * Encodes the events as a gateway does, building a message of each event.
+     */
+    private List<byte[]> encodeMessages() {
+        List<byte[]> call = new ArrayList<>(messages.size());
+        for (AnalyticsStreamMessage message : messages) {
+            call.add(toMessage(message).toByteArray());
+        }
+        return call;
+    }
+
+    /**
+     * Encodes the events as a gateway does, building a compact event of each event and sending each string of the
+     * dictionary once per call.
+     */
+    private List<byte[]> encodeBatches() {
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> call = new ArrayList<>();
+        for (int start = 0; start < messages.size(); start += BATCH_SIZE) {
+            List<String> dictionary = new ArrayList<>();
+            AnalyticsEventBatch.Builder batch = AnalyticsEventBatch.newBuilder();
+            for (AnalyticsStreamMessage message : messages.subList(start,
+                    Math.min(start + BATCH_SIZE, messages.size()))) {
+                batch.addEvents(toEvent(message, ids, dictionary));
+            }
+            call.add(batch.addAllDictionary(dictionary).build().toByteArray());
+        }
+        return call;
+    }
+
+    /**
+     * Decodes the messages of a sendAnalytics call as {@link AnalyticsMessageObserver} does.
+     */
+    private long decodeMessages(List<Object[]> eventData) throws Exception {
+        long result = 0;
+        for (byte[] bytes : messageCall) {
+            AnalyticsStreamMessage message = AnalyticsStreamMessage.parseFrom(bytes);
+            AnalyticsStreamType streamType = AnalyticsStreamType.fromMessage(message);
+            Event event = new Event(-1, streamType.toEventData(message));
+            result += event.getData().length;
+            if (eventData != null) {
+                eventData.add(event.getData());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the batches of a sendAnalyticsEvents call as {@link AnalyticsEventBatchObserver} does.
+     */
+    private long decodeBatches(List<Object[]> eventData) throws Exception {
+        AnalyticsStringDictionary dictionary = new AnalyticsStringDictionary(Integer.parseInt(
+                AnalyticsServerConfig.DEFAULT_DICTIONARY_MAX_SIZE));
+        long result = 0;
+        for (byte[] bytes : batchCall) {
+            AnalyticsEventBatch batch = AnalyticsEventBatch.parseFrom(bytes);
+            Assert.assertTrue(dictionary.addAll(batch.getDictionaryList()));
+            List<Event> events = new ArrayList<>(batch.getEventsCount());
+            for (AnalyticsEvent analyticsEvent : batch.getEventsList()) {
+                AnalyticsStreamType streamType = AnalyticsStreamType.fromEventType(analyticsEvent.getEventType());
+                events.add(new Event(-1, streamType.toEventData(analyticsEvent, dictionary)));
+            }
+            for (Event event : events) {
+                result += event.getData().length;
+                if (eventData != null) {
+                    eventData.add(event.getData());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static AnalyticsStreamMessage toMessage(AnalyticsStreamMessage message) {
+        return AnalyticsStreamMessage.newBuilder()
+                .setMessageStreamName(message.getMessageStreamName())
+                .setMessageStreamType(message.getMessageStreamType())
+                .setMetaClientType(message.getMetaClientType())
+                .setApplicationConsumerKey(message.getApplicationConsumerKey())
+                .setApplicationName(message.getApplicationName())
+                .setApplicationId(message.getApplicationId())
+                .setApplicationOwner(message.getApplicationOwner())
+                .setApiContext(message.getApiContext())
+                .setApiName(message.getApiName())
+                .setApiVersion(message.getApiVersion())
+                .setApiResourcePath(message.getApiResourcePath())
+                .setApiResourceTemplate(message.getApiResourceTemplate())
+                .setApiMethod(message.getApiMethod())
+                .setApiCreator(message.getApiCreator())
+                .setApiCreatorTenantDomain(message.getApiCreatorTenantDomain())
+                .setApiTier(message.getApiTier())
+                .setApiHostname(message.getApiHostname())
+                .setUsername(message.getUsername())
+                .setUserTenantDomain(message.getUserTenantDomain())
+                .setUserIp(message.getUserIp())
+                .setUserAgent(message.getUserAgent())
+                .setRequestTimestamp(message.getRequestTimestamp())
+                .setThrottledOut(message.getThrottledOut())
+                .setResponseTime(message.getResponseTime())
+                .setServiceTime(message.getServiceTime())
+                .setBackendTime(message.getBackendTime())
+                .setResponseCacheHit(message.getResponseCacheHit())
+                .setResponseSize(message.getResponseSize())
+                .setProtocol(message.getProtocol())
+                .setResponseCode(message.getResponseCode())
+                .setDestination(message.getDestination())
+                .setSecurityLatency(message.getSecurityLatency())
+                .setThrottlingLatency(message.getThrottlingLatency())
+                .setRequestMedLat(message.getRequestMedLat())
+                .setResponseMedLat(message.getResponseMedLat())
+                .setBackendLatency(message.getBackendLatency())
+                .setOtherLatency(message.getOtherLatency())
+                .setGatewayType(message.getGatewayType())
+                .setLabel(message.getLabel())
+                .build();
+    }
+
+    private static AnalyticsEvent toEvent(AnalyticsStreamMessage message, Map<String, Integer> ids,
+                                          List<String> dictionary) {
+        return AnalyticsEvent.newBuilder()
+                .setEventType(AnalyticsEventType.REQUEST_EVENT)
+                .setMetaClientType(id(message.getMetaClientType(), ids, dictionary))
+                .setApplicationConsumerKey(id(message.getApplicationConsumerKey(), ids, dictionary))
+                .setApplicationName(id(message.getApplicationName(), ids, dictionary))
+                .setApplicationId(id(message.getApplicationId(), ids, dictionary))
+                .setApplicationOwner(id(message.getApplicationOwner(), ids, dictionary))
+                .setApiContext(id(message.getApiContext(), ids, dictionary))
+                .setApiName(id(message.getApiName(), ids, dictionary))
+                .setApiVersion(id(message.getApiVersion(), ids, dictionary))
+                .setApiResourcePath(message.getApiResourcePath())
+                .setApiResourceTemplate(id(message.getApiResourceTemplate(), ids, dictionary))
+                .setApiMethod(id(message.getApiMethod(), ids, dictionary))
+                .setApiCreator(id(message.getApiCreator(), ids, dictionary))
+                .setApiCreatorTenantDomain(id(message.getApiCreatorTenantDomain(), ids, dictionary))
+                .setApiTier(id(message.getApiTier(), ids, dictionary))
+                .setApiHostname(id(message.getApiHostname(), ids, dictionary))
+                .setUsername(id(message.getUsername(), ids, dictionary))
+                .setUserTenantDomain(id(message.getUserTenantDomain(), ids, dictionary))
+                .setUserIp(message.getUserIp())
+                .setUserAgent(id(message.getUserAgent(), ids, dictionary))
+                .setRequestTimestamp(message.getRequestTimestamp())
+                .setThrottledOut(message.getThrottledOut())
+                .setResponseTime(message.getResponseTime())
+                .setServiceTime(message.getServiceTime())
+                .setBackendTime(message.getBackendTime())
+                .setResponseCacheHit(message.getResponseCacheHit())
+                .setResponseSize(message.getResponseSize())
+                .setProtocol(id(message.getProtocol(), ids, dictionary))
+                .setResponseCode(message.getResponseCode())
+                .setDestination(id(message.getDestination(), ids, dictionary))
+                .setSecurityLatency(message.getSecurityLatency())
+                .setThrottlingLatency(message.getThrottlingLatency())
+                .setRequestMedLat(message.getRequestMedLat())
+                .setResponseMedLat(message.getResponseMedLat())
+                .setBackendLatency(message.getBackendLatency())
+                .setOtherLatency(message.getOtherLatency())
+                .setGatewayType(id(message.getGatewayType(), ids, dictionary))
+                .setLabel(id(message.getLabel(), ids, dictionary))
+                .build();
+    }
+
+    private static int id(String string, Map<String, Integer> ids, List<String> dictionary) {
+        if (string.isEmpty()) {
+            return 0;
+        }
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = ids.size() + 1;
+            ids.put(string, id);
+            dictionary.add(string);
+        }
+        return id;
+    }
+
+    private static AnalyticsStreamMessage createMessage(int i) {
+        int api = i % 20;
+        int application = i % 50;
+        return AnalyticsStreamMessage.newBuilder()
+                .setMessageStreamName(AnalyticsStreamType.REQUEST.getMessageStreamName())
+                .setMessageStreamType(AnalyticsEventType.REQUEST_EVENT)
+                .setMetaClientType("{\"correlationID\":\"71c60dbd-b2be-408d-9e2e-4fd11f60cfbc\"}")
+                .setApplicationConsumerKey("Q6Fjg3j8_d1ou3_EGo7BqGvwfHka" + application)
+                .setApplicationName("Application" + application)
+                .setApplicationId(String.valueOf(application + 1))
+                .setApplicationOwner("subscriber" + application % 10)
+                .setApiContext("/api" + api + "/1.0.0")
+                .setApiName("Api" + api)
+                .setApiVersion("1.0.0")
+                .setApiResourcePath("/api" + api + "/1.0.0/orders/" + i % 1000)
+                .setApiResourceTemplate("/orders/{orderId}")
+                .setApiMethod(i % 4 == 0 ? "POST" : "GET")
+                .setApiCreator("admin")
+                .setApiCreatorTenantDomain("carbon.super")
+                .setApiTier("Unlimited")
+                .setApiHostname("gateway.example.com")
+                .setUsername("user" + i % 500 + "@carbon.super")
+                .setUserTenantDomain("carbon.super")
+                .setUserIp("10.100." + (i / 256) % 256 + "." + i % 256)
+                .setUserAgent(USER_AGENTS[i % USER_AGENTS.length])
+                .setRequestTimestamp(1588000000000L + i)
+                .setThrottledOut(false)
+                .setResponseTime(i % 1000)
+                .setServiceTime(i % 10)
+                .setBackendTime(i % 900)
+                .setResponseCacheHit(i % 5 == 0)
+                .setResponseSize(512 + i % 4096)
+                .setProtocol("https-9095")
+                .setResponseCode(200 + i % 5)
+                .setDestination("https://backend.example.com:9443/api" + api)
+                .setSecurityLatency(i % 7)
+                .setThrottlingLatency(i % 3)
+                .setRequestMedLat(0)
+                .setResponseMedLat(0)
+                .setBackendLatency(i % 900)
+                .setOtherLatency(i % 11)
+                .setGatewayType("MICRO")
+                .setLabel("Production and Sandbox")
+                .build();
+    }
+
+    private static long wireSize(List<byte[]> call) {
+        long size = 0;
+        for (byte[] message : call) {
+            size += FRAME_HEADER_SIZE + message.length;
+        }
+        return size;
+    }
+
+    private static long measure(String name, Operation operation) throws Exception {
+        long result = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            result += operation.run();
+        }
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            result += operation.run();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        sink += result;
+        log.info(String.format("%s: %.2f ms per run, %.0f events per second, %.1f ns per event", name,
+                fastest / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                EVENT_COUNT * (double) TimeUnit.SECONDS.toNanos(1) / fastest, fastest / (double) EVENT_COUNT));
+        return fastest;
+    }
+
+    private static void compare(String name, long baselineNanos, long nanos) {
+        log.info(String.format("%s: %.2f times the throughput of sendAnalytics", name,
+                baselineNanos / (double) nanos));
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.LineOffsetInputStream;
+import org.wso2.extension.siddhi.io.mgwfile.util.UsageEventReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parses a usage file in parallel. A chunk reader thread reads the inflated file into line aligned chunks, the
+ * chunks are parsed by a shared pool of parser threads and {@link #nextChunk()} returns the parsed chunks in the order
+ * of the file, so that the events of each stream id are published in the same order as they are in the file.
+ */
+public class MGWFileChunkPipeline implements Closeable {
+
+    private static final Log log = LogFactory.getLog(MGWFileChunkPipeline.class);
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final ParsedChunk END_OF_FILE = new ParsedChunk(new ArrayList<>(), new long[0], new ArrayList<>(),
+            0, 0);
+
+    // the threads are created by the first pipeline after the component is started, see shutdown()
+    private static ExecutorService chunkReaderPool;
+    private static ExecutorService chunkParserPool;
+    private static int parserThreadCount;
+
+    private final ExecutorService parserPool;
+    private final BlockingQueue<Future<ParsedChunk>> parsedChunks;
+    private final Future<?> chunkReader;
+    private final AtomicBoolean chunkReaderStarted = new AtomicBoolean();
+    private final CountDownLatch chunkReaderFinished = new CountDownLatch(1);
+    private volatile boolean closed;
+    private long lineOffset;
+    private boolean completed;
+
+    /**
+     * Starts reading and parsing the given file content.
+     *
+     * @param content    UTF-8 encoded content of the usage file after the given offset
+     * @param lineOffset number of lines of the file before the given offset
+     * @param byteOffset offset in bytes of the given content within the file
+     */
+    public MGWFileChunkPipeline(InputStream content, long lineOffset, long byteOffset) {
+        ExecutorService readerPool;
+        synchronized (MGWFileChunkPipeline.class) {
+            if (chunkReaderPool == null) {
+                parserThreadCount = Math.max(1, Integer.parseInt(MGWFileSourceDS.getParserThreadCount()));
+                chunkReaderPool = Executors.newCachedThreadPool(
+                        new MGWFileDataRetrieverThreadFactory("mgwfile-chunk-reader-thread"));
+                chunkParserPool = Executors.newFixedThreadPool(parserThreadCount,
+                        new MGWFileDataRetrieverThreadFactory("mgwfile-chunk-parser-thread"));
+            }
+            readerPool = chunkReaderPool;
+            this.parserPool = chunkParserPool;
+            // bound the chunks held in memory for a single file
+            this.parsedChunks = new ArrayBlockingQueue<>(2 * parserThreadCount);
+        }
+        this.lineOffset = lineOffset;
+        this.chunkReader = readerPool.submit(new ChunkReader(new LineOffsetInputStream(content, byteOffset)));
+    }
+
+    /**
+     * Returns whether the usage files should be parsed in parallel.
+     *
+     * @return true if parser threads are configured
+     */
+    public static boolean isEnabled() {
+        return Integer.parseInt(MGWFileSourceDS.getParserThreadCount()) > 0;
+    }
+
+    /**
+     * Stops the chunk reader and parser threads, when the component is stopped. The pipelines which are still
+     * running are stopped as well. The threads are created again by the next pipeline.
+     */
+    public static synchronized void shutdown() {
+        if (chunkReaderPool != null) {
+            // complete the tasks which would never run, so that no pipeline waits for them
+            cancel(chunkReaderPool.shutdownNow());
+            cancel(chunkParserPool.shutdownNow());
+            chunkReaderPool = null;
+            chunkParserPool = null;
+        }
+    }
+
+    private static void cancel(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            if (task instanceof Future) {
+                ((Future<?>) task).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the next parsed chunk of the file, waiting until it is parsed.
+     *
+     * @return next parsed chunk or null if the end of the file is reached
+     * @throws IOException            if an error occurred while reading the file
+     * @throws MGWFileSourceException if the pipeline is interrupted or the chunk cannot be parsed
+     */
+    public ParsedChunk nextChunk() throws IOException, MGWFileSourceException {
+        if (completed) {
+            return null;
+        }
+        try {
+            ParsedChunk chunk = parsedChunks.take().get();
+            if (chunk == END_OF_FILE) {
+                completed = true;
+                return null;
+            }
+            chunk.setLineOffset(lineOffset);
+            lineOffset += chunk.lineCount;
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MGWFileSourceException("Interrupted while waiting for the next chunk of the file", e);
+        } catch (CancellationException e) {
+            throw new MGWFileSourceException("Parsing the file is stopped", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new MGWFileSourceException("Error occurred while parsing a chunk of the file", e.getCause());
+        }
+    }
+
+    /**
+     * Stops reading the file if it has not been read completely. Returns once the chunk reader thread no longer
+     * reads the file, so that the file can be closed by the caller.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        chunkReader.cancel(true);
+        if (chunkReaderStarted.compareAndSet(false, true)) {
+            // the chunk reader will not run anymore
+            chunkReaderFinished.countDown();
+        }
+        // the chunk reader may be waiting for room in the queue
+        discardParsedChunks();
+        try {
+            chunkReaderFinished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the usage file reader to stop.");
+        }
+        discardParsedChunks();
+    }
+
+    private void discardParsedChunks() {
+        Future<ParsedChunk> chunk;
+        while ((chunk = parsedChunks.poll()) != null) {
+            chunk.cancel(false);
+        }
+    }
+
+    /**
+     * Reads the file into line aligned chunks and submits them to the parser threads.
+     */
+    private class ChunkReader implements Runnable {
+
+        private final LineOffsetInputStream lineOffsets;
+        private final Reader reader;
+
+        private ChunkReader(LineOffsetInputStream content) {
+            this.lineOffsets = content;
+            this.reader = new InputStreamReader(content, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void run() {
+            if (!chunkReaderStarted.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                char[] chunk = new char[CHUNK_SIZE];
+                int length = 0;
+                while (!closed) {
+                    int read = reader.read(chunk, length, chunk.length - length);
+                    if (read < 0) {
+                        if (length > 0) {
+                            // the last line has no new line, and ends with the file
+                            parsedChunks.put(parserPool.submit(new ChunkParser(chunk, length,
+                                    lineOffsets.getPosition())));
+                        }
+                        parsedChunks.put(CompletableFuture.completedFuture(END_OF_FILE));
+                        return;
+                    }
+                    length += read;
+                    if (length < chunk.length) {
+                        continue;
+                    }
+                    int lastLineEnd = length - 1;
+                    while (lastLineEnd >= 0 && chunk[lastLineEnd] != '\n') {
+                        lastLineEnd--;
+                    }
+                    if (lastLineEnd < 0) {
+                        // a single line does not fit into the chunk
+                        char[] expanded = new char[chunk.length * 2];
+                        System.arraycopy(chunk, 0, expanded, 0, length);
+                        chunk = expanded;
+                        continue;
+                    }
+                    char[] nextChunk = new char[CHUNK_SIZE];
+                    int remaining = length - lastLineEnd - 1;
+                    System.arraycopy(chunk, lastLineEnd + 1, nextChunk, 0, remaining);
+                    parsedChunks.put(parserPool.submit(new ChunkParser(chunk, lastLineEnd + 1,
+                            takeLineEnds(chunk, lastLineEnd + 1))));
+                    chunk = nextChunk;
+                    length = remaining;
+                }
+            } catch (InterruptedException | RejectedExecutionException e) {
+                if (!closed) {
+                    // the component is stopped while the file is being read
+                    discardParsedChunks();
+                    CompletableFuture<ParsedChunk> failure = new CompletableFuture<>();
+                    failure.completeExceptionally(new MGWFileSourceException("Reading the usage file is stopped"));
+                    parsedChunks.offer(failure);
+                }
+                log.debug("Stopped reading the usage file as the pipeline is closed.");
+            } catch (IOException e) {
+                CompletableFuture<ParsedChunk> failure = new CompletableFuture<>();
+                failure.completeExceptionally(e);
+                try {
+                    parsedChunks.put(failure);
+                } catch (InterruptedException e1) {
+                    log.debug("Stopped reading the usage file as the pipeline is closed.");
+                }
+            } finally {
+                chunkReaderFinished.countDown();
+            }
+        }
+
+        /**
+         * Takes the byte offsets of the lines of a chunk from the bytes read.
+         *
+         * @return byte offset of the end of the chunk
+         */
+        private long takeLineEnds(char[] chunk, int length) {
+            long lineEnd = -1;
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] == '\n') {
+                    lineEnd = lineOffsets.nextLineEnd();
+                }
+            }
+            return lineEnd;
+        }
+    }
+
+    /**
+     * Decodes the events of a chunk.
+     */
+    private static class ChunkParser implements Callable<ParsedChunk> {
+
+        private final char[] chunk;
+        private final int length;
+        private final long endByteOffset;
+
+        private ChunkParser(char[] chunk, int length, long endByteOffset) {
+            this.chunk = chunk;
+            this.length = length;
+            this.endByteOffset = endByteOffset;
+        }
+
+        @Override
+        public ParsedChunk call() throws IOException {
+            UsageEventReader eventReader = new UsageEventReader(chunk, length);
+            List<Event> events = new ArrayList<>();
+            long[] lineNumbers = new long[1024];
+            List<LineError> errors = new ArrayList<>();
+            while (eventReader.nextLine()) {
+                try {
+                    eventReader.parseLine();
+                } catch (MGWFileSourceException e) {
+                    errors.add(new LineError(eventReader.getLineNumber(), eventReader.getLine(), e, true));
+                    continue;
+                }
+                try {
+                    events.add(eventReader.createEvent());
+                } catch (MGWFileSourceException e) {
+                    errors.add(new LineError(eventReader.getLineNumber(), eventReader.getLine(), e, false));
+                    continue;
+                }
+                if (events.size() > lineNumbers.length) {
+                    lineNumbers = Arrays.copyOf(lineNumbers, lineNumbers.length * 2);
+                }
+                lineNumbers[events.size() - 1] = eventReader.getLineNumber();
+            }
+            return new ParsedChunk(events, lineNumbers, errors, eventReader.getLineNumber(), endByteOffset);
+        }
+    }
+
+    /**
+     * Events decoded from a chunk of the file along with the lines which could not be decoded.
+     */
+    public static class ParsedChunk {
+
+        private final List<Event> events;
+        // line numbers of the events within the chunk
+        private final long[] lineNumbers;
+        private final List<LineError> errors;
+        private final long lineCount;
+        private final long endByteOffset;
+        private long lineOffset;
+
+        private ParsedChunk(List<Event> events, long[] lineNumbers, List<LineError> errors, long lineCount,
+                            long endByteOffset) {
+            this.events = events;
+            this.lineNumbers = lineNumbers;
+            this.errors = errors;
+            this.lineCount = lineCount;
+            this.endByteOffset = endByteOffset;
+        }
+
+        private void setLineOffset(long lineOffset) {
+            this.lineOffset = lineOffset;
+        }
+
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        public List<LineError> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the line number in the file of an event of this chunk.
+         *
+         * @param index index of the event in {@link #getEvents()}
+         * @return line number within the file
+         */
+        public long getEventLineNumber(int index) {
+            return lineOffset + lineNumbers[index];
+        }
+
+        /**
+         * Returns the line number in the file of a line in this chunk.
+         *
+         * @param lineNumber line number within the chunk
+         * @return line number within the file
+         */
+        public long getFileLineNumber(long lineNumber) {
+            return lineOffset + lineNumber;
+        }
+
+        /**
+         * Returns the line number in the file of the last line in this chunk.
+         *
+         * @return line number within the file
+         */
+        public long getLastFileLineNumber() {
+            return lineOffset + lineCount;
+        }
+
+        /**
+         * Returns the offset in bytes of the end of this chunk within the file, counted from the bytes read.
+         *
+         * @return byte offset of the next chunk
+         */
+        public long getEndByteOffset() {
+            return endByteOffset;
+        }
+    }
+
+    /**
+     * A line of a chunk which could not be decoded.
+     */
+    public static class LineError {
+
+        private final long lineNumber;
+        private final String line;
+        private final MGWFileSourceException cause;
+        private final boolean malformed;
+
+        private LineError(long lineNumber, String line, MGWFileSourceException cause, boolean malformed) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.cause = cause;
+            this.malformed = malformed;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * Returns whether the line is not in the expected format, rather than its event could not be decoded.
+         *
+         * @return true if the line is not in the expected format
+         */
+        public boolean isMalformed() {
+            return malformed;
+        }
+
+        public MGWFileSourceException getCause() {
+            return cause;
+        }
+    }
+}
@@ -26,15 +26,15 @@ import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
-import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+import org.wso2.extension.siddhi.io.mgwfile.util.BinaryUsageEventReader;
+import org.wso2.extension.siddhi.io.mgwfile.util.UsageEventReader;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -44,110 +44,372 @@ import java.util.zip.ZipInputStream;
 public class MGWFileDataRetriever implements Runnable {
 
     private static final Log log = LogFactory.getLog(MGWFileDataRetriever.class);
+    // the content is read from the database or the content store in blocks of this size, which are timed as fetch time
+    private static final int CONTENT_BUFFER_SIZE = 64 * 1024;
 
     private MGWFileInfoDTO infoDTO;
+    private volatile boolean completed;
+    private final long checkpointInterval;
+    private final long checkpointLines;
+    private long nextCheckpointTime;
+    private long nextCheckpointLine;
+    // time spent opening and reading the content, which is also updated by the chunk reader thread of the pipeline
+    private long fetchTime;
+    private long publishTime;
+    private final MGWFileLineErrors lineErrors;
+    // stream id of the previous event and where it was resolved, see resolve(String)
+    private MGWFileStreamDispatchTable dispatchTable;
+    private String lastStreamId;
+    private int lastOrdinal = -1;
 
     public MGWFileDataRetriever(MGWFileInfoDTO infoDTO) throws MGWFileSourceException {
         this.infoDTO = infoDTO;
+        this.lineErrors = new MGWFileLineErrors(infoDTO);
+        // the lease is renewed along with the checkpoints, hence checkpoint well before the lease expires
+        long leaseRenewalInterval = Long.parseLong(MGWFileSourceDS.getLeaseDuration()) / 3;
+        long interval = Long.parseLong(MGWFileSourceDS.getCheckpointInterval());
+        this.checkpointInterval = interval > 0 ? Math.min(interval, leaseRenewalInterval) : leaseRenewalInterval;
+        // checkpoints are only time based if the line count is not positive
+        this.checkpointLines = Long.parseLong(MGWFileSourceDS.getCheckpointLines());
+        this.nextCheckpointTime = System.currentTimeMillis() + checkpointInterval;
+        this.nextCheckpointLine = infoDTO.getProcessedLines() + checkpointLines;
     }
 
     @Override
     public void run() {
         log.info("Started publishing API usage in file : " + infoDTO.toString());
+        long startTime = System.nanoTime();
         publishEvents();
+        lineErrors.logSummary();
+        MGWFileSourceMetrics.getInstance().recordFetchTime(fetchTime);
+        long parseTime = System.nanoTime() - startTime - fetchTime - publishTime;
+        MGWFileSourceMetrics.getInstance().recordFile(infoDTO.getFileName(), completed, lineErrors.getErrorCount(),
+                Math.max(0, parseTime));
+    }
+
+    public MGWFileInfoDTO getInfoDTO() {
+        return infoDTO;
+    }
+
+    /**
+     * Returns whether all the events of the file are published.
+     *
+     * @return true if the file is completed
+     */
+    public boolean isCompleted() {
+        return completed;
     }
 
     private void publishEvents() {
 
-        InputStreamReader inputStreamReader = null;
-        BufferedReader bufferedReader = null;
         InputStream fileContentStream = null;
         ZipInputStream zipInputStream = null;
         try {
             //Get Content of the file and start processing
+            long fetchStartTime = System.nanoTime();
             fileContentStream = MGWFileSourceDAO.getFileContent(infoDTO);
+            fetchTime = System.nanoTime() - fetchStartTime;
             if (fileContentStream == null) {
                 log.warn("No content available in the file : " + infoDTO.toString()
                         + ". Therefore, not publishing the record.");
-                MGWFileSourceDAO.updateCompletion(infoDTO);
+                completed = true;
                 return;
             }
-            zipInputStream = new ZipInputStream(fileContentStream);
+            zipInputStream = new ZipInputStream(new BufferedInputStream(new FetchTimeInputStream(fileContentStream),
+                    CONTENT_BUFFER_SIZE));
             ZipEntry zipEntry = zipInputStream.getNextEntry();
+            if (zipEntry == null) {
+                fail("Uploaded file : " + infoDTO.toString() + " is not a zip file or has no entries.");
+                return;
+            }
             String uploadedZipFileName = zipEntry.getName();
             if (!uploadedZipFileName.isEmpty()) {
                 File name = new File(uploadedZipFileName);
                 uploadedZipFileName = name.getName();
             }
 
-            if (MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME.equals(uploadedZipFileName)) {
-                InputStream inputStream = zipInputStream;
-                inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-                bufferedReader = new BufferedReader(inputStreamReader);
-                String readLine;
-                String streamId, timeStamp, metaData, correlationData, payloadData;
-                String[] elements;
-                long lineNumber = 0;
-                while ((readLine = bufferedReader.readLine()) != null) {
-                    lineNumber++;
-                    try {
-                        elements = readLine.split(MGWFileSourceConstants.EVENT_SEPARATOR);
-                        //StreamID
-                        streamId = elements[0].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //Timestamp
-                        timeStamp = elements[1].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //MetaData
-                        metaData = elements[2].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //correlationData
-                        correlationData = elements[3].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //PayloadData
-                        payloadData = elements[4].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                    } catch (RuntimeException e) {
-                        log.error("Event format does not match with the expected format in line number : " + lineNumber
-                                + " on file : " + infoDTO);
-                        // skip this line and continue with the next event in the file
-                        continue;
+            boolean binaryFormat = MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME.equals(uploadedZipFileName);
+            if (binaryFormat || MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME.equals(uploadedZipFileName)) {
+                if (infoDTO.getProcessedOffset() > 0) {
+                    // resume after the last checkpoint without decoding the lines which are already published
+                    long skipped = zipInputStream.skip(infoDTO.getProcessedOffset());
+                    if (skipped < infoDTO.getProcessedOffset()) {
+                        log.warn("Checkpoint of file : " + infoDTO.toString() + " at offset : "
+                                + infoDTO.getProcessedOffset() + " is beyond the end of the file. Therefore, not "
+                                + "publishing the rest of the file.");
+                        completed = true;
+                        return;
                     }
-                    SourceEventListener eventSource = MGWFileSourceRegistrationManager.
-                            getStreamSpecificEventListenerMap().get(streamId);
-                    if (eventSource != null) {
-                        try {
-                            if (log.isDebugEnabled()) {
-                                log.debug("Sending events to the stream id: " + streamId);
-                            }
-                            eventSource.onEvent(new Event(streamId, Long.parseLong(timeStamp),
-                                    (Object[]) FileDataRetrieverUtil.createMetaData(metaData),
-                                    (Object[]) FileDataRetrieverUtil.createMetaData(correlationData),
-                                    FileDataRetrieverUtil.createPayload(streamId, payloadData)), null);
-                        } catch (NumberFormatException e) {
-                            log.error("Error occurred while executing onEvent for event : " + Arrays.toString(elements),
-                                    e);
-                        }
+                    log.info("Resuming publishing API usage in file : " + infoDTO.toString() + " after line : "
+                            + infoDTO.getProcessedLines());
+                }
+                MGWFileEventBatcher eventBatcher = new MGWFileEventBatcher(
+                        Integer.parseInt(MGWFileSourceDS.getEventBatchSize()),
+                        Long.parseLong(MGWFileSourceDS.getEventBatchLingerTime()));
+                try {
+                    if (binaryFormat) {
+                        publishBinary(zipInputStream, eventBatcher);
                     } else {
-                        log.error("Unable to find eventsource for stream id: " + streamId);
+                        if (MGWFileChunkPipeline.isEnabled()) {
+                            publishInParallel(zipInputStream, eventBatcher);
+                        } else {
+                            publish(zipInputStream, eventBatcher);
+                        }
                     }
+                } finally {
+                    // deliver the pending events even if reading the file fails midway
+                    eventBatcher.flush();
+                    publishTime = eventBatcher.getPublishTime();
                 }
             } else {
-                log.error(
-                        "Uploaded zip file name is: [ " + uploadedZipFileName + "], but the expected file name is: [ " +
-                        MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME + "]");
-                throw new MGWFileSourceException(
-                        "Error occurred since the uploaded zip file name is different from what is expected.");
-
+                fail("Uploaded zip file name is: [ " + uploadedZipFileName + "], but the expected file name is: [ " +
+                        MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME + "] or [ " +
+                        MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME + "]");
+                return;
             }
-            //Update the database
-            MGWFileSourceDAO.updateCompletion(infoDTO);
+            //The completion is updated in the database by the reader task along with other completed files
+            completed = true;
             log.info("Completed publishing API Usage from file : " + infoDTO.toString());
         } catch (IOException e) {
             log.error("Error occurred while reading the API Usage file.", e);
         } catch (MGWFileSourceException e) {
             log.error("Error occurred while publishing events to streams", e);
         } finally {
-            IOUtils.closeQuietly(inputStreamReader);
-            IOUtils.closeQuietly(bufferedReader);
             IOUtils.closeQuietly(fileContentStream);
             IOUtils.closeQuietly(zipInputStream);
         }
     }
 
+    /**
+     * Marks the file as failed, as its content can never be published, rather than leaving it to be claimed again.
+     *
+     * @param message reason of the failure
+     */
+    private void fail(String message) {
+        log.error(message + " Therefore, the file is marked as failed.");
+        try {
+            MGWFileSourceDAO.updateFailure(infoDTO);
+        } catch (MGWFileSourceException e) {
+            log.error("Error occurred while marking file : " + infoDTO.toString() + " as failed.", e);
+        }
+    }
+
+    /**
+     * Reads, decodes and publishes the events of the file in the current thread.
+     */
+    private void publish(InputStream content, MGWFileEventBatcher eventBatcher)
+            throws IOException, MGWFileSourceException {
+        UsageEventReader eventReader = new UsageEventReader(content, infoDTO.getProcessedLines(),
+                infoDTO.getProcessedOffset());
+        try {
+            while (eventReader.nextLine()) {
+                publishLine(eventReader, eventBatcher);
+                if (isCheckpointDue(eventReader.getLineNumber())) {
+                    checkpoint(eventReader.getLineNumber(), eventReader.getByteOffset(), eventBatcher);
+                }
+            }
+        } catch (IOException e) {
+            checkpointOnFailure(eventReader.getLineNumber(), eventReader.getByteOffset(), eventBatcher);
+            throw e;
+        }
+    }
+
+    private void publishLine(UsageEventReader eventReader, MGWFileEventBatcher eventBatcher) {
+        String streamId;
+        try {
+            streamId = eventReader.parseLine();
+        } catch (MGWFileSourceException e) {
+            lineErrors.malformedLine(eventReader.getLineNumber(), eventReader.getLine(), e);
+            // skip this line and continue with the next event in the file
+            return;
+        }
+        SourceEventListener eventSource = resolve(streamId);
+        if (eventSource != null) {
+            try {
+                eventBatcher.add(lastOrdinal, streamId, eventSource, eventReader.createEvent());
+            } catch (MGWFileSourceException e) {
+                lineErrors.undecodableEvent(eventReader.getLineNumber(), eventReader.getLine(), e);
+            }
+        } else {
+            lineErrors.unknownStream(eventReader.getLineNumber(), streamId, eventReader.getLine());
+        }
+    }
+
+    /**
+     * Publishes the events of the file, which are decoded in parallel by {@link MGWFileChunkPipeline}, in the order
+     * of the file.
+     */
+    private void publishInParallel(InputStream content, MGWFileEventBatcher eventBatcher)
+            throws IOException, MGWFileSourceException {
+        MGWFileChunkPipeline pipeline = new MGWFileChunkPipeline(content, infoDTO.getProcessedLines(),
+                infoDTO.getProcessedOffset());
+        long processedLines = infoDTO.getProcessedLines();
+        long processedOffset = infoDTO.getProcessedOffset();
+        try {
+            MGWFileChunkPipeline.ParsedChunk chunk;
+            while ((chunk = pipeline.nextChunk()) != null) {
+                for (MGWFileChunkPipeline.LineError error : chunk.getErrors()) {
+                    long lineNumber = chunk.getFileLineNumber(error.getLineNumber());
+                    if (error.isMalformed()) {
+                        lineErrors.malformedLine(lineNumber, error.getLine(), error.getCause());
+                    } else {
+                        lineErrors.undecodableEvent(lineNumber, error.getLine(), error.getCause());
+                    }
+                }
+                List<Event> events = chunk.getEvents();
+                for (int i = 0; i < events.size(); i++) {
+                    publishEvent(events.get(i), chunk.getEventLineNumber(i), eventBatcher);
+                }
+                processedLines = chunk.getLastFileLineNumber();
+                processedOffset = chunk.getEndByteOffset();
+                if (isCheckpointDue(processedLines)) {
+                    checkpoint(processedLines, processedOffset, eventBatcher);
+                }
+            }
+        } catch (IOException e) {
+            checkpointOnFailure(processedLines, processedOffset, eventBatcher);
+            throw e;
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Publishes the events of a file in the binary usage file format. The blocks of the file are decoded in the
+     * current thread, and the checkpoints are recorded at the block boundaries.
+     */
+    private void publishBinary(InputStream content, MGWFileEventBatcher eventBatcher)
+            throws IOException, MGWFileSourceException {
+        BinaryUsageEventReader eventReader = new BinaryUsageEventReader(content, infoDTO.getProcessedLines(),
+                infoDTO.getProcessedOffset());
+        try {
+            while (eventReader.nextBlock()) {
+                // the binary format has no lines, the number of the event is reported instead
+                List<MGWFileSourceException> errors = eventReader.getErrors();
+                for (int i = 0; i < errors.size(); i++) {
+                    lineErrors.undecodableEvent(eventReader.getErrorEventNumber(i), null, errors.get(i));
+                }
+                List<Event> events = eventReader.getEvents();
+                for (int i = 0; i < events.size(); i++) {
+                    publishEvent(events.get(i), eventReader.getEventNumber(i), eventBatcher);
+                }
+                if (isCheckpointDue(eventReader.getEventCount())) {
+                    checkpoint(eventReader.getEventCount(), eventReader.getByteOffset(), eventBatcher);
+                }
+            }
+        } catch (IOException e) {
+            checkpointOnFailure(eventReader.getEventCount(), eventReader.getByteOffset(), eventBatcher);
+            throw e;
+        } finally {
+            eventReader.close();
+        }
+    }
+
+    private void publishEvent(Event event, long lineNumber, MGWFileEventBatcher eventBatcher) {
+        String streamId = event.getStreamId();
+        SourceEventListener eventSource = resolve(streamId);
+        if (eventSource != null) {
+            eventBatcher.add(lastOrdinal, streamId, eventSource, event);
+        } else {
+            lineErrors.unknownStream(lineNumber, streamId, event);
+        }
+    }
+
+    /**
+     * Returns the listener of a stream id and keeps its ordinal in {@code lastOrdinal}. The readers reuse the stream
+     * id instance of the previous event when it is the same, hence the ordinal is only looked up when the stream id
+     * changes or a consumer is registered or unregistered, rather than for each event.
+     *
+     * @param streamId stream id of the event
+     * @return listener of the stream, or null if the stream is not registered
+     */
+    private SourceEventListener resolve(String streamId) {
+        MGWFileStreamDispatchTable currentTable = MGWFileSourceRegistrationManager.getDispatchTable();
+        if (currentTable != dispatchTable || streamId != lastStreamId) {
+            dispatchTable = currentTable;
+            lastStreamId = streamId;
+            lastOrdinal = currentTable.ordinalOf(streamId);
+        }
+        return currentTable.getListener(lastOrdinal);
+    }
+
+    private boolean isCheckpointDue(long processedLines) {
+        return (checkpointLines > 0 && processedLines >= nextCheckpointLine)
+                || System.currentTimeMillis() >= nextCheckpointTime;
+    }
+
+    /**
+     * Records the checkpoint up to which the file is published and renews the lease of the file. The pending events
+     * are delivered first, so that the file is never resumed after events which were not delivered.
+     *
+     * @param processedLines  number of lines whose events are delivered or pending in the batcher
+     * @param processedOffset offset in bytes of the line after the given lines
+     * @param eventBatcher    batcher holding the pending events
+     * @throws MGWFileSourceException if the file is no longer leased to this node
+     */
+    private void checkpoint(long processedLines, long processedOffset, MGWFileEventBatcher eventBatcher)
+            throws MGWFileSourceException {
+        eventBatcher.flush();
+        if (!MGWFileSourceDAO.renewLease(infoDTO, processedLines, processedOffset)) {
+            throw new MGWFileSourceException("Lease of the file : " + infoDTO.toString() + " has expired and the "
+                    + "file is claimed by another node. Stopped publishing the file.");
+        }
+        nextCheckpointTime = System.currentTimeMillis() + checkpointInterval;
+        nextCheckpointLine = processedLines + checkpointLines;
+    }
+
+    /**
+     * Records the last checkpoint of a file which could not be read completely, so that the file is resumed from
+     * there once its lease expires.
+     */
+    private void checkpointOnFailure(long processedLines, long processedOffset, MGWFileEventBatcher eventBatcher) {
+        try {
+            checkpoint(processedLines, processedOffset, eventBatcher);
+        } catch (MGWFileSourceException e) {
+            log.error("Error occurred while recording the checkpoint of file : " + infoDTO.toString(), e);
+        }
+    }
+
+    /**
+     * Adds the time spent reading the content of the file to the fetch time, so that reading a BLOB lazily is not
+     * counted as parse time. The content is read in blocks of {@link #CONTENT_BUFFER_SIZE}, so that timing the reads
+     * does not add to the time of decoding the file.
+     */
+    private class FetchTimeInputStream extends FilterInputStream {
+
+        private FetchTimeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return in.read();
+            } finally {
+                fetchTime += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return in.read(bytes, offset, length);
+            } finally {
+                fetchTime += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return in.skip(n);
+            } finally {
+                fetchTime += System.nanoTime() - startTime;
+            }
+        }
+    }
+
 }
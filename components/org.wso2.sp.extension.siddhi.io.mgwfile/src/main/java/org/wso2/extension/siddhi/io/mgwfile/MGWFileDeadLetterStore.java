@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rolling file to which the lines of the uploaded files which could not be published are written, so that they can
+ * be inspected or replayed without logging each of them. Each record holds the name of the uploaded file, the line
+ * number, the reason and the line, separated by tabs. Once the file exceeds the configured size it is renamed with
+ * the suffix '.1', replacing the previous rolled over file.
+ */
+public class MGWFileDeadLetterStore {
+
+    private static final Log log = LogFactory.getLog(MGWFileDeadLetterStore.class);
+    private static final String DEFAULT_DIRECTORY_NAME = "mgw-usage-dead-letter";
+    private static volatile MGWFileDeadLetterStore instance;
+
+    private final File file;
+    private final File rolledFile;
+    private final long maxSize;
+    private Writer writer;
+    private long size;
+
+    private MGWFileDeadLetterStore(File directory, long maxSize) {
+        this.file = new File(directory, MGWFileSourceConstants.DEAD_LETTER_FILE_NAME);
+        this.rolledFile = new File(directory, MGWFileSourceConstants.DEAD_LETTER_FILE_NAME + ".1");
+        this.maxSize = maxSize;
+    }
+
+    public static MGWFileDeadLetterStore getInstance() {
+        if (instance == null) {
+            synchronized (MGWFileDeadLetterStore.class) {
+                if (instance == null) {
+                    String directory = MGWFileSourceDS.getDeadLetterDirectory();
+                    if (StringUtils.isEmpty(directory)) {
+                        directory = new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY_NAME).getPath();
+                    }
+                    String maxSize = MGWFileSourceDS.getDeadLetterMaxSize();
+                    instance = new MGWFileDeadLetterStore(new File(directory), maxSize == null
+                            ? Long.parseLong(MGWFileSourceConstants.DEFAULT_DEAD_LETTER_MAX_SIZE)
+                            : Long.parseLong(maxSize));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Writes a line which could not be published. The record is buffered until {@link #flush()} is called or the
+     * buffer is full.
+     *
+     * @param fileName   name of the uploaded file
+     * @param lineNumber number of the line in the uploaded file, or 0 if it is not known
+     * @param reason     reason why the line could not be published
+     * @param line       content of the line, or null if it is not available
+     * @return false if the record could not be written
+     */
+    public synchronized boolean write(String fileName, long lineNumber, String reason, String line) {
+        // the line is the last field, hence only the reason has to be kept free of separators
+        String record = fileName + '\t' + lineNumber + '\t' + toSingleLine(reason) + '\t'
+                + (line == null ? "" : line) + '\n';
+        try {
+            if (writer == null) {
+                open();
+            } else if (size >= maxSize) {
+                roll();
+            }
+            writer.write(record);
+            // approximated by the number of characters, which is exact for ASCII content
+            size += record.length();
+            return true;
+        } catch (IOException e) {
+            log.warn("Error occurred while writing to the dead letter file : " + file.getPath(), e);
+            IOUtils.closeQuietly(writer);
+            writer = null;
+            return false;
+        }
+    }
+
+    /**
+     * Flushes the buffered records to the file.
+     */
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Error occurred while flushing the dead letter file : " + file.getPath(), e);
+            IOUtils.closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    /**
+     * Closes the file. It is opened again when the next record is written.
+     */
+    public synchronized void close() {
+        flush();
+        IOUtils.closeQuietly(writer);
+        writer = null;
+    }
+
+    /**
+     * Returns the path of the file to which the records are written.
+     *
+     * @return path of the dead letter file
+     */
+    public String getPath() {
+        return file.getPath();
+    }
+
+    private void open() throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the dead letter directory : " + directory.getPath());
+        }
+        if (file.length() >= maxSize) {
+            rename();
+        }
+        size = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                StandardCharsets.UTF_8));
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+        rename();
+        open();
+    }
+
+    private void rename() throws IOException {
+        if (rolledFile.exists() && !rolledFile.delete()) {
+            throw new IOException("Unable to delete the rolled over dead letter file : " + rolledFile.getPath());
+        }
+        if (!file.renameTo(rolledFile)) {
+            throw new IOException("Unable to roll over the dead letter file : " + file.getPath());
+        }
+    }
+
+    private static String toSingleLine(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+    }
+}
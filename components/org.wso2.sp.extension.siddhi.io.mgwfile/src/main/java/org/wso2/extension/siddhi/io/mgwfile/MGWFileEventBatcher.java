@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the events read from a usage file per stream id and delivers them to the stream's
+ * {@link SourceEventListener} as an event array, either when the batch is full or when its oldest event has waited
+ * longer than the configured linger time. This class is not thread safe and is meant to be used by a single file
+ * reading thread.
+ */
+public class MGWFileEventBatcher {
+
+    private static final Log log = LogFactory.getLog(MGWFileEventBatcher.class);
+
+    private final int batchSize;
+    private final long lingerTime;
+    // indexed by the ordinals of the stream ids in the MGWFileStreamDispatchTable
+    private Batch[] batches = new Batch[0];
+    private long lastLingerCheckTime;
+    private long publishTime;
+
+    public MGWFileEventBatcher(int batchSize, long lingerTime) {
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerTime = lingerTime;
+        this.lastLingerCheckTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds an event to the batch of its stream id, delivering the batch if it is full.
+     *
+     * @param ordinal  ordinal of the stream id in the {@link MGWFileStreamDispatchTable}
+     * @param streamId stream id of the event
+     * @param listener listener of the stream
+     * @param event    event to be delivered
+     */
+    public void add(int ordinal, String streamId, SourceEventListener listener, Event event) {
+        if (ordinal >= batches.length) {
+            batches = Arrays.copyOf(batches, ordinal + 1);
+        }
+        Batch batch = batches[ordinal];
+        if (batch == null) {
+            batch = new Batch(streamId, batchSize);
+            batches[ordinal] = batch;
+        }
+        long currentTime = System.currentTimeMillis();
+        batch.add(listener, event, currentTime);
+        if (batch.count == batchSize) {
+            publishTime += batch.flush();
+        }
+        if (currentTime - lastLingerCheckTime >= lingerTime) {
+            lastLingerCheckTime = currentTime;
+            for (Batch pendingBatch : batches) {
+                if (pendingBatch != null && pendingBatch.count > 0
+                        && currentTime - pendingBatch.firstEventTime >= lingerTime) {
+                    publishTime += pendingBatch.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers all pending events.
+     */
+    public void flush() {
+        for (Batch batch : batches) {
+            if (batch != null) {
+                publishTime += batch.flush();
+            }
+        }
+    }
+
+    /**
+     * Returns the time spent on delivering the events so far.
+     *
+     * @return time in nanoseconds
+     */
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    /**
+     * Pending events of a single stream id.
+     */
+    private static class Batch {
+
+        private final String streamId;
+        private final Event[] events;
+        private SourceEventListener listener;
+        private int count;
+        private long firstEventTime;
+
+        private Batch(String streamId, int batchSize) {
+            this.streamId = streamId;
+            this.events = new Event[batchSize];
+        }
+
+        private void add(SourceEventListener eventListener, Event event, long currentTime) {
+            if (listener != eventListener) {
+                // the stream was registered again, deliver the events received so far to the previous listener
+                flush();
+                listener = eventListener;
+            }
+            if (count == 0) {
+                firstEventTime = currentTime;
+            }
+            events[count++] = event;
+        }
+
+        /**
+         * Delivers the pending events.
+         *
+         * @return time in nanoseconds taken to deliver the events
+         */
+        private long flush() {
+            if (count == 0) {
+                return 0;
+            }
+            Event[] batch = new Event[count];
+            System.arraycopy(events, 0, batch, 0, count);
+            Arrays.fill(events, 0, count, null);
+            count = 0;
+            if (log.isDebugEnabled()) {
+                log.debug("Sending " + batch.length + " events to the stream id: " + streamId);
+            }
+            long startTime = System.nanoTime();
+            listener.onEvent(batch, null);
+            long publishTime = System.nanoTime() - startTime;
+            MGWFileSourceMetrics.getInstance().recordPublishedEvents(streamId, batch.length, publishTime);
+            return publishTime;
+        }
+    }
+}
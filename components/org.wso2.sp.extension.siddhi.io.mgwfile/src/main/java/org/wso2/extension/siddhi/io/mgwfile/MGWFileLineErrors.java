@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Handles the lines of an uploaded file which could not be published. Only the first few errors of a file are
+ * logged in detail and a single summary is logged once the file is published, so that a corrupted file does not
+ * flood the log. The lines are written to the {@link MGWFileDeadLetterStore} up to a limit per file, and are only
+ * counted beyond that.
+ */
+class MGWFileLineErrors {
+
+    private static final Log log = LogFactory.getLog(MGWFileLineErrors.class);
+
+    private final MGWFileInfoDTO infoDTO;
+    private final MGWFileDeadLetterStore deadLetterStore;
+    private final long maxDeadLetterLines;
+    private final Set<String> unknownStreams = new HashSet<>();
+    private long malformedLineCount;
+    private long undecodableEventCount;
+    private long unknownStreamEventCount;
+    private long deadLetterLineCount;
+    private boolean deadLetterFailed;
+
+    MGWFileLineErrors(MGWFileInfoDTO infoDTO) {
+        this.infoDTO = infoDTO;
+        this.deadLetterStore = MGWFileDeadLetterStore.getInstance();
+        this.maxDeadLetterLines = Long.parseLong(MGWFileSourceDS.getDeadLetterMaxLines());
+    }
+
+    /**
+     * Handles a line which does not match the expected event format.
+     */
+    void malformedLine(long lineNumber, String line, MGWFileSourceException cause) {
+        malformedLineCount++;
+        if (isDetailLogged()) {
+            log.error("Event format does not match with the expected format in line number : " + lineNumber
+                    + " on file : " + infoDTO + ". " + cause.getMessage());
+        }
+        deadLetter(lineNumber, "Malformed line: " + cause.getMessage(), line);
+    }
+
+    /**
+     * Handles a line whose event could not be decoded.
+     */
+    void undecodableEvent(long lineNumber, String line, MGWFileSourceException cause) {
+        undecodableEventCount++;
+        if (isDetailLogged()) {
+            log.error("Error occurred while decoding the event in line number : " + lineNumber + " on file : "
+                    + infoDTO, cause);
+        }
+        deadLetter(lineNumber, "Undecodable event: " + cause.getMessage(), line);
+    }
+
+    /**
+     * Handles an event of a stream for which there is no registered event source.
+     *
+     * @param content line of the event, or the event itself if the line is not available
+     */
+    void unknownStream(long lineNumber, String streamId, Object content) {
+        unknownStreamEventCount++;
+        // logged once per stream of a file, as all the events of a stream are dropped alike
+        if (unknownStreams.size() < MGWFileSourceConstants.MAX_REPORTED_UNKNOWN_STREAMS
+                && unknownStreams.add(streamId)) {
+            log.error("Unable to find eventsource for stream id: " + streamId + " on file : " + infoDTO
+                    + ". Further events of the stream in the file are not logged.");
+        }
+        deadLetter(lineNumber, "Unknown stream: " + streamId, content);
+    }
+
+    /**
+     * Returns the number of lines which could not be decoded.
+     *
+     * @return number of malformed lines and undecodable events
+     */
+    long getErrorCount() {
+        return malformedLineCount + undecodableEventCount;
+    }
+
+    /**
+     * Logs the number of lines of the file which could not be published, if there are any, and flushes the lines
+     * written to the dead letter store.
+     */
+    void logSummary() {
+        if (malformedLineCount == 0 && undecodableEventCount == 0 && unknownStreamEventCount == 0) {
+            return;
+        }
+        deadLetterStore.flush();
+        log.warn("Lines which could not be published from file : " + infoDTO + " [malformed lines: "
+                + malformedLineCount + ", undecodable events: " + undecodableEventCount
+                + ", events of unknown streams: " + unknownStreamEventCount + "]. " + deadLetterLineCount
+                + " of them are written to the dead letter file : " + deadLetterStore.getPath());
+    }
+
+    private boolean isDetailLogged() {
+        long errorCount = getErrorCount();
+        if (errorCount == MGWFileSourceConstants.MAX_DETAILED_LINE_ERRORS + 1) {
+            log.error("Further errors in file : " + infoDTO + " are not logged. The lines are written to the "
+                    + "dead letter file : " + deadLetterStore.getPath());
+        }
+        return errorCount <= MGWFileSourceConstants.MAX_DETAILED_LINE_ERRORS;
+    }
+
+    private void deadLetter(long lineNumber, String reason, Object content) {
+        if (deadLetterFailed || deadLetterLineCount >= maxDeadLetterLines) {
+            return;
+        }
+        if (deadLetterStore.write(infoDTO.getFileName(), lineNumber, reason,
+                content == null ? null : content.toString())) {
+            deadLetterLineCount++;
+        } else {
+            // the failure is logged by the store, do not retry it for each further line of this file
+            deadLetterFailed = true;
+        }
+    }
+}
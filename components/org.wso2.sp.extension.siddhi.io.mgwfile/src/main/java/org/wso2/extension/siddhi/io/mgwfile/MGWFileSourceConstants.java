@@ -26,6 +26,8 @@ public class MGWFileSourceConstants {
 
     public static final String API_USAGE_OUTPUT_FILE_NAME = "api-usage-data.dat";
 
+    public static final String API_USAGE_BINARY_FILE_NAME = "api-usage-data.v2.dat";
+
     public static final String UPLOADED_USAGE_PUBLISH_FREQUENCY_PROPERTY = "usage.publishing.frequency";
 
     public static final String UPLOADED_USAGE_CLEANUP_FREQUENCY_PROPERTY = "usage.cleanup.frequency";
@@ -38,8 +40,27 @@ public class MGWFileSourceConstants {
 
     public static final String DEFAULT_UPLOADED_USAGE_PUBLISH_FREQUENCY = "300000";
 
+    public static final String EVENT_BATCH_SIZE_PROPERTY = "usage.publishing.batch.size";
+
+    public static final String DEFAULT_EVENT_BATCH_SIZE = "500";
+
+    public static final String EVENT_BATCH_LINGER_TIME_PROPERTY = "usage.publishing.batch.linger.time";
+
+    public static final String DEFAULT_EVENT_BATCH_LINGER_TIME = "1000";
+
     public static final String DEFAULT_UPLOADED_USAGE_CLEANUP_FREQUENCY = "1800000";
 
+    public static final String CLEANUP_BATCH_SIZE_PROPERTY = "usage.cleanup.batch.size";
+
+    public static final String DEFAULT_CLEANUP_BATCH_SIZE = "1000";
+
+    public static final String CLEANUP_MAX_DURATION_PROPERTY = "usage.cleanup.max.duration";
+
+    public static final String DEFAULT_CLEANUP_MAX_DURATION = "10000";
+
+    // Initial interval in milliseconds to poll for uploaded files when there are no files to process
+    public static final long MIN_POLL_INTERVAL = 1000;
+
     public static final String INSERT_UPLOADED_FILE_INFO_QUERY = "INSERT INTO AM_USAGE_UPLOADED_FILES "
             + "(FILE_NAME,FILE_TIMESTAMP,FILE_CONTENT) VALUES(?,?,?)";
 
@@ -47,10 +68,18 @@ public class MGWFileSourceConstants {
             "SELECT FILE_NAME,FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES "
                     + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP LIMIT ? FOR UPDATE;";
 
+    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_SKIP_LOCKED =
+            "SELECT FILE_NAME,FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES "
+                    + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP LIMIT ? FOR UPDATE SKIP LOCKED";
+
     public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE = "SELECT FILE_NAME,FILE_TIMESTAMP "
             + "FROM AM_USAGE_UPLOADED_FILES WHERE rownum<=? AND "
             + "FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP FOR UPDATE";
 
+    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE_SKIP_LOCKED = "SELECT FILE_NAME,"
+            + "FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP "
+            + "FOR UPDATE SKIP LOCKED";
+
     public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_MSSQL = "SELECT TOP (?) FILE_NAME,"
             + "FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WITH (UPDLOCK) "
             + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP";
@@ -61,19 +90,162 @@ public class MGWFileSourceConstants {
                     "ORDER BY FILE_TIMESTAMP LIMIT ?) FOR UPDATE";
 
     public static final String UPDATE_FILE_PROCESSING_STARTED_STATUS = "UPDATE AM_USAGE_UPLOADED_FILES "
-            + "SET FILE_PROCESSED=1 WHERE FILE_PROCESSED=0 AND FILE_NAME = ?";
+            + "SET FILE_PROCESSED=1 WHERE FILE_PROCESSED=0 AND FILE_NAME IN";
+
+    public static final String GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_DEFAULT = "SELECT FILE_NAME,FILE_TIMESTAMP "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ? "
+            + "ORDER BY FILE_TIMESTAMP LIMIT ?";
+
+    public static final String GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_ORACLE = "SELECT FILE_NAME,FILE_TIMESTAMP "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE rownum<=? AND FILE_PROCESSED=2 AND FILE_TIMESTAMP < ?";
+
+    public static final String GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_MSSQL = "SELECT TOP (?) FILE_NAME,"
+            + "FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ? "
+            + "ORDER BY FILE_TIMESTAMP";
 
     public static final String DELETE_OLD_UPLOAD_COMPLETED_FILES = "DELETE FROM AM_USAGE_UPLOADED_FILES "
-            + "WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ?";
+            + "WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ? AND FILE_NAME IN";
+
+    public static final String RETENTION_INDEX_COLUMNS = "FILE_PROCESSED,FILE_TIMESTAMP";
+
+    public static final String RETENTION_INDEX_NAME = "IDX_AUF_PROCESSED_TIMESTAMP";
 
     public static final String GET_UPLOADED_FILE_CONTENT_QUERY = "SELECT FILE_CONTENT "
             + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_NAME=?";
 
+    public static final String INSERT_UPLOADED_FILE_REFERENCE_QUERY = "INSERT INTO AM_USAGE_UPLOADED_FILES "
+            + "(FILE_NAME,FILE_TIMESTAMP,CONTENT_REF) VALUES(?,?,?)";
+
+    public static final String GET_UPLOADED_FILE_CONTENT_REF_QUERY = "SELECT CONTENT_REF "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_NAME=?";
+
+    public static final String GET_OLD_UPLOAD_COMPLETED_CONTENT_REFS = "SELECT DISTINCT CONTENT_REF "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ? AND CONTENT_REF IS NOT NULL "
+            + "AND FILE_NAME IN";
+
+    public static final String IS_CONTENT_REFERENCED_QUERY = "SELECT 1 FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE CONTENT_REF=?";
+
+    public static final String UPLOAD_METADATA_SUPPORT_CHECK_SQL = "SELECT CONTENT_DIGEST,FILE_SIZE "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE 1=0";
+
+    public static final String UPDATE_UPLOAD_METADATA_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET CONTENT_DIGEST=?, FILE_SIZE=? WHERE FILE_NAME=? AND FILE_TIMESTAMP=?";
+
+    public static final String IS_CONTENT_DIGEST_UPLOADED_QUERY = "SELECT 1 FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE CONTENT_DIGEST=?";
+
+    public static final String GET_PENDING_FILES_QUERY = "SELECT COUNT(*) AS FILE_COUNT, "
+            + "MIN(FILE_TIMESTAMP) AS OLDEST_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED < 2";
+
+    public static final String GET_PENDING_FILES_WITH_SIZE_QUERY = "SELECT COUNT(*) AS FILE_COUNT, "
+            + "SUM(FILE_SIZE) AS FILE_SIZE, MIN(FILE_TIMESTAMP) AS OLDEST_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE FILE_PROCESSED < 2";
+
     public static final String UPDATE_COMPETITION_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
-            + "SET FILE_PROCESSED=2 WHERE FILE_NAME=?";
+            + "SET FILE_PROCESSED=2 WHERE FILE_NAME IN";
+
+    public static final String UPDATE_COMPLETION_WITH_LEASE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=2 WHERE FILE_PROCESSED=1 AND LEASE_OWNER=? AND FILE_NAME IN";
+
+    public static final String UPDATE_FAILURE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=3 WHERE FILE_NAME=? AND FILE_PROCESSED=1";
+
+    public static final String UPDATE_FAILURE_WITH_LEASE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=3, LEASE_OWNER=NULL WHERE FILE_NAME=? AND FILE_PROCESSED=1 AND LEASE_OWNER=?";
+
+    public static final String LEASE_SUPPORT_CHECK_SQL = "SELECT LEASE_OWNER,LEASE_EXPIRY,PROCESSED_LINES,"
+            + "PROCESSED_OFFSET,PROCESSING_ATTEMPTS FROM AM_USAGE_UPLOADED_FILES WHERE 1=0";
+
+    public static final String RELEASE_EXPIRED_LEASES_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=0, LEASE_OWNER=NULL WHERE FILE_PROCESSED=1 AND LEASE_EXPIRY < ? "
+            + "AND PROCESSING_ATTEMPTS < ?";
+
+    public static final String FAIL_EXPIRED_LEASES_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=3, LEASE_OWNER=NULL WHERE FILE_PROCESSED=1 AND LEASE_EXPIRY < ? "
+            + "AND PROCESSING_ATTEMPTS >= ?";
+
+    public static final String UPDATE_FILE_PROCESSING_STARTED_STATUS_WITH_LEASE = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, LEASE_OWNER=?, LEASE_EXPIRY=?, PROCESSING_ATTEMPTS=PROCESSING_ATTEMPTS+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN";
+
+    public static final String GET_CHECKPOINTS_QUERY = "SELECT FILE_NAME,PROCESSED_LINES,PROCESSED_OFFSET "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_NAME IN";
+
+    public static final String RENEW_LEASE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES SET LEASE_EXPIRY=?, "
+            + "PROCESSED_LINES=?, PROCESSED_OFFSET=? WHERE FILE_NAME=? AND FILE_PROCESSED=1 AND LEASE_OWNER=?";
+
+    public static final String NODE_ID_PROPERTY = "usage.publishing.node.id";
+
+    public static final String LEASE_DURATION_PROPERTY = "usage.publishing.lease.duration";
+
+    public static final String DEFAULT_LEASE_DURATION = "300000";
+
+    public static final String MAX_PROCESSING_ATTEMPTS_PROPERTY = "usage.publishing.max.attempts";
+
+    public static final String DEFAULT_MAX_PROCESSING_ATTEMPTS = "3";
+
+    public static final String CHECKPOINT_INTERVAL_PROPERTY = "usage.publishing.checkpoint.interval";
+
+    public static final String DEFAULT_CHECKPOINT_INTERVAL = "10000";
+
+    public static final String CHECKPOINT_LINES_PROPERTY = "usage.publishing.checkpoint.lines";
+
+    public static final String DEFAULT_CHECKPOINT_LINES = "100000";
+
+    public static final String DEAD_LETTER_DIRECTORY_PROPERTY = "usage.publishing.dead.letter.directory";
+
+    public static final String DEAD_LETTER_FILE_NAME = "dead-letter.log";
+
+    public static final String DEAD_LETTER_MAX_LINES_PROPERTY = "usage.publishing.dead.letter.max.lines";
+
+    public static final String DEFAULT_DEAD_LETTER_MAX_LINES = "1000";
+
+    public static final String DEAD_LETTER_MAX_SIZE_PROPERTY = "usage.publishing.dead.letter.max.size";
+
+    public static final String DEFAULT_DEAD_LETTER_MAX_SIZE = "104857600";
+
+    public static final int MAX_DETAILED_LINE_ERRORS = 10;
+
+    public static final int MAX_REPORTED_UNKNOWN_STREAMS = 100;
+
+    public static final String CLAIM_SKIP_LOCKED_PROPERTY = "usage.claim.skip.locked";
+
+    public static final String DEFAULT_CLAIM_SKIP_LOCKED = "true";
 
     public static final String DEFAULT_WORKER_THREAD_COUNT = "3";
 
+    public static final String EXPECTED_STREAMS_PROPERTY = "usage.publishing.expected.streams";
+
+    public static final String DEFAULT_EXPECTED_STREAMS = "org.wso2.apimgt.statistics.request,"
+            + "org.wso2.apimgt.statistics.throttle,org.wso2.apimgt.statistics.fault";
+
+    public static final String EXPECTED_STREAMS_WAIT_TIME_PROPERTY = "usage.publishing.expected.streams.wait.time";
+
+    public static final String DEFAULT_EXPECTED_STREAMS_WAIT_TIME = "60";
+
+    public static final String CONTENT_CHUNK_SIZE_PROPERTY = "usage.content.chunk.size";
+
+    public static final String DEFAULT_CONTENT_CHUNK_SIZE = "1048576";
+
+    public static final String CONTENT_SPILL_THRESHOLD_PROPERTY = "usage.content.spill.threshold";
+
+    public static final String DEFAULT_CONTENT_SPILL_THRESHOLD = "104857600";
+
+    public static final String CONTENT_SPILL_DIRECTORY_PROPERTY = "usage.content.spill.directory";
+
+    public static final String CONTENT_STORE_PROPERTY = "usage.content.store";
+
+    public static final String CONTENT_STORE_DATABASE = "database";
+
+    public static final String CONTENT_STORE_FILESYSTEM = "filesystem";
+
+    public static final String CONTENT_STORE_DIRECTORY_PROPERTY = "usage.content.store.directory";
+
+    public static final String PARSER_THREAD_COUNT_PROPERTY = "usage.publishing.parser.thread.count";
+
+    public static final String DEFAULT_PARSER_THREAD_COUNT = "0";
+
     public static final String DEFAULT_DATASOURCE = "APIM_ANALYTICS_DB";
 
     public static final String DATASOURCE_PROPERTY = "usage.datasource.name";
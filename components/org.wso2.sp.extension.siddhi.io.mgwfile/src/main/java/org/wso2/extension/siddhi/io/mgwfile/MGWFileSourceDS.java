@@ -30,11 +30,17 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.datasource.core.exception.DataSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileContentStore;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSystemContentStore;
 import org.wso2.extension.siddhi.io.mgwfile.task.MGWFileCleanUpTask;
 import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -50,7 +56,29 @@ public class MGWFileSourceDS {
     private static String fileReaderFrequency;
     private static String fileRetentionDays;
     private static String fileCleanupFrequency;
+    private static String cleanupBatchSize;
+    private static String cleanupMaxDuration;
     private static String workerThreadCount;
+    private static String parserThreadCount;
+    private static String expectedStreams;
+    private static String expectedStreamsWaitTime;
+    private static String claimSkipLocked;
+    private static String contentChunkSize;
+    private static String contentSpillThreshold;
+    private static String contentSpillDirectory;
+    private static String eventBatchSize;
+    private static String eventBatchLingerTime;
+    private static String nodeId;
+    private static String leaseDuration;
+    private static String maxProcessingAttempts;
+    private static String checkpointInterval;
+    private static String checkpointLines;
+    private static String deadLetterDirectory;
+    private static String deadLetterMaxLines;
+    private static String deadLetterMaxSize;
+    private static ScheduledExecutorService scheduler;
+    private static ScheduledExecutorService cleanupScheduler;
+    private static MGWFileContentStore contentStore;
     private HikariDataSource dsObject;
 
     /**
@@ -66,10 +94,16 @@ public class MGWFileSourceDS {
             log.debug("MGWFileSource Component is started");
         }
         initializeSystemProperties();
+        initializeContentStore();
+        MGWFileSourceMetrics.getInstance().registerMBean();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new MGWFileDataRetrieverThreadFactory("mgwfile-scheduler-thread"));
         if (dsObject != null) {
-            TimerTask fileCleanupTask = new MGWFileCleanUpTask();
-            Timer cleanupTimer = new Timer();
-            cleanupTimer.schedule(fileCleanupTask, 1000, Long.parseLong(fileCleanupFrequency));
+            // a long running cleanup should not delay reading the uploaded files
+            cleanupScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new MGWFileDataRetrieverThreadFactory("mgwfile-cleanup-thread"));
+            cleanupScheduler.scheduleWithFixedDelay(new MGWFileCleanUpTask(), 1000,
+                    Long.parseLong(fileCleanupFrequency), TimeUnit.MILLISECONDS);
         } else {
             log.warn("MGW file cleanup task is not scheduled as data source '" + MGWFileSourceDBUtil.getDatasourceName()
                     + "' is not present. Please disregard this warning if you are not utilizing API Manager Analytics "
@@ -88,6 +122,45 @@ public class MGWFileSourceDS {
         if (log.isDebugEnabled()) {
             log.debug("MGWFileSource Component is stopped");
         }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (cleanupScheduler != null) {
+            cleanupScheduler.shutdownNow();
+            cleanupScheduler = null;
+        }
+        MGWFileChunkPipeline.shutdown();
+        MGWFileSourceMetrics.getInstance().unregisterMBean();
+        MGWFileDeadLetterStore.getInstance().close();
+        if (contentStore != null) {
+            contentStore.shutdown();
+        }
+    }
+
+    private void initializeContentStore() {
+        String storeType = System.getProperty(MGWFileSourceConstants.CONTENT_STORE_PROPERTY);
+        if (StringUtils.isEmpty(storeType) || MGWFileSourceConstants.CONTENT_STORE_DATABASE.equals(storeType)) {
+            log.debug("Content of the uploaded files will be stored in the database");
+            return;
+        }
+        if (!MGWFileSourceConstants.CONTENT_STORE_FILESYSTEM.equals(storeType)) {
+            log.error("Unknown content store '" + storeType + "'. Content of the uploaded files will be stored in "
+                    + "the database.");
+            return;
+        }
+        String storeDirectory = System.getProperty(MGWFileSourceConstants.CONTENT_STORE_DIRECTORY_PROPERTY);
+        if (StringUtils.isEmpty(storeDirectory)) {
+            log.error(MGWFileSourceConstants.CONTENT_STORE_DIRECTORY_PROPERTY + " is not set. Content of the "
+                    + "uploaded files will be stored in the database.");
+            return;
+        }
+        try {
+            contentStore = new MGWFileSystemContentStore(Paths.get(storeDirectory));
+            log.info("Content of the uploaded files will be stored in " + storeDirectory);
+        } catch (IOException e) {
+            log.error("Error occurred while creating the content store directory " + storeDirectory
+                    + ". Content of the uploaded files will be stored in the database.", e);
+        }
     }
 
     private void initializeSystemProperties() {
@@ -112,6 +185,20 @@ public class MGWFileSourceDS {
             fileRetentionDays = MGWFileSourceConstants.DEFAULT_FILE_RETENTION_DAYS;
         }
 
+        //initialize cleanupBatchSize
+        cleanupBatchSize = System.getProperty(MGWFileSourceConstants.CLEANUP_BATCH_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(cleanupBatchSize)) {
+            log.debug("Default cleanup batch size will be used");
+            cleanupBatchSize = MGWFileSourceConstants.DEFAULT_CLEANUP_BATCH_SIZE;
+        }
+
+        //initialize cleanupMaxDuration
+        cleanupMaxDuration = System.getProperty(MGWFileSourceConstants.CLEANUP_MAX_DURATION_PROPERTY);
+        if (StringUtils.isEmpty(cleanupMaxDuration)) {
+            log.debug("Default cleanup duration will be used");
+            cleanupMaxDuration = MGWFileSourceConstants.DEFAULT_CLEANUP_MAX_DURATION;
+        }
+
         //initialize workerThreadCount
         workerThreadCount = System
                 .getProperty(MGWFileSourceConstants.WORKER_THREAD_COUNT_PROPERTY);
@@ -119,6 +206,126 @@ public class MGWFileSourceDS {
             log.debug("Default worker thread count will be used");
             workerThreadCount = MGWFileSourceConstants.DEFAULT_WORKER_THREAD_COUNT;
         }
+
+        //initialize parserThreadCount
+        parserThreadCount = System.getProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY);
+        if (StringUtils.isEmpty(parserThreadCount)) {
+            log.debug("Default parser thread count will be used");
+            parserThreadCount = MGWFileSourceConstants.DEFAULT_PARSER_THREAD_COUNT;
+        }
+
+        //initialize expectedStreams
+        expectedStreams = System.getProperty(MGWFileSourceConstants.EXPECTED_STREAMS_PROPERTY);
+        if (StringUtils.isEmpty(expectedStreams)) {
+            log.debug("Default expected streams will be used");
+            expectedStreams = MGWFileSourceConstants.DEFAULT_EXPECTED_STREAMS;
+        }
+
+        //initialize expectedStreamsWaitTime
+        expectedStreamsWaitTime = System.getProperty(MGWFileSourceConstants.EXPECTED_STREAMS_WAIT_TIME_PROPERTY);
+        if (StringUtils.isEmpty(expectedStreamsWaitTime)) {
+            log.debug("Default expected streams wait time will be used");
+            expectedStreamsWaitTime = MGWFileSourceConstants.DEFAULT_EXPECTED_STREAMS_WAIT_TIME;
+        }
+
+        //initialize claimSkipLocked
+        claimSkipLocked = System.getProperty(MGWFileSourceConstants.CLAIM_SKIP_LOCKED_PROPERTY);
+        if (StringUtils.isEmpty(claimSkipLocked)) {
+            log.debug("Default claim skip locked mode will be used");
+            claimSkipLocked = MGWFileSourceConstants.DEFAULT_CLAIM_SKIP_LOCKED;
+        }
+
+        //initialize contentChunkSize
+        contentChunkSize = System.getProperty(MGWFileSourceConstants.CONTENT_CHUNK_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(contentChunkSize)) {
+            log.debug("Default content chunk size will be used");
+            contentChunkSize = MGWFileSourceConstants.DEFAULT_CONTENT_CHUNK_SIZE;
+        }
+
+        //initialize contentSpillThreshold
+        contentSpillThreshold = System.getProperty(MGWFileSourceConstants.CONTENT_SPILL_THRESHOLD_PROPERTY);
+        if (StringUtils.isEmpty(contentSpillThreshold)) {
+            log.debug("Default content spill threshold will be used");
+            contentSpillThreshold = MGWFileSourceConstants.DEFAULT_CONTENT_SPILL_THRESHOLD;
+        }
+
+        //initialize contentSpillDirectory, the default temporary directory is used if this is not set
+        contentSpillDirectory = System.getProperty(MGWFileSourceConstants.CONTENT_SPILL_DIRECTORY_PROPERTY);
+
+        //initialize eventBatchSize
+        eventBatchSize = System.getProperty(MGWFileSourceConstants.EVENT_BATCH_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(eventBatchSize)) {
+            log.debug("Default event batch size will be used");
+            eventBatchSize = MGWFileSourceConstants.DEFAULT_EVENT_BATCH_SIZE;
+        }
+
+        //initialize eventBatchLingerTime
+        eventBatchLingerTime = System.getProperty(MGWFileSourceConstants.EVENT_BATCH_LINGER_TIME_PROPERTY);
+        if (StringUtils.isEmpty(eventBatchLingerTime)) {
+            log.debug("Default event batch linger time will be used");
+            eventBatchLingerTime = MGWFileSourceConstants.DEFAULT_EVENT_BATCH_LINGER_TIME;
+        }
+
+        //initialize nodeId, which defaults to the process id and host name of this node
+        nodeId = System.getProperty(MGWFileSourceConstants.NODE_ID_PROPERTY);
+        if (StringUtils.isEmpty(nodeId)) {
+            log.debug("Default node id will be used");
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+
+        //initialize leaseDuration
+        leaseDuration = System.getProperty(MGWFileSourceConstants.LEASE_DURATION_PROPERTY);
+        if (StringUtils.isEmpty(leaseDuration)) {
+            log.debug("Default lease duration will be used");
+            leaseDuration = MGWFileSourceConstants.DEFAULT_LEASE_DURATION;
+        }
+
+        //initialize maxProcessingAttempts
+        maxProcessingAttempts = System.getProperty(MGWFileSourceConstants.MAX_PROCESSING_ATTEMPTS_PROPERTY);
+        if (StringUtils.isEmpty(maxProcessingAttempts)) {
+            log.debug("Default max processing attempts will be used");
+            maxProcessingAttempts = MGWFileSourceConstants.DEFAULT_MAX_PROCESSING_ATTEMPTS;
+        }
+
+        //initialize checkpointInterval
+        checkpointInterval = System.getProperty(MGWFileSourceConstants.CHECKPOINT_INTERVAL_PROPERTY);
+        if (StringUtils.isEmpty(checkpointInterval)) {
+            log.debug("Default checkpoint interval will be used");
+            checkpointInterval = MGWFileSourceConstants.DEFAULT_CHECKPOINT_INTERVAL;
+        }
+
+        //initialize checkpointLines
+        checkpointLines = System.getProperty(MGWFileSourceConstants.CHECKPOINT_LINES_PROPERTY);
+        if (StringUtils.isEmpty(checkpointLines)) {
+            log.debug("Default checkpoint line count will be used");
+            checkpointLines = MGWFileSourceConstants.DEFAULT_CHECKPOINT_LINES;
+        }
+
+        //initialize deadLetterDirectory, a directory in the default temporary directory is used if this is not set
+        deadLetterDirectory = System.getProperty(MGWFileSourceConstants.DEAD_LETTER_DIRECTORY_PROPERTY);
+
+        //initialize deadLetterMaxLines
+        deadLetterMaxLines = System.getProperty(MGWFileSourceConstants.DEAD_LETTER_MAX_LINES_PROPERTY);
+        if (StringUtils.isEmpty(deadLetterMaxLines)) {
+            log.debug("Default dead letter line count will be used");
+            deadLetterMaxLines = MGWFileSourceConstants.DEFAULT_DEAD_LETTER_MAX_LINES;
+        }
+
+        //initialize deadLetterMaxSize
+        deadLetterMaxSize = System.getProperty(MGWFileSourceConstants.DEAD_LETTER_MAX_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(deadLetterMaxSize)) {
+            log.debug("Default dead letter size will be used");
+            deadLetterMaxSize = MGWFileSourceConstants.DEFAULT_DEAD_LETTER_MAX_SIZE;
+        }
+    }
+
+    /**
+     * Returns the store of the content of the uploaded files.
+     *
+     * @return content store or null if the content is stored in the database
+     */
+    public static MGWFileContentStore getContentStore() {
+        return contentStore;
     }
 
     public static String getFileReaderFrequency() {
@@ -129,10 +336,95 @@ public class MGWFileSourceDS {
         return fileRetentionDays;
     }
 
+    public static String getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    public static String getCleanupMaxDuration() {
+        return cleanupMaxDuration;
+    }
+
+    /**
+     * Returns the scheduler shared by the tasks of all the mgwfile sources.
+     *
+     * @return shared scheduler
+     */
+    public static ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
     public static String getWorkerThreadCount() {
         return workerThreadCount;
     }
 
+    public static String getParserThreadCount() {
+        return parserThreadCount;
+    }
+
+    public static String getExpectedStreams() {
+        return expectedStreams;
+    }
+
+    public static String getExpectedStreamsWaitTime() {
+        return expectedStreamsWaitTime;
+    }
+
+    public static String getClaimSkipLocked() {
+        return claimSkipLocked;
+    }
+
+    public static String getContentChunkSize() {
+        return contentChunkSize;
+    }
+
+    public static String getContentSpillThreshold() {
+        return contentSpillThreshold;
+    }
+
+    public static String getContentSpillDirectory() {
+        return contentSpillDirectory;
+    }
+
+    public static String getEventBatchSize() {
+        return eventBatchSize;
+    }
+
+    public static String getEventBatchLingerTime() {
+        return eventBatchLingerTime;
+    }
+
+    public static String getNodeId() {
+        return nodeId;
+    }
+
+    public static String getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public static String getMaxProcessingAttempts() {
+        return maxProcessingAttempts;
+    }
+
+    public static String getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public static String getCheckpointLines() {
+        return checkpointLines;
+    }
+
+    public static String getDeadLetterDirectory() {
+        return deadLetterDirectory;
+    }
+
+    public static String getDeadLetterMaxLines() {
+        return deadLetterMaxLines;
+    }
+
+    public static String getDeadLetterMaxSize() {
+        return deadLetterMaxSize;
+    }
+
     @Reference(
             name = "org.wso2.carbon.datasource.DataSourceService",
             service = DataSourceService.class,
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileBacklogDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the ingestion of the uploaded usage files, registered as an MXBean. The files and the events are recorded
+ * by the reader task and the data retrievers, and the pending files are queried from the database at most once per
+ * {@link #BACKLOG_REFRESH_INTERVAL}, however often the MXBean is read.
+ */
+public final class MGWFileSourceMetrics implements MGWFileSourceMetricsMXBean {
+
+    private static final Log log = LogFactory.getLog(MGWFileSourceMetrics.class);
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim:type=MGWFileSource";
+    private static final long BACKLOG_REFRESH_INTERVAL = 10000;
+    private static final int RECENT_FILE_COUNT = 100;
+    private static final MGWFileSourceMetrics instance = new MGWFileSourceMetrics();
+
+    private final Map<String, LongAdder> publishedEvents = new ConcurrentHashMap<>();
+    private final LongAdder completedFiles = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder claimTime = new LongAdder();
+    private final LongAdder fetchTime = new LongAdder();
+    private final LongAdder parseTime = new LongAdder();
+    private final LongAdder publishTime = new LongAdder();
+    private final LongAdder saturatedPolls = new LongAdder();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicLong lastBacklogRefreshTime = new AtomicLong();
+    private volatile int workerThreadCount;
+    private volatile MGWFileBacklogDTO backlog = new MGWFileBacklogDTO(0, 0, 0);
+    private final Map<String, Long> recentFileParseErrors = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > RECENT_FILE_COUNT;
+        }
+    };
+    // event counts and time of the previous read of the event rates
+    private Map<String, Long> rateSampleCounts = new HashMap<>();
+    private long rateSampleTime = System.nanoTime();
+    private Map<String, Double> rates = new HashMap<>();
+
+    private MGWFileSourceMetrics() {
+    }
+
+    public static MGWFileSourceMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register the MGW file source metrics MBean.", e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server.
+     */
+    public void unregisterMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Could not unregister the MGW file source metrics MBean.", e);
+        }
+    }
+
+    public void setWorkerThreadCount(int workerThreadCount) {
+        this.workerThreadCount = workerThreadCount;
+    }
+
+    public void recordWorkerStarted() {
+        activeWorkers.incrementAndGet();
+    }
+
+    public void recordWorkerCompleted() {
+        activeWorkers.decrementAndGet();
+    }
+
+    public void recordSaturatedPoll() {
+        saturatedPolls.increment();
+    }
+
+    public void recordClaimTime(long nanos) {
+        claimTime.add(nanos);
+    }
+
+    public void recordFetchTime(long nanos) {
+        fetchTime.add(nanos);
+    }
+
+    /**
+     * Records the delivery of a batch of events to a stream.
+     *
+     * @param streamId   stream id
+     * @param eventCount number of events
+     * @param nanos      time taken to deliver the events
+     */
+    public void recordPublishedEvents(String streamId, int eventCount, long nanos) {
+        LongAdder counter = publishedEvents.get(streamId);
+        if (counter == null) {
+            counter = publishedEvents.computeIfAbsent(streamId, key -> new LongAdder());
+        }
+        counter.add(eventCount);
+        publishTime.add(nanos);
+    }
+
+    /**
+     * Records a file once its publishing ends.
+     *
+     * @param fileName        name of the file
+     * @param completed       whether all the events of the file are published
+     * @param lineErrorCount  number of lines which could not be parsed
+     * @param parseNanos      time taken to decode the file, excluding the time taken to read its content and to
+     *                        deliver its events
+     */
+    public void recordFile(String fileName, boolean completed, long lineErrorCount, long parseNanos) {
+        if (completed) {
+            completedFiles.increment();
+        }
+        parseErrors.add(lineErrorCount);
+        parseTime.add(parseNanos);
+        synchronized (recentFileParseErrors) {
+            recentFileParseErrors.put(fileName, lineErrorCount);
+        }
+    }
+
+    @Override
+    public long getPendingFileCount() {
+        return getBacklog().getFileCount();
+    }
+
+    @Override
+    public long getPendingFileBytes() {
+        return getBacklog().getFileSize();
+    }
+
+    @Override
+    public long getOldestPendingFileLag() {
+        long oldestTimeStamp = getBacklog().getOldestTimeStamp();
+        return oldestTimeStamp == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldestTimeStamp);
+    }
+
+    private MGWFileBacklogDTO getBacklog() {
+        long lastRefreshTime = lastBacklogRefreshTime.get();
+        long currentTime = System.currentTimeMillis();
+        if (currentTime - lastRefreshTime >= BACKLOG_REFRESH_INTERVAL
+                && lastBacklogRefreshTime.compareAndSet(lastRefreshTime, currentTime)) {
+            try {
+                backlog = MGWFileSourceDAO.getBacklog();
+            } catch (MGWFileSourceException e) {
+                log.warn("Could not refresh the pending uploaded files metrics.", e);
+            }
+        }
+        return backlog;
+    }
+
+    @Override
+    public long getCompletedFileCount() {
+        return completedFiles.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPublishedEventCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : publishedEvents.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPublishedEventRates() {
+        long currentTime = System.nanoTime();
+        long elapsedTime = currentTime - rateSampleTime;
+        // reading the rates more often than once per second returns the previous rates
+        if (elapsedTime >= TimeUnit.SECONDS.toNanos(1)) {
+            Map<String, Long> counts = getPublishedEventCounts();
+            Map<String, Double> currentRates = new HashMap<>();
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                Long previousCount = rateSampleCounts.get(entry.getKey());
+                long delta = entry.getValue() - (previousCount == null ? 0 : previousCount);
+                currentRates.put(entry.getKey(), delta * 1e9 / elapsedTime);
+            }
+            rates = currentRates;
+            rateSampleCounts = counts;
+            rateSampleTime = currentTime;
+        }
+        return rates;
+    }
+
+    @Override
+    public long getParseErrorCount() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRecentFileParseErrors() {
+        synchronized (recentFileParseErrors) {
+            return new HashMap<>(recentFileParseErrors);
+        }
+    }
+
+    @Override
+    public long getClaimTime() {
+        return TimeUnit.NANOSECONDS.toMillis(claimTime.sum());
+    }
+
+    @Override
+    public long getFetchTime() {
+        return TimeUnit.NANOSECONDS.toMillis(fetchTime.sum());
+    }
+
+    @Override
+    public long getParseTime() {
+        return TimeUnit.NANOSECONDS.toMillis(parseTime.sum());
+    }
+
+    @Override
+    public long getPublishTime() {
+        return TimeUnit.NANOSECONDS.toMillis(publishTime.sum());
+    }
+
+    @Override
+    public int getWorkerThreadCount() {
+        return workerThreadCount;
+    }
+
+    @Override
+    public int getActiveWorkerCount() {
+        return activeWorkers.get();
+    }
+
+    @Override
+    public long getSaturatedPollCount() {
+        return saturatedPolls.sum();
+    }
+}
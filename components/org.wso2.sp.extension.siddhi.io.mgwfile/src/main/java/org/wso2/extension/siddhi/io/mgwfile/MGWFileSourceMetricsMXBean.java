@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import java.util.Map;
+
+/**
+ * JMX view of the ingestion of the uploaded usage files by this node, see {@link MGWFileSourceMetrics}. The times are
+ * cumulative since the node started.
+ */
+public interface MGWFileSourceMetricsMXBean {
+
+    /**
+     * Returns the number of uploaded files which are not yet completely published by any node.
+     */
+    long getPendingFileCount();
+
+    /**
+     * Returns the total size in bytes of the pending files, or -1 if the sizes of the files are not recorded.
+     */
+    long getPendingFileBytes();
+
+    /**
+     * Returns the time in milliseconds since the oldest pending file was created, or 0 if there are no pending files.
+     */
+    long getOldestPendingFileLag();
+
+    long getCompletedFileCount();
+
+    Map<String, Long> getPublishedEventCounts();
+
+    /**
+     * Returns the number of events published per second for each stream id, since the previous time the rates were
+     * read.
+     */
+    Map<String, Double> getPublishedEventRates();
+
+    long getParseErrorCount();
+
+    /**
+     * Returns the number of lines which could not be parsed in each of the recently published files.
+     */
+    Map<String, Long> getRecentFileParseErrors();
+
+    /**
+     * Returns the time in milliseconds spent on the queries which claim the next files to publish.
+     */
+    long getClaimTime();
+
+    /**
+     * Returns the time in milliseconds spent on opening the content of the files and reading it from the database or
+     * the content store, including the reads of a BLOB which is read lazily while the file is parsed.
+     */
+    long getFetchTime();
+
+    /**
+     * Returns the time in milliseconds spent on inflating and decoding the content of the files. When the files are
+     * parsed in parallel, this is the rest of the time of the worker threads, in which they wait for the decoded
+     * events.
+     */
+    long getParseTime();
+
+    /**
+     * Returns the time in milliseconds spent on delivering the events to the Siddhi streams.
+     */
+    long getPublishTime();
+
+    int getWorkerThreadCount();
+
+    int getActiveWorkerCount();
+
+    /**
+     * Returns the number of polls which found all the worker threads busy.
+     */
+    long getSaturatedPollCount();
+}
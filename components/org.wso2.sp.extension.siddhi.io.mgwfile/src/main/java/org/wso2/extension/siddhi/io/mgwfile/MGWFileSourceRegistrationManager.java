@@ -19,27 +19,168 @@
 package org.wso2.extension.siddhi.io.mgwfile;
 
 import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.task.MGWFileReaderTask;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Class which manages the Databridge receiver connections.
+ * Class which manages the Databridge receiver connections. A single {@link MGWFileReaderTask} claims the uploaded
+ * files for all the registered streams. It is started once all the expected streams are registered, so that a file
+ * is not claimed while only some of the streams of its events can receive them, and a warning is logged if some of
+ * them are still not registered a while after the first one. The files are published with the
+ * current {@link MGWFileStreamDispatchTable}, which is replaced as a whole on each registration, so that the readers
+ * never look up the listeners of their events in a shared map.
  */
 public class MGWFileSourceRegistrationManager {
 
+    private static final Log log = LogFactory.getLog(MGWFileSourceRegistrationManager.class);
+
     private static Map<String, SourceEventListener> streamSpecificEventListenerMap = new ConcurrentHashMap<>();
+    private static Set<String> pausedStreams = ConcurrentHashMap.newKeySet();
+    private static volatile MGWFileStreamDispatchTable dispatchTable = MGWFileStreamDispatchTable.EMPTY;
+    private static MGWFileReaderTask fileReaderTask;
+    private static ScheduledFuture<?> missingStreamsWarning;
 
-    static Map<String, SourceEventListener> getStreamSpecificEventListenerMap() {
-        return streamSpecificEventListenerMap;
+    /**
+     * Returns the current snapshot of the registered consumers.
+     *
+     * @return dispatch table
+     */
+    static MGWFileStreamDispatchTable getDispatchTable() {
+        return dispatchTable;
     }
 
-    public static void registerEventConsumer(String streamId, SourceEventListener sourceEventListener) {
+    public static synchronized void registerEventConsumer(String streamId, SourceEventListener sourceEventListener) {
         streamSpecificEventListenerMap.put(streamId, sourceEventListener);
+        dispatchTable = dispatchTable.withListener(streamId, sourceEventListener);
+        updateFileReaderTask();
+    }
+
+    public static synchronized void unregisterEventConsumer(String streamId) {
+        streamSpecificEventListenerMap.remove(streamId);
+        dispatchTable = dispatchTable.withListener(streamId, null);
+        pausedStreams.remove(streamId);
+        updateFileReaderTask();
+    }
+
+    /**
+     * Pauses claiming files until the consumer of the given stream is resumed.
+     *
+     * @param streamId stream id of the paused consumer
+     */
+    public static synchronized void pauseEventConsumer(String streamId) {
+        pausedStreams.add(streamId);
+        if (fileReaderTask != null) {
+            fileReaderTask.setPaused(true);
+        }
+    }
+
+    /**
+     * Resumes claiming files if no other consumer is paused.
+     *
+     * @param streamId stream id of the resumed consumer
+     */
+    public static synchronized void resumeEventConsumer(String streamId) {
+        pausedStreams.remove(streamId);
+        if (fileReaderTask != null) {
+            fileReaderTask.setPaused(!pausedStreams.isEmpty());
+        }
+    }
+
+    /**
+     * Starts the file reader task once all the expected streams are registered and stops it when one of them is
+     * unregistered.
+     */
+    private static void updateFileReaderTask() {
+        boolean allStreamsRegistered = !streamSpecificEventListenerMap.isEmpty() && getMissingStreams().isEmpty();
+        updateMissingStreamsWarning(allStreamsRegistered);
+        if (allStreamsRegistered && fileReaderTask == null) {
+            log.info("All the expected streams are registered. Started claiming uploaded micro-gateway usage files.");
+            fileReaderTask = new MGWFileReaderTask(MGWFileSourceDS.getScheduler());
+            fileReaderTask.setPaused(!pausedStreams.isEmpty());
+            fileReaderTask.start();
+        } else if (!allStreamsRegistered && fileReaderTask != null) {
+            log.info("Stopped claiming uploaded micro-gateway usage files as not all the expected streams are "
+                    + "registered.");
+            fileReaderTask.stop();
+            fileReaderTask = null;
+        }
+    }
+
+    /**
+     * Schedules a warning about the missing streams when the first stream is registered, so that an app which does
+     * not receive one of the expected streams does not silently stop the uploaded files from being published. The
+     * warning is logged once until all the expected streams are registered or all the streams are unregistered.
+     */
+    private static void updateMissingStreamsWarning(boolean allStreamsRegistered) {
+        if (allStreamsRegistered || streamSpecificEventListenerMap.isEmpty()) {
+            if (missingStreamsWarning != null) {
+                missingStreamsWarning.cancel(false);
+                missingStreamsWarning = null;
+            }
+            return;
+        }
+        ScheduledExecutorService scheduler = MGWFileSourceDS.getScheduler();
+        if (missingStreamsWarning != null || scheduler == null) {
+            return;
+        }
+        long waitTime = Long.parseLong(MGWFileSourceDS.getExpectedStreamsWaitTime());
+        try {
+            missingStreamsWarning = scheduler.schedule(() -> warnMissingStreams(waitTime), waitTime,
+                    TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // the component is stopped
+        }
+    }
+
+    private static synchronized void warnMissingStreams(long waitTime) {
+        List<String> missingStreams = getMissingStreams();
+        if (fileReaderTask == null && !missingStreams.isEmpty()) {
+            log.warn("Uploaded micro-gateway usage files are not claimed, as the expected streams " + missingStreams
+                    + " are not registered " + waitTime + " seconds after the first stream. Deploy the apps which "
+                    + "receive these streams, or set " + MGWFileSourceConstants.EXPECTED_STREAMS_PROPERTY
+                    + " to the streams which are received.");
+        }
     }
 
-    public static void unregisterEventConsumer(String streamId) {
-            streamSpecificEventListenerMap.remove(streamId);
+    /**
+     * Returns the expected streams which are not registered.
+     *
+     * @return names of the missing streams, empty if all the expected streams are registered
+     */
+    private static List<String> getMissingStreams() {
+        List<String> missingStreams = new ArrayList<>();
+        for (String expectedStream : MGWFileSourceDS.getExpectedStreams().split(",")) {
+            String streamName = expectedStream.trim();
+            if (streamName.isEmpty()) {
+                continue;
+            }
+            boolean registered = false;
+            for (String streamId : streamSpecificEventListenerMap.keySet()) {
+                // stream ids are in the form of <name>:<version>
+                if (streamId.equals(streamName) || streamId.startsWith(streamName + ":")) {
+                    registered = true;
+                    break;
+                }
+            }
+            if (!registered) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Waiting for stream " + streamName + " to be registered.");
+                }
+                missingStreams.add(streamName);
+            }
+        }
+        return missingStreams;
     }
 
 }
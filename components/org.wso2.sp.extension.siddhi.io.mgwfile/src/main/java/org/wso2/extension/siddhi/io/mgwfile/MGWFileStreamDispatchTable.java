@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import io.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the registered event consumers, which the files are published with. Each stream id gets an
+ * ordinal when it is first registered, which it keeps for as long as the component runs, so that the readers can
+ * keep the ordinals of the stream ids of a file across snapshots and index the listeners and their batches by them.
+ * A new snapshot with a higher version replaces this one whenever a consumer is registered or unregistered.
+ */
+public final class MGWFileStreamDispatchTable {
+
+    static final MGWFileStreamDispatchTable EMPTY = new MGWFileStreamDispatchTable(0, new String[0],
+            new SourceEventListener[0]);
+
+    private final long version;
+    private final String[] streamIds;
+    private final SourceEventListener[] listeners;
+
+    private MGWFileStreamDispatchTable(long version, String[] streamIds, SourceEventListener[] listeners) {
+        this.version = version;
+        this.streamIds = streamIds;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Creates the next snapshot with the listener of the given stream id replaced.
+     *
+     * @param streamId stream id
+     * @param listener listener of the stream, or null if the stream is unregistered
+     * @return new snapshot
+     */
+    MGWFileStreamDispatchTable withListener(String streamId, SourceEventListener listener) {
+        int ordinal = ordinalOf(streamId);
+        String[] newStreamIds = streamIds;
+        if (ordinal < 0) {
+            if (listener == null) {
+                return this;
+            }
+            ordinal = streamIds.length;
+            newStreamIds = Arrays.copyOf(streamIds, ordinal + 1);
+            newStreamIds[ordinal] = streamId.intern();
+        }
+        SourceEventListener[] newListeners = Arrays.copyOf(listeners, newStreamIds.length);
+        newListeners[ordinal] = listener;
+        return new MGWFileStreamDispatchTable(version + 1, newStreamIds, newListeners);
+    }
+
+    /**
+     * Returns the version of this snapshot, which is incremented with each change of the registered consumers.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the ordinal of a stream id. The stream ids are compared by reference before comparing their content,
+     * and there are only a few of them, hence this is cheaper than a hash lookup. It is still meant to be called
+     * once per distinct stream id of a file rather than once per event.
+     *
+     * @param streamId stream id
+     * @return ordinal of the stream id, or -1 if the stream id has never been registered
+     */
+    public int ordinalOf(String streamId) {
+        for (int i = 0; i < streamIds.length; i++) {
+            if (streamIds[i] == streamId) {
+                return i;
+            }
+        }
+        for (int i = 0; i < streamIds.length; i++) {
+            if (streamIds[i].equals(streamId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the listener of the stream id with the given ordinal.
+     *
+     * @param ordinal ordinal of the stream id
+     * @return listener, or null if the stream id is not registered in this snapshot
+     */
+    public SourceEventListener getListener(int ordinal) {
+        return ordinal >= 0 && ordinal < listeners.length ? listeners[ordinal] : null;
+    }
+
+    /**
+     * Returns the number of ordinals assigned so far, including the ones of unregistered stream ids.
+     *
+     * @return number of ordinals
+     */
+    public int size() {
+        return streamIds.length;
+    }
+}
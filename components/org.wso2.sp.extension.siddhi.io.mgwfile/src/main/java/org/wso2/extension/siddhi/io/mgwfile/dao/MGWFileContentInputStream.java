@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Input stream over the content of an uploaded file, which keeps the connection, statement and result set used to
+ * read the content open until the stream is closed. BLOB content is read in bounded chunks, so that this stream
+ * does not hold the whole content in memory. Whether the driver does depends on the database, see
+ * {@link MGWFileSourceDAO#getFileContent}.
+ */
+class MGWFileContentInputStream extends InputStream {
+
+    private static final Log log = LogFactory.getLog(MGWFileContentInputStream.class);
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final Blob blob;
+    private final InputStream binaryStream;
+    private final long length;
+    private final int chunkSize;
+    private byte[] chunk;
+    // 1-based position of the next chunk in the BLOB
+    private long blobPosition = 1;
+    private int chunkPosition;
+    private int chunkLength;
+    private boolean closed;
+
+    /**
+     * Creates a stream which reads the given BLOB in chunks.
+     */
+    MGWFileContentInputStream(Blob blob, int chunkSize, Connection connection, PreparedStatement statement,
+                              ResultSet resultSet) throws SQLException {
+        this.blob = blob;
+        this.binaryStream = null;
+        this.length = blob.length();
+        this.chunkSize = chunkSize;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+    }
+
+    /**
+     * Creates a stream over the binary stream of a column, for the databases which do not support BLOBs.
+     */
+    MGWFileContentInputStream(InputStream binaryStream, Connection connection, PreparedStatement statement,
+                              ResultSet resultSet) {
+        this.blob = null;
+        this.binaryStream = binaryStream;
+        this.length = -1;
+        this.chunkSize = 0;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+    }
+
+    /**
+     * Returns the length of the content.
+     *
+     * @return length in bytes or -1 if the length is not known before reading the content
+     */
+    long length() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (binaryStream != null) {
+            return binaryStream.read();
+        }
+        if (chunkPosition == chunkLength && !readChunk()) {
+            return -1;
+        }
+        return chunk[chunkPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+        if (binaryStream != null) {
+            return binaryStream.read(bytes, offset, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (chunkPosition == chunkLength && !readChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, chunkLength - chunkPosition);
+        System.arraycopy(chunk, chunkPosition, bytes, offset, count);
+        chunkPosition += count;
+        return count;
+    }
+
+    private boolean readChunk() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (blobPosition > length) {
+            return false;
+        }
+        try {
+            int size = (int) Math.min(chunkSize, length - blobPosition + 1);
+            chunk = blob.getBytes(blobPosition, size);
+            blobPosition += chunk.length;
+            chunkPosition = 0;
+            chunkLength = chunk.length;
+            return chunkLength > 0;
+        } catch (SQLException e) {
+            throw new IOException("Error occurred while reading the content of the uploaded file", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (binaryStream != null) {
+                binaryStream.close();
+            }
+            if (blob != null) {
+                blob.free();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            log.warn("Error occurred while releasing the content of the uploaded file.", e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Storage for the content of the uploaded usage files, which is kept outside AM_USAGE_UPLOADED_FILES. The table only
+ * holds the reference returned by the store in its CONTENT_REF column. When no store is configured, the content is
+ * kept in the FILE_CONTENT column of the table.
+ */
+public interface MGWFileContentStore {
+
+    /**
+     * Stores the given content.
+     *
+     * @param content content of an uploaded file
+     * @return reference to the stored content
+     * @throws IOException if the content cannot be stored
+     */
+    String put(InputStream content) throws IOException;
+
+    /**
+     * Stores the content of the given file. The file may be moved into the store instead of being copied, hence it
+     * should not be used afterwards.
+     *
+     * @param file file with the content of an uploaded file
+     * @return reference to the stored content
+     * @throws IOException if the content cannot be stored
+     */
+    String put(Path file) throws IOException;
+
+    /**
+     * Stores the content of the given file, whose digest is already computed while the file was written. The file
+     * may be moved into the store instead of being copied, hence it should not be used afterwards.
+     *
+     * @param file   file with the content of an uploaded file
+     * @param digest hex encoded SHA-256 digest of the content of the file
+     * @return reference to the stored content
+     * @throws IOException if the content cannot be stored
+     */
+    String put(Path file, String digest) throws IOException;
+
+    /**
+     * Opens the stored content.
+     *
+     * @param reference reference returned when the content was stored
+     * @return stream over the content
+     * @throws IOException if the content cannot be read
+     */
+    InputStream open(String reference) throws IOException;
+
+    /**
+     * Deletes the given contents in the background, except the ones which are still referenced.
+     *
+     * @param references   references of the contents to be deleted
+     * @param isReferenced checks whether a content is still referenced by an uploaded file
+     */
+    void deleteAsync(Collection<String> references, Predicate<String> isReferenced);
+
+    /**
+     * Stops deleting contents in the background.
+     */
+    void shutdown();
+}
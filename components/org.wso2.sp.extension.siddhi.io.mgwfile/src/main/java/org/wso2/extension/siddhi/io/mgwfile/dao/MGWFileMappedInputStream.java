@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over the content of an uploaded file which is kept on disk, either in the content store or spilled to
+ * a temporary file, so that the database connection is released before the content is processed. The file is read
+ * through memory mapped regions of bounded size. A spilled file is deleted when the stream is closed.
+ */
+class MGWFileMappedInputStream extends InputStream {
+
+    private static final Log log = LogFactory.getLog(MGWFileMappedInputStream.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    private final Path file;
+    private final boolean deleteOnClose;
+    private final FileChannel channel;
+    private final long size;
+    private long regionPosition;
+    private MappedByteBuffer region;
+
+    private MGWFileMappedInputStream(Path file, boolean deleteOnClose) throws IOException {
+        this.file = file;
+        this.deleteOnClose = deleteOnClose;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Opens a file which is kept after the stream is closed.
+     *
+     * @param file file to be read
+     * @return stream over the file
+     * @throws IOException if the file cannot be opened
+     */
+    static InputStream open(Path file) throws IOException {
+        return new MGWFileMappedInputStream(file, false);
+    }
+
+    /**
+     * Copies the given content to a temporary file. The given content is closed whether or not it is copied.
+     *
+     * @param content   content of the uploaded file
+     * @param directory directory to create the temporary file in or null to use the default temporary directory
+     * @return stream over the temporary file
+     * @throws IOException if the content cannot be copied to the temporary file
+     */
+    static InputStream spill(InputStream content, Path directory) throws IOException {
+        Path file = null;
+        try {
+            try (InputStream source = content) {
+                file = directory == null ? Files.createTempFile("mgw-usage-", ".zip")
+                        : Files.createTempFile(directory, "mgw-usage-", ".zip");
+                try (OutputStream target = Files.newOutputStream(file, StandardOpenOption.WRITE)) {
+                    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                    int read;
+                    while ((read = source.read(buffer)) != -1) {
+                        target.write(buffer, 0, read);
+                    }
+                }
+            }
+            return new MGWFileMappedInputStream(file, true);
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException deleteException) {
+                    e.addSuppressed(deleteException);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureRegion()) {
+            return -1;
+        }
+        return region.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureRegion()) {
+            return -1;
+        }
+        int count = Math.min(len, region.remaining());
+        region.get(bytes, offset, count);
+        return count;
+    }
+
+    private boolean ensureRegion() throws IOException {
+        if (region != null && region.hasRemaining()) {
+            return true;
+        }
+        if (region != null) {
+            regionPosition += region.capacity();
+        }
+        if (regionPosition >= size) {
+            return false;
+        }
+        region = channel.map(FileChannel.MapMode.READ_ONLY, regionPosition,
+                Math.min(MAPPED_REGION_SIZE, size - regionPosition));
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        try {
+            channel.close();
+        } finally {
+            if (deleteOnClose) {
+                deleteFile();
+            }
+        }
+    }
+
+    private void deleteFile() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // a mapped region may still prevent deleting the file on some platforms
+            log.warn("Could not delete the temporary usage file " + file + ". It will be deleted on exit.", e);
+            file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -18,25 +18,37 @@
 
 package org.wso2.extension.siddhi.io.mgwfile.dao;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileBacklogDTO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Blob;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class contains methods DB access for FileEventAdapter.
@@ -44,6 +56,10 @@ import java.util.List;
 public class MGWFileSourceDAO {
 
     private static final Log log = LogFactory.getLog(MGWFileSourceDAO.class);
+    private static volatile Boolean leaseSupported;
+    private static volatile Boolean uploadMetadataSupported;
+    private static volatile Boolean retentionIndexPresent;
+    private static volatile boolean contentInMemoryReported;
 
     /**
      * Adds a record into the database with uploaded file's information.
@@ -54,18 +70,96 @@ public class MGWFileSourceDAO {
      */
     public static void persistUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream)
             throws MGWFileSourceException {
+        persistUploadedFile(dto, uploadedInputStream, -1);
+    }
+
+    /**
+     * Adds a record into the database with uploaded file's information, whose content length is known in advance.
+     *
+     * @param dto                 Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param uploadedInputStream Input stream with the uploaded file content
+     * @param length              length of the content in bytes or -1 if the length is not known
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static void persistUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream, long length)
+            throws MGWFileSourceException {
+        MGWFileContentStore contentStore = MGWFileSourceDS.getContentStore();
+        if (contentStore == null) {
+            insertUploadedFile(dto, uploadedInputStream, length, null);
+            return;
+        }
+        String contentReference;
+        try {
+            contentReference = contentStore.put(uploadedInputStream);
+        } catch (IOException e) {
+            throw new MGWFileSourceException("Error occurred while storing the content of uploaded file : "
+                    + dto.toString(), e);
+        }
+        insertUploadedFile(dto, null, length, contentReference);
+    }
+
+    /**
+     * Adds a record into the database with the information of an uploaded file, which is staged on the local disk.
+     * The staged file may be moved into the content store, hence it should not be used afterwards. The content digest
+     * of the given dto, if set, should be the SHA-256 digest of the staged file, as the content is stored under it.
+     *
+     * @param dto          Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param uploadedFile staged file with the uploaded file content
+     * @throws MGWFileSourceException if there is an error while storing the content or executing the query
+     */
+    public static void persistUploadedFile(MGWFileInfoDTO dto, Path uploadedFile) throws MGWFileSourceException {
+        MGWFileContentStore contentStore = MGWFileSourceDS.getContentStore();
+        try {
+            if (contentStore == null) {
+                try (InputStream content = Files.newInputStream(uploadedFile)) {
+                    insertUploadedFile(dto, content, Files.size(uploadedFile), null);
+                }
+            } else {
+                long length = Files.size(uploadedFile);
+                // the digest of a staged file is computed while it is staged
+                String contentReference = dto.getContentDigest() != null
+                        ? contentStore.put(uploadedFile, dto.getContentDigest()) : contentStore.put(uploadedFile);
+                insertUploadedFile(dto, null, length, contentReference);
+            }
+        } catch (IOException e) {
+            throw new MGWFileSourceException("Error occurred while storing the content of uploaded file : "
+                    + dto.toString(), e);
+        }
+    }
+
+    /**
+     * Inserts the record of an uploaded file, with either its content or the reference to its content in the content
+     * store.
+     */
+    private static void insertUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream, long length,
+                                           String contentReference) throws MGWFileSourceException {
         Connection connection = null;
         boolean autoCommitStatus = false;
         PreparedStatement statement = null;
         try {
             connection = MGWFileSourceDBUtil.getConnection();
+            // probed outside the transaction, as a failed query aborts the whole transaction on some databases
+            boolean metadataSupported = (dto.getContentDigest() != null || length >= 0)
+                    && isUploadMetadataSupported(connection);
             autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_UPLOADED_FILE_INFO_QUERY);
+            if (contentReference != null) {
+                statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_UPLOADED_FILE_REFERENCE_QUERY);
+                statement.setString(3, contentReference);
+            } else {
+                statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_UPLOADED_FILE_INFO_QUERY);
+                if (length < 0) {
+                    statement.setBinaryStream(3, uploadedInputStream);
+                } else {
+                    statement.setBinaryStream(3, uploadedInputStream, length);
+                }
+            }
             statement.setString(1, dto.getFileName());
             statement.setTimestamp(2, new Timestamp(dto.getTimeStamp()));
-            statement.setBinaryStream(3, uploadedInputStream);
             statement.executeUpdate();
+            if (metadataSupported) {
+                updateUploadMetadata(connection, dto, length);
+            }
             connection.commit();
             if (log.isDebugEnabled()) {
                 log.debug("Persisted Uploaded File info : " + dto.toString());
@@ -91,8 +185,90 @@ public class MGWFileSourceDAO {
         }
     }
 
+    private static void updateUploadMetadata(Connection connection, MGWFileInfoDTO dto, long length)
+            throws SQLException {
+        try (PreparedStatement statement = connection
+                .prepareStatement(MGWFileSourceConstants.UPDATE_UPLOAD_METADATA_QUERY)) {
+            statement.setString(1, dto.getContentDigest());
+            if (length < 0) {
+                statement.setNull(2, Types.BIGINT);
+            } else {
+                statement.setLong(2, length);
+            }
+            statement.setString(3, dto.getFileName());
+            statement.setTimestamp(4, new Timestamp(dto.getTimeStamp()));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Check whether a file with the given content is already uploaded. The files are retained until they are removed
+     * by {@link #deleteProcessedOldFiles(Date, int)}, hence a duplicate is detected within the retention period.
+     *
+     * @param contentDigest hex encoded SHA-256 digest of the uploaded content
+     * @return true if a file with the same content exists
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static boolean isContentUploaded(String contentDigest) throws MGWFileSourceException {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            if (!isUploadMetadataSupported(connection)) {
+                return false;
+            }
+            statement = connection.prepareStatement(MGWFileSourceConstants.IS_CONTENT_DIGEST_UPLOADED_QUERY);
+            statement.setString(1, contentDigest);
+            resultSet = statement.executeQuery();
+            return resultSet.next();
+        } catch (SQLException e) {
+            throw new MGWFileSourceException("Error occurred while checking for uploaded files with content digest : "
+                    + contentDigest, e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+        }
+    }
+
+    /**
+     * Returns the number, the total size and the oldest timestamp of the uploaded files which are not yet completely
+     * published.
+     *
+     * @return {@link MGWFileBacklogDTO} of the pending files
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static MGWFileBacklogDTO getBacklog() throws MGWFileSourceException {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            boolean sizeSupported = isUploadMetadataSupported(connection);
+            statement = connection.prepareStatement(sizeSupported
+                    ? MGWFileSourceConstants.GET_PENDING_FILES_WITH_SIZE_QUERY
+                    : MGWFileSourceConstants.GET_PENDING_FILES_QUERY);
+            resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                return new MGWFileBacklogDTO(0, 0, 0);
+            }
+            Timestamp oldestTimestamp = resultSet.getTimestamp("OLDEST_TIMESTAMP");
+            return new MGWFileBacklogDTO(resultSet.getLong("FILE_COUNT"),
+                    sizeSupported ? resultSet.getLong("FILE_SIZE") : -1,
+                    oldestTimestamp == null ? 0 : oldestTimestamp.getTime());
+        } catch (SQLException e) {
+            throw new MGWFileSourceException("Error occurred while retrieving the pending uploaded files", e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+        }
+    }
+
     /**
-     * Returns the next set of files to bre processed by the worker threads.
+     * Returns the next set of files to bre processed by the worker threads. The selected files are marked as being
+     * processed with a single update. Where the database supports it, the rows locked by other workers are skipped
+     * instead of waiting for their locks, so that several workers can claim files concurrently.
+     * If the table has the lease columns, the files are leased to this node, the files whose lease has expired are
+     * released to be claimed again and the checkpoint of each claimed file is returned in
+     * {@link MGWFileInfoDTO#getProcessedLines()} and {@link MGWFileInfoDTO#getProcessedOffset()}.
      *
      * @param limit number of records to be retrieved
      * @return list of {@link MGWFileInfoDTO}
@@ -112,30 +288,49 @@ public class MGWFileSourceDAO {
                         + "'. Skip publishing usage data assuming Micro GW is not configured.");
                 return Collections.emptyList();
             }
+            boolean leased = isLeaseSupported(connection);
             autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            if ((connection.getMetaData().getDriverName()).contains("Oracle")) {
-                selectStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE);
-            } else if (connection.getMetaData().getDatabaseProductName().contains("Microsoft")) {
+            long currentTime = System.currentTimeMillis();
+            if (leased) {
+                releaseExpiredLeases(connection, currentTime);
+            }
+            DatabaseMetaData metaData = connection.getMetaData();
+            boolean skipLocked = Boolean.parseBoolean(MGWFileSourceDS.getClaimSkipLocked())
+                    && isSkipLockedSupported(metaData);
+            boolean limitedByFetch = false;
+            if ((metaData.getDriverName()).contains("Oracle")) {
+                if (skipLocked) {
+                    // rownum is evaluated before skipping the locked rows, hence the rows are limited while fetching
+                    selectStatement = connection.prepareStatement(
+                            MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE_SKIP_LOCKED);
+                    limitedByFetch = true;
+                } else {
+                    selectStatement = connection
+                            .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE);
+                }
+            } else if (metaData.getDatabaseProductName().contains("Microsoft")) {
                 selectStatement = connection
                         .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_MSSQL);
-            } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
+            } else if (metaData.getDatabaseProductName().contains("DB2")) {
                 selectStatement = connection
                         .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_DB2);
+            } else if (skipLocked) {
+                selectStatement = connection
+                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_SKIP_LOCKED);
             } else {
                 selectStatement = connection
                         .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_DEFAULT);
             }
-            selectStatement.setInt(1, limit);
+            if (limitedByFetch) {
+                selectStatement.setFetchSize(limit);
+            } else {
+                selectStatement.setInt(1, limit);
+            }
             resultSet = selectStatement.executeQuery();
-            while (resultSet.next()) {
+            while (usageFileList.size() < limit && resultSet.next()) {
                 String fileName = resultSet.getString("FILE_NAME");
                 long timeStamp = resultSet.getTimestamp("FILE_TIMESTAMP").getTime();
-                updateStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.UPDATE_FILE_PROCESSING_STARTED_STATUS);
-                updateStatement.setString(1, fileName);
-                updateStatement.executeUpdate();
                 //File content (Blob) is not stored in memory. Will retrieve one by one when processing.
                 MGWFileInfoDTO dto = new MGWFileInfoDTO(fileName, timeStamp);
                 usageFileList.add(dto);
@@ -143,6 +338,20 @@ public class MGWFileSourceDAO {
                     log.debug("Added File to list : " + dto.toString());
                 }
             }
+            if (!usageFileList.isEmpty()) {
+                if (leased) {
+                    updateStatement = prepareFileNameInStatement(connection,
+                            MGWFileSourceConstants.UPDATE_FILE_PROCESSING_STARTED_STATUS_WITH_LEASE, usageFileList, 2);
+                    updateStatement.setString(1, MGWFileSourceDS.getNodeId());
+                    updateStatement.setLong(2, currentTime + Long.parseLong(MGWFileSourceDS.getLeaseDuration()));
+                    updateStatement.executeUpdate();
+                    loadCheckpoints(connection, usageFileList);
+                } else {
+                    updateStatement = prepareFileNameInStatement(connection,
+                            MGWFileSourceConstants.UPDATE_FILE_PROCESSING_STARTED_STATUS, usageFileList, 0);
+                    updateStatement.executeUpdate();
+                }
+            }
             connection.commit();
         } catch (SQLException e) {
             try {
@@ -174,90 +383,575 @@ public class MGWFileSourceDAO {
      * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
     public static void updateCompletion(MGWFileInfoDTO dto) throws MGWFileSourceException {
+        updateCompletion(Collections.singletonList(dto));
+    }
+
+    /**
+     * Updates the completion of processing a set of uploaded usage files with a single update.
+     *
+     * @param dtoList Processed files represented by {@link MGWFileInfoDTO}
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static void updateCompletion(List<MGWFileInfoDTO> dtoList) throws MGWFileSourceException {
+        if (dtoList.isEmpty()) {
+            return;
+        }
         Connection connection = null;
         PreparedStatement statement = null;
+        boolean autoCommitStatus = false;
         try {
             connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            statement = connection.prepareStatement(MGWFileSourceConstants.UPDATE_COMPETITION_QUERY);
+            boolean leased = leaseSupported != null && leaseSupported;
+            if (leased) {
+                // a file whose lease has expired may already be claimed by another node
+                statement = prepareFileNameInStatement(connection,
+                        MGWFileSourceConstants.UPDATE_COMPLETION_WITH_LEASE_QUERY, dtoList, 1);
+                statement.setString(1, MGWFileSourceDS.getNodeId());
+            } else {
+                statement = prepareFileNameInStatement(connection, MGWFileSourceConstants.UPDATE_COMPETITION_QUERY,
+                        dtoList, 0);
+            }
+            int updatedCount = statement.executeUpdate();
+            connection.commit();
+            if (leased && updatedCount < dtoList.size()) {
+                log.warn((dtoList.size() - updatedCount) + " of the completed files : " + dtoList.toString()
+                        + " are no longer leased to this node. Their completion is left to their current owner.");
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Updated completion for files : " + dtoList.toString());
+            }
+        } catch (SQLException e) {
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back updating the completion state transaction.", e1);
+            }
+            throw new MGWFileSourceException("Error occurred while updating the completion state.", e);
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+    }
+
+    /**
+     * Marks a file being processed by this node as failed, so that it is not claimed again. Used for the files whose
+     * content can never be published.
+     *
+     * @param dto Failed file represented by {@link MGWFileInfoDTO}
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static void updateFailure(MGWFileInfoDTO dto) throws MGWFileSourceException {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        boolean autoCommitStatus = false;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (leaseSupported != null && leaseSupported) {
+                statement = connection.prepareStatement(MGWFileSourceConstants.UPDATE_FAILURE_WITH_LEASE_QUERY);
+                statement.setString(2, MGWFileSourceDS.getNodeId());
+            } else {
+                statement = connection.prepareStatement(MGWFileSourceConstants.UPDATE_FAILURE_QUERY);
+            }
             statement.setString(1, dto.getFileName());
             statement.executeUpdate();
             connection.commit();
             if (log.isDebugEnabled()) {
-                log.debug("Updated completion for file : " + dto.toString());
+                log.debug("Updated failure for file : " + dto.toString());
             }
         } catch (SQLException e) {
-            throw new MGWFileSourceException("Error occurred while updating the completion state.", e);
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back updating the failure state transaction.", e1);
+            }
+            throw new MGWFileSourceException("Error occurred while updating the failure of file : " + dto.toString(),
+                    e);
         } finally {
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
             MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
         }
     }
 
     /**
-     * Get the content of the file based on the file information.
+     * Extends the lease of a file being processed by this node and records the checkpoint up to which the file is
+     * published, so that the file is resumed from there if it is not completed.
+     *
+     * @param dto             File being processed represented by {@link MGWFileInfoDTO}
+     * @param processedLines  number of lines published so far
+     * @param processedOffset offset in bytes of the first unpublished line within the uncompressed file
+     * @return false if the file is no longer leased to this node
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static boolean renewLease(MGWFileInfoDTO dto, long processedLines, long processedOffset)
+            throws MGWFileSourceException {
+        if (leaseSupported == null || !leaseSupported) {
+            return true;
+        }
+        Connection connection = null;
+        PreparedStatement statement = null;
+        boolean autoCommitStatus = false;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(MGWFileSourceConstants.RENEW_LEASE_QUERY);
+            statement.setLong(1, System.currentTimeMillis() + Long.parseLong(MGWFileSourceDS.getLeaseDuration()));
+            statement.setLong(2, processedLines);
+            statement.setLong(3, processedOffset);
+            statement.setString(4, dto.getFileName());
+            statement.setString(5, MGWFileSourceDS.getNodeId());
+            int updatedCount = statement.executeUpdate();
+            connection.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Renewed lease of file : " + dto.toString() + " at line : " + processedLines
+                        + ", offset : " + processedOffset);
+            }
+            return updatedCount > 0;
+        } catch (SQLException e) {
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back renewing the lease transaction.", e1);
+            }
+            throw new MGWFileSourceException("Error occurred while renewing the lease of file : " + dto.toString(),
+                    e);
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+    }
+
+    /**
+     * Releases the files whose lease has expired, so that they are claimed again. The checkpoints of those files are
+     * kept, so that the next owner resumes from there. The files which have been claimed the maximum number of times
+     * are marked as failed instead, as a file which cannot be published would otherwise be claimed forever.
+     *
+     * @param connection  Connection
+     * @param currentTime current time in milliseconds
+     * @throws SQLException if the query fails
+     */
+    private static void releaseExpiredLeases(Connection connection, long currentTime) throws SQLException {
+        int maxAttempts = Integer.parseInt(MGWFileSourceDS.getMaxProcessingAttempts());
+        try (PreparedStatement statement = connection
+                .prepareStatement(MGWFileSourceConstants.FAIL_EXPIRED_LEASES_QUERY)) {
+            statement.setLong(1, currentTime);
+            statement.setInt(2, maxAttempts);
+            int failedCount = statement.executeUpdate();
+            if (failedCount > 0) {
+                log.error("Marked " + failedCount + " uploaded usage file(s) as failed, as they could not be "
+                        + "published in " + maxAttempts + " attempts. They will not be processed again.");
+            }
+        }
+        try (PreparedStatement statement = connection
+                .prepareStatement(MGWFileSourceConstants.RELEASE_EXPIRED_LEASES_QUERY)) {
+            statement.setLong(1, currentTime);
+            statement.setInt(2, maxAttempts);
+            int releasedCount = statement.executeUpdate();
+            if (releasedCount > 0) {
+                log.warn("Released " + releasedCount + " uploaded usage file(s) whose lease has expired. "
+                        + "They will be resumed from the last recorded line.");
+            }
+        }
+    }
+
+    /**
+     * Sets the checkpoint up to which each of the given files is already published.
+     *
+     * @param connection Connection
+     * @param dtoList    claimed files
+     * @throws SQLException if the query fails
+     */
+    private static void loadCheckpoints(Connection connection, List<MGWFileInfoDTO> dtoList)
+            throws SQLException {
+        Map<String, MGWFileInfoDTO> dtoMap = new HashMap<>();
+        for (MGWFileInfoDTO dto : dtoList) {
+            dtoMap.put(dto.getFileName(), dto);
+        }
+        try (PreparedStatement statement = prepareFileNameInStatement(connection,
+                MGWFileSourceConstants.GET_CHECKPOINTS_QUERY, dtoList, 0);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                MGWFileInfoDTO dto = dtoMap.get(resultSet.getString("FILE_NAME"));
+                if (dto != null) {
+                    dto.setProcessedLines(resultSet.getLong("PROCESSED_LINES"));
+                    dto.setProcessedOffset(resultSet.getLong("PROCESSED_OFFSET"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepares a statement whose last condition is {@code FILE_NAME IN (...)}, with a parameter for each file.
+     *
+     * @param connection      Connection
+     * @param query           query ending with {@code FILE_NAME IN}
+     * @param dtoList         files to be set as the parameters
+     * @param parameterOffset number of parameters in the query before the file names
+     * @return PreparedStatement with the file names set
+     * @throws SQLException if the statement cannot be prepared
+     */
+    private static PreparedStatement prepareFileNameInStatement(Connection connection, String query,
+                                                                List<MGWFileInfoDTO> dtoList, int parameterOffset)
+            throws SQLException {
+        StringBuilder placeholders = new StringBuilder(query).append(" (");
+        for (int i = 0; i < dtoList.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        PreparedStatement statement = connection.prepareStatement(placeholders.append(')').toString());
+        for (int i = 0; i < dtoList.size(); i++) {
+            statement.setString(parameterOffset + i + 1, dtoList.get(i).getFileName());
+        }
+        return statement;
+    }
+
+    /**
+     * Check whether the usage table has the lease columns. Tables created before the lease columns were introduced
+     * are still supported, but the files left in processing state by a failed node are not reclaimed.
+     *
+     * @param connection Connection
+     * @return true if the lease columns are present
+     */
+    private static boolean isLeaseSupported(Connection connection) {
+        if (leaseSupported == null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(MGWFileSourceConstants.LEASE_SUPPORT_CHECK_SQL);
+                leaseSupported = true;
+            } catch (SQLException e) {
+                discardFailedProbe(connection);
+                log.warn("Lease columns LEASE_OWNER, LEASE_EXPIRY, PROCESSED_LINES, PROCESSED_OFFSET and "
+                        + "PROCESSING_ATTEMPTS are not found in table 'AM_USAGE_UPLOADED_FILES'. Uploaded usage files "
+                        + "left in processing state by a failed node will not be reclaimed.");
+                leaseSupported = false;
+            }
+        }
+        return leaseSupported;
+    }
+
+    /**
+     * Rolls back a failed probe query if the connection is in a transaction, as some databases abort the transaction
+     * when a query fails.
+     */
+    private static void discardFailedProbe(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            log.debug("Error occurred while rolling back a failed probe query.", e);
+        }
+    }
+
+    /**
+     * Check whether the table has the CONTENT_DIGEST and FILE_SIZE columns. Without them, duplicate uploads are only
+     * detected by the upload endpoint of a node among the files recently uploaded to it, and the size of the pending
+     * files is not known.
+     *
+     * @param connection Connection
+     * @return true if the upload metadata columns are present
+     */
+    private static boolean isUploadMetadataSupported(Connection connection) {
+        if (uploadMetadataSupported == null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(MGWFileSourceConstants.UPLOAD_METADATA_SUPPORT_CHECK_SQL);
+                uploadMetadataSupported = true;
+            } catch (SQLException e) {
+                discardFailedProbe(connection);
+                log.warn("Columns CONTENT_DIGEST and FILE_SIZE are not found in table 'AM_USAGE_UPLOADED_FILES'. "
+                        + "Duplicate uploads of usage files will not be detected across nodes.");
+                uploadMetadataSupported = false;
+            }
+        }
+        return uploadMetadataSupported;
+    }
+
+    /**
+     * Check whether the table has an index on the FILE_PROCESSED and FILE_TIMESTAMP columns, in that order, which the
+     * old files are selected with by {@link #deleteProcessedOldFiles(Date, int)}. Without it each batch scans the
+     * table. The index is only checked once, and a missing index is only reported, as it can be created later.
+     *
+     * @param connection Connection
+     * @return true if the index is present or cannot be checked
+     */
+    private static boolean isRetentionIndexPresent(Connection connection) {
+        if (retentionIndexPresent == null) {
+            try {
+                DatabaseMetaData metaData = connection.getMetaData();
+                boolean present = hasIndex(metaData, connection.getCatalog(), "AM_USAGE_UPLOADED_FILES")
+                        || hasIndex(metaData, connection.getCatalog(), "am_usage_uploaded_files");
+                if (!present) {
+                    log.warn("Index on columns (" + MGWFileSourceConstants.RETENTION_INDEX_COLUMNS + ") is not "
+                            + "found in table 'AM_USAGE_UPLOADED_FILES'. Deleting old uploaded usage files will scan "
+                            + "the table. Create the index '" + MGWFileSourceConstants.RETENTION_INDEX_NAME
+                            + "' as in the database scripts of this release.");
+                }
+                retentionIndexPresent = present;
+            } catch (SQLException e) {
+                log.debug("Unable to check the indexes of table 'AM_USAGE_UPLOADED_FILES'.", e);
+                retentionIndexPresent = true;
+            }
+        }
+        return retentionIndexPresent;
+    }
+
+    private static boolean hasIndex(DatabaseMetaData metaData, String catalog, String tableName)
+            throws SQLException {
+        // the columns of each index, by their position in the index
+        Map<String, Map<Integer, String>> indexColumns = new HashMap<>();
+        try (ResultSet resultSet = metaData.getIndexInfo(catalog, null, tableName, false, true)) {
+            while (resultSet.next()) {
+                String indexName = resultSet.getString("INDEX_NAME");
+                String columnName = resultSet.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    continue;
+                }
+                indexColumns.computeIfAbsent(indexName, name -> new HashMap<>())
+                        .put((int) resultSet.getShort("ORDINAL_POSITION"), columnName);
+            }
+        }
+        String[] expectedColumns = MGWFileSourceConstants.RETENTION_INDEX_COLUMNS.split(",");
+        for (Map<Integer, String> columns : indexColumns.values()) {
+            boolean matches = true;
+            for (int i = 0; i < expectedColumns.length && matches; i++) {
+                matches = expectedColumns[i].equalsIgnoreCase(columns.get(i + 1));
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the database supports skipping the locked rows in a SELECT ... FOR UPDATE query.
+     *
+     * @param metaData DatabaseMetaData
+     * @return true for MySQL 8, PostgreSQL 9.5 and Oracle 11 onwards
+     * @throws SQLException throw if an error occurred
+     */
+    private static boolean isSkipLockedSupported(DatabaseMetaData metaData) throws SQLException {
+        String productName = metaData.getDatabaseProductName();
+        int majorVersion = metaData.getDatabaseMajorVersion();
+        if (productName.contains("MySQL")) {
+            return majorVersion >= 8;
+        } else if (productName.contains("PostgreSQL")) {
+            return majorVersion > 9 || (majorVersion == 9 && metaData.getDatabaseMinorVersion() >= 5);
+        } else if (productName.contains("Oracle")) {
+            return majorVersion >= 11;
+        }
+        return false;
+    }
+
+    /**
+     * Get the content of the file based on the file information. The returned stream holds the database resources
+     * used to read the content until it is closed, unless the content is larger than the spill threshold, in which
+     * case the content is copied to a temporary file and the database resources are released right away.
+     * <p>
+     * The content is read from the database in chunks of the configured size only where the driver reads BLOBs
+     * through locators, as the Oracle, MS SQL, DB2 and H2 drivers do. The PostgreSQL driver always reads a bytea
+     * value into memory along with its row, and so does the MySQL driver for BLOBs unless emulateLocators=true is
+     * set in the data source URL. The file system content store should be used with these databases when the
+     * uploaded files are large.
      *
      * @param dto Processed file represented by {@link MGWFileInfoDTO}
      * @return InputStream with the content of the file of null if there is no content
      * @throws MGWFileSourceException
      */
     public static InputStream getFileContent(MGWFileInfoDTO dto) throws MGWFileSourceException {
+        MGWFileContentStore contentStore = MGWFileSourceDS.getContentStore();
+        if (contentStore != null) {
+            String contentReference = getContentReference(dto);
+            // files uploaded before the content store is configured have their content in the database
+            if (contentReference != null) {
+                try {
+                    return contentStore.open(contentReference);
+                } catch (IOException e) {
+                    throw new MGWFileSourceException("Error occurred while opening the content of the file: "
+                            + dto.toString(), e);
+                }
+            }
+        }
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
-        InputStream fileContentInputStream = null;
+        MGWFileContentInputStream fileContentInputStream = null;
+        InputStream fileContent = null;
         try {
             connection = MGWFileSourceDBUtil.getConnection();
             connection.setAutoCommit(false);
             statement = connection.prepareStatement(MGWFileSourceConstants.GET_UPLOADED_FILE_CONTENT_QUERY);
             statement.setString(1, dto.getFileName());
             resultSet = statement.executeQuery();
-            while (resultSet.next()) {
+            if (resultSet.next()) {
+                reportContentInMemory(connection.getMetaData());
                 //Postgres bytea data doesn't support getBlob operation
                 if (connection.getMetaData().getDriverName().contains("PostgreSQL")) {
-                    fileContentInputStream = resultSet.getBinaryStream(MGWFileSourceConstants.API_USAGE_FILE_CONTENT);
+                    InputStream binaryStream = resultSet.getBinaryStream(MGWFileSourceConstants.API_USAGE_FILE_CONTENT);
+                    if (binaryStream != null) {
+                        fileContentInputStream = new MGWFileContentInputStream(binaryStream, connection, statement,
+                                resultSet);
+                    }
                 } else {
                     Blob content = resultSet.getBlob(MGWFileSourceConstants.API_USAGE_FILE_CONTENT);
-                    fileContentInputStream = content.getBinaryStream();
-                }
-                if (log.isDebugEnabled()) {
-                    log.debug("Added File to list : " + dto.toString());
+                    if (content != null) {
+                        fileContentInputStream = new MGWFileContentInputStream(content,
+                                Integer.parseInt(MGWFileSourceDS.getContentChunkSize()), connection, statement,
+                                resultSet);
+                    }
                 }
             }
+            if (fileContentInputStream == null) {
+                return null;
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Retrieved content of file : " + dto.toString());
             }
+            long spillThreshold = Long.parseLong(MGWFileSourceDS.getContentSpillThreshold());
+            if (spillThreshold >= 0 && fileContentInputStream.length() > spillThreshold) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Spilling content of file : " + dto.toString() + " of "
+                            + fileContentInputStream.length() + " bytes to a temporary file.");
+                }
+                String spillDirectory = MGWFileSourceDS.getContentSpillDirectory();
+                // closes the content stream, which releases the database resources
+                fileContent = MGWFileMappedInputStream.spill(fileContentInputStream,
+                        StringUtils.isEmpty(spillDirectory) ? null : Paths.get(spillDirectory));
+            } else {
+                fileContent = fileContentInputStream;
+            }
+            return fileContent;
         } catch (SQLException e) {
             throw new MGWFileSourceException(
                     "Error occurred while retrieving the content of the file: " + dto.toString(), e);
+        } catch (IOException e) {
+            throw new MGWFileSourceException(
+                    "Error occurred while spilling the content of the file: " + dto.toString(), e);
         } finally {
-            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+            if (fileContent == null) {
+                if (fileContentInputStream != null) {
+                    // releases the database resources held by the content stream
+                    IOUtils.closeQuietly(fileContentInputStream);
+                } else {
+                    MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+                }
+            }
         }
-        return fileContentInputStream;
     }
 
     /**
-     * Delete obsolete usage records in the dbG.
+     * Warns once if the driver reads the whole content of a file into memory rather than in chunks.
+     */
+    private static void reportContentInMemory(DatabaseMetaData metaData) throws SQLException {
+        if (contentInMemoryReported) {
+            return;
+        }
+        contentInMemoryReported = true;
+        String url = metaData.getURL();
+        if (metaData.getDriverName().contains("PostgreSQL") || (metaData.getDatabaseProductName().contains("MySQL")
+                && (url == null || !url.contains("emulateLocators=true")))) {
+            log.warn("The " + metaData.getDatabaseProductName() + " driver reads the whole content of an uploaded "
+                    + "file into memory. Use the file system content store (" + MGWFileSourceConstants
+                    .CONTENT_STORE_PROPERTY + "=" + MGWFileSourceConstants.CONTENT_STORE_FILESYSTEM + ") if the "
+                    + "uploaded files are large, or set emulateLocators=true in the data source URL with MySQL.");
+        }
+    }
+
+    /**
+     * Deletes a batch of the processed files which are older than the retention period. Each batch is deleted in a
+     * short transaction of its own, so that the uploads and claims of files are not blocked for long while a large
+     * number of old files is deleted.
      *
      * @param lastKeptDate up to which files should be retained
-     * @throws MGWFileSourceException
+     * @param limit        maximum number of files to delete
+     * @return number of old files found, which is less than the limit once all the old files are deleted
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the queries
      */
-    public static void deleteProcessedOldFiles(Date lastKeptDate) throws MGWFileSourceException {
+    public static int deleteProcessedOldFiles(Date lastKeptDate, int limit) throws MGWFileSourceException {
+        MGWFileContentStore contentStore = MGWFileSourceDS.getContentStore();
         Connection connection = null;
+        PreparedStatement selectStatement = null;
         PreparedStatement delStatement = null;
+        ResultSet resultSet = null;
         boolean autoCommitStatus = false;
         try {
             connection = MGWFileSourceDBUtil.getConnection();
             if (!isUsageTableExist(connection)) {
                 log.debug("Table 'AM_USAGE_UPLOADED_FILES' not found in '" + MGWFileSourceDBUtil.getDatasourceName()
                         + "'. Skip publishing usage data assuming Micro GW is not configured.");
-                return;
+                return 0;
             }
+            isRetentionIndexPresent(connection);
             autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            delStatement = connection.prepareStatement(MGWFileSourceConstants.DELETE_OLD_UPLOAD_COMPLETED_FILES);
-            delStatement.setTimestamp(1, new Timestamp(lastKeptDate.getTime()));
+            Timestamp lastKeptTimestamp = new Timestamp(lastKeptDate.getTime());
+            DatabaseMetaData metaData = connection.getMetaData();
+            if ((metaData.getDriverName()).contains("Oracle")) {
+                selectStatement = connection
+                        .prepareStatement(MGWFileSourceConstants.GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_ORACLE);
+                selectStatement.setInt(1, limit);
+                selectStatement.setTimestamp(2, lastKeptTimestamp);
+            } else if (metaData.getDatabaseProductName().contains("Microsoft")) {
+                selectStatement = connection
+                        .prepareStatement(MGWFileSourceConstants.GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_MSSQL);
+                selectStatement.setInt(1, limit);
+                selectStatement.setTimestamp(2, lastKeptTimestamp);
+            } else {
+                selectStatement = connection
+                        .prepareStatement(MGWFileSourceConstants.GET_OLD_UPLOAD_COMPLETED_FILES_QUERY_DEFAULT);
+                selectStatement.setTimestamp(1, lastKeptTimestamp);
+                selectStatement.setInt(2, limit);
+            }
+            resultSet = selectStatement.executeQuery();
+            List<MGWFileInfoDTO> oldFiles = new ArrayList<>();
+            while (oldFiles.size() < limit && resultSet.next()) {
+                oldFiles.add(new MGWFileInfoDTO(resultSet.getString("FILE_NAME"),
+                        resultSet.getTimestamp("FILE_TIMESTAMP").getTime()));
+            }
+            if (oldFiles.isEmpty()) {
+                connection.commit();
+                return 0;
+            }
+            List<String> contentReferences = contentStore == null ? Collections.emptyList()
+                    : getOldContentReferences(connection, lastKeptTimestamp, oldFiles);
+            // the files are deleted by name, along with the original conditions in case a name is reused
+            delStatement = prepareFileNameInStatement(connection,
+                    MGWFileSourceConstants.DELETE_OLD_UPLOAD_COMPLETED_FILES, oldFiles, 1);
+            delStatement.setTimestamp(1, lastKeptTimestamp);
             delStatement.executeUpdate();
             connection.commit();
+            if (contentStore != null) {
+                // only the metadata is deleted in the transaction, the content is unlinked in the background
+                contentStore.deleteAsync(contentReferences, MGWFileSourceDAO::isContentReferenced);
+            }
+            // some of the files may have been deleted by another node in the meantime, which does not matter here
+            return oldFiles.size();
         } catch (SQLException e) {
             try {
                 if (connection != null) {
@@ -275,7 +969,75 @@ public class MGWFileSourceDAO {
             } catch (SQLException e) {
                 log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
             }
-            MGWFileSourceDBUtil.closeAllConnections(delStatement, connection, null);
+            MGWFileSourceDBUtil.closeStatement(delStatement);
+            MGWFileSourceDBUtil.closeAllConnections(selectStatement, connection, resultSet);
+        }
+    }
+
+    /**
+     * Returns the reference to the content of a file in the content store.
+     *
+     * @param dto File represented by {@link MGWFileInfoDTO}
+     * @return content reference or null if the content is stored in the database
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    private static String getContentReference(MGWFileInfoDTO dto) throws MGWFileSourceException {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            statement = connection.prepareStatement(MGWFileSourceConstants.GET_UPLOADED_FILE_CONTENT_REF_QUERY);
+            statement.setString(1, dto.getFileName());
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getString("CONTENT_REF") : null;
+        } catch (SQLException e) {
+            throw new MGWFileSourceException(
+                    "Error occurred while retrieving the content reference of the file: " + dto.toString(), e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+        }
+    }
+
+    /**
+     * Returns the content references of the given files to be deleted by {@link #deleteProcessedOldFiles(Date, int)}.
+     */
+    private static List<String> getOldContentReferences(Connection connection, Timestamp lastKeptTimestamp,
+                                                        List<MGWFileInfoDTO> oldFiles) throws SQLException {
+        List<String> contentReferences = new ArrayList<>();
+        try (PreparedStatement statement = prepareFileNameInStatement(connection,
+                MGWFileSourceConstants.GET_OLD_UPLOAD_COMPLETED_CONTENT_REFS, oldFiles, 1)) {
+            statement.setTimestamp(1, lastKeptTimestamp);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    contentReferences.add(resultSet.getString("CONTENT_REF"));
+                }
+            }
+        }
+        return contentReferences;
+    }
+
+    /**
+     * Check whether a content in the content store is referenced by any uploaded file.
+     *
+     * @param contentReference reference to the content
+     * @return true if the content is referenced or if it cannot be checked
+     */
+    public static boolean isContentReferenced(String contentReference) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            statement = connection.prepareStatement(MGWFileSourceConstants.IS_CONTENT_REFERENCED_QUERY);
+            statement.setString(1, contentReference);
+            resultSet = statement.executeQuery();
+            return resultSet.next();
+        } catch (SQLException e) {
+            log.warn("Error occurred while checking the references to content : " + contentReference, e);
+            return true;
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
         }
     }
 
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileDataRetrieverThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Content addressed store of the uploaded usage files on a local or shared directory. The content is stored under its
+ * SHA-256 digest, hence the same content uploaded more than once is stored once, and the stored files are read
+ * through memory mapped regions.
+ */
+public class MGWFileSystemContentStore implements MGWFileContentStore {
+
+    private static final Log log = LogFactory.getLog(MGWFileSystemContentStore.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String CONTENT_FILE_SUFFIX = ".zip";
+    // a content stored again within this time is not deleted, as its new reference may not be committed yet
+    private static final long DELETE_GRACE_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+    private final Path directory;
+    private final ExecutorService deleteExecutor = Executors.newSingleThreadExecutor(
+            new MGWFileDataRetrieverThreadFactory("mgwfile-content-delete-thread"));
+
+    public MGWFileSystemContentStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public String put(InputStream content) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            MessageDigest digest = createDigest();
+            try (InputStream source = new DigestInputStream(content, digest);
+                 OutputStream target = Files.newOutputStream(temporaryFile, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    target.write(buffer, 0, read);
+                }
+            }
+            return store(temporaryFile, toHex(digest.digest()));
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    @Override
+    public String put(Path file) throws IOException {
+        MessageDigest digest = createDigest();
+        try (InputStream source = new DigestInputStream(Files.newInputStream(file), digest)) {
+            // the content is only read to compute its digest
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            do {
+                read = source.read(buffer);
+            } while (read != -1);
+        }
+        return put(file, toHex(digest.digest()));
+    }
+
+    @Override
+    public String put(Path file, String digest) throws IOException {
+        // the content is stored under its digest, hence the digest is the reference
+        String reference = digest.toLowerCase(Locale.ENGLISH);
+        resolve(reference);
+        Path temporaryFile = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            // a move within the same file system is a rename, otherwise the content is copied
+            Files.move(file, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            return store(temporaryFile, reference);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Moves a temporary file of the store to the path of its content, unless the content is already stored.
+     */
+    private String store(Path temporaryFile, String reference) throws IOException {
+        Path contentFile = resolve(reference);
+        if (Files.exists(contentFile)) {
+            // keep the existing content from being deleted while it is referenced again
+            Files.setLastModifiedTime(contentFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return reference;
+        }
+        Files.createDirectories(contentFile.getParent());
+        try {
+            Files.move(temporaryFile, contentFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            log.debug("Content " + reference + " is stored concurrently");
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile, contentFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        return MGWFileMappedInputStream.open(resolve(reference));
+    }
+
+    @Override
+    public void deleteAsync(Collection<String> references, Predicate<String> isReferenced) {
+        if (references.isEmpty()) {
+            return;
+        }
+        List<String> contents = new ArrayList<>(references);
+        deleteExecutor.execute(() -> {
+            for (String reference : contents) {
+                try {
+                    Path contentFile = resolve(reference);
+                    if (System.currentTimeMillis() - Files.getLastModifiedTime(contentFile).toMillis()
+                            < DELETE_GRACE_PERIOD || isReferenced.test(reference)) {
+                        continue;
+                    }
+                    Files.deleteIfExists(contentFile);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Deleted content " + reference + " of uploaded usage files");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Error occurred while deleting content " + reference + " of uploaded usage files", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        deleteExecutor.shutdown();
+    }
+
+    private Path resolve(String reference) throws IOException {
+        if (reference == null || !REFERENCE_PATTERN.matcher(reference).matches()) {
+            throw new IOException("Invalid content reference : " + reference);
+        }
+        return directory.resolve(reference.substring(0, 2)).resolve(reference + CONTENT_FILE_SUFFIX);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the platform", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
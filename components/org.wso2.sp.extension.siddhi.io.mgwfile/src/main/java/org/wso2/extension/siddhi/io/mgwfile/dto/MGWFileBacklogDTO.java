@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.dto;
+
+/**
+ * This class represents the uploaded files which are not yet completely published.
+ */
+public class MGWFileBacklogDTO {
+    private final long fileCount;
+    private final long fileSize;
+    private final long oldestTimeStamp;
+
+    /**
+     * Constructor.
+     *
+     * @param fileCount       number of files
+     * @param fileSize        total size of the files in bytes or -1 if it is not known
+     * @param oldestTimeStamp timestamp of the oldest file or 0 if there are no files
+     */
+    public MGWFileBacklogDTO(long fileCount, long fileSize, long oldestTimeStamp) {
+        this.fileCount = fileCount;
+        this.fileSize = fileSize;
+        this.oldestTimeStamp = oldestTimeStamp;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getOldestTimeStamp() {
+        return oldestTimeStamp;
+    }
+}
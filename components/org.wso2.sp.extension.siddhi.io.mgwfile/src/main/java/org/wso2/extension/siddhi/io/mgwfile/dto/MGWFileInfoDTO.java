@@ -24,6 +24,9 @@ package org.wso2.extension.siddhi.io.mgwfile.dto;
 public class MGWFileInfoDTO {
     private String fileName;
     private long timeStamp;
+    private long processedLines;
+    private long processedOffset;
+    private String contentDigest;
 
     /**
      * Constructor.
@@ -53,6 +56,53 @@ public class MGWFileInfoDTO {
         return timeStamp;
     }
 
+    /**
+     * Get the number of lines of the file which were published before the file was claimed.
+     * @return long number of lines to be skipped when publishing the file
+     */
+    public long getProcessedLines() {
+        return processedLines;
+    }
+
+    /**
+     * Set the number of lines of the file which were published before the file was claimed.
+     * @param processedLines number of lines to be skipped when publishing the file
+     */
+    public void setProcessedLines(long processedLines) {
+        this.processedLines = processedLines;
+    }
+
+    /**
+     * Get the offset in bytes of the first unpublished line within the uncompressed usage file.
+     * @return long byte offset to resume publishing the file from
+     */
+    public long getProcessedOffset() {
+        return processedOffset;
+    }
+
+    /**
+     * Set the offset in bytes of the first unpublished line within the uncompressed usage file.
+     * @param processedOffset byte offset to resume publishing the file from
+     */
+    public void setProcessedOffset(long processedOffset) {
+        this.processedOffset = processedOffset;
+    }
+
+    /**
+     * Get the hex encoded SHA-256 digest of the uploaded content.
+     * @return String content digest or null if it is not known
+     */
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    /**
+     * Set the hex encoded SHA-256 digest of the uploaded content, which is used to detect duplicate uploads.
+     * @param contentDigest content digest
+     */
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
 
     @Override
     public String toString() {
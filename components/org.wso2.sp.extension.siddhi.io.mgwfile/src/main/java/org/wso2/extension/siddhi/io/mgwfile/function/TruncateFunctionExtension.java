@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.function;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ParameterOverload;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+/**
+ * Truncates a string attribute to a maximum length, in place of
+ * ifThenElse(str:length(attribute) > length, str:substr(attribute, 0, length), attribute). The attribute is returned
+ * as it is when it is not longer than the maximum length, so only the truncated values are allocated.
+ */
+
+@Extension(name = "truncate", namespace = "apim", description = "Truncates a string to a maximum length. Strings "
+        + "which are not longer than the maximum length, and null, are returned as they are.",
+        parameters = {
+        @Parameter(name = "attribute",
+                description = "String to truncate.",
+                type = {
+                DataType.STRING },
+                dynamic = true),
+        @Parameter(name = "length",
+                description = "Maximum length of the string.",
+                type = {
+                DataType.INT }), },
+        parameterOverloads = {
+                @ParameterOverload(parameterNames = {"attribute", "length"})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The first length characters of the string.",
+                type = {
+                DataType.STRING }),
+        examples = {
+                @Example(
+                        syntax = "from InComingRequestStream\n"
+                                + "select apim:truncate(apiMethod, 20) as apiMethod\n"
+                                + "insert into Request;",
+                        description = "Truncates the apiMethod of the requests to 20 characters."
+                )
+        }
+)
+
+public class TruncateFunctionExtension extends FunctionExecutor {
+
+    private int length;
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppValidationException("Invalid no of arguments passed to apim:truncate() function, "
+                    + "required 2, but found " + attributeExpressionExecutors.length);
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppValidationException("Invalid parameter type found for the first argument of "
+                    + "apim:truncate() function, required " + Attribute.Type.STRING + ", but found "
+                    + attributeExpressionExecutors[0].getReturnType());
+        }
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)
+                || attributeExpressionExecutors[1].getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppValidationException("The second argument of apim:truncate() function should be a "
+                    + "constant " + Attribute.Type.INT);
+        }
+        length = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue();
+        if (length < 0) {
+            throw new SiddhiAppValidationException("The second argument of apim:truncate() function should not be "
+                    + "negative, but found " + length);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        String value = (String) data[0];
+        if (value == null || value.length() <= length) {
+            return value;
+        }
+        return value.substring(0, length);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        // not called, as the function always has two arguments
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.STRING;
+    }
+}
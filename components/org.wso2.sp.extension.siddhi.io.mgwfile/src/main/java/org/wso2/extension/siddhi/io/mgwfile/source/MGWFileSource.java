@@ -34,15 +34,11 @@ import io.siddhi.core.util.transport.OptionHolder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
-import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceRegistrationManager;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
-import org.wso2.extension.siddhi.io.mgwfile.task.MGWFileReaderTask;
 import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
 import org.wso2.extension.siddhi.map.wso2event.source.WSO2SourceMapper;
 
-import java.util.Timer;
-
 /**
  * Micro Gateway File Source.
  */
@@ -52,7 +48,9 @@ import java.util.Timer;
         parameters = {
         @Parameter(
                 name = "usage.publishing.frequency",
-                description = "Time interval to run the data retrieval timer task in milliseconds.",
+                description = "Maximum time interval in milliseconds to poll for uploaded files. The files are "
+                        + "polled again as soon as a file is published, and the interval backs off up to this value "
+                        + "while there are no files to publish.",
                 type = { DataType.STRING },
                 optional = true,
                 defaultValue = "300000"),
@@ -68,13 +66,144 @@ import java.util.Timer;
                 DataType.STRING },
                 optional = true,
                 defaultValue = "5"),
+        @Parameter(name = "usage.cleanup.batch.size",
+                description = "Maximum number of processed files deleted in a single transaction by the data cleanup "
+                        + "timer task.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1000"),
+        @Parameter(name = "usage.cleanup.max.duration",
+                description = "Maximum time in milliseconds a run of the data cleanup timer task keeps deleting "
+                        + "batches of processed files. The remaining files are deleted by the next run.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "10000"),
         @Parameter(name = "usage.publishing.thread.count",
                 description = "Number of threads to use for data retrieval when the timer task runs. A single thread "
                         + "will process data from a single file.",
                 type = {
                 DataType.STRING },
                 optional = true,
-                defaultValue = "3"), },
+                defaultValue = "3"),
+        @Parameter(name = "usage.publishing.parser.thread.count",
+                description = "Number of threads shared by all the files to parse a file in parallel chunks. When "
+                        + "this is 0, each file is parsed by the thread which reads it.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "0"),
+        @Parameter(name = "usage.publishing.batch.size",
+                description = "Maximum number of events of a stream that are delivered together to Siddhi while "
+                        + "publishing a file.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "500"),
+        @Parameter(name = "usage.publishing.batch.linger.time",
+                description = "Maximum time in milliseconds an event is kept in a batch before the batch is "
+                        + "delivered to Siddhi.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1000"),
+        @Parameter(name = "usage.content.chunk.size",
+                description = "Size in bytes of the chunks in which the content of an uploaded file is read from "
+                        + "the database.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1048576"),
+        @Parameter(name = "usage.content.spill.threshold",
+                description = "Uploaded files larger than this size in bytes are copied to a temporary file before "
+                        + "publishing, so that the database connection is released early. A negative value "
+                        + "disables spilling.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "104857600"),
+        @Parameter(name = "usage.content.spill.directory",
+                description = "Directory to create the temporary files of spilled uploaded files in.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "java.io.tmpdir"),
+        @Parameter(name = "usage.content.store",
+                description = "Where the content of the uploaded files is stored. When this is 'filesystem', the "
+                        + "content is stored in the content store directory, addressed by its SHA-256 digest, and "
+                        + "only the metadata of the files is kept in the database. When this is 'database', the "
+                        + "content is stored in the FILE_CONTENT column.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "database"),
+        @Parameter(name = "usage.content.store.directory",
+                description = "Local or shared directory of the content store, which is required when the content "
+                        + "store is 'filesystem'.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "none"),
+        @Parameter(name = "usage.publishing.node.id",
+                description = "Id of this node, which is recorded as the owner of the uploaded files leased to it.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "process id and host name of the node"),
+        @Parameter(name = "usage.publishing.lease.duration",
+                description = "Time in milliseconds for which an uploaded file is leased to a node. The lease is "
+                        + "renewed while the file is being published and a file whose lease has expired is resumed "
+                        + "by any node from its last checkpoint.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "300000"),
+        @Parameter(name = "usage.publishing.checkpoint.interval",
+                description = "Maximum time in milliseconds between two checkpoints of the position up to which a "
+                        + "file is published. A file which is not completed is resumed from its last checkpoint. The "
+                        + "checkpoints are recorded at least three times per lease duration.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "10000"),
+        @Parameter(name = "usage.publishing.checkpoint.lines",
+                description = "Maximum number of lines of a file published between two checkpoints. When this is "
+                        + "0, the checkpoints are only recorded based on the checkpoint interval.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "100000"),
+        @Parameter(name = "usage.publishing.dead.letter.directory",
+                description = "Directory of the dead letter file, to which the lines of the uploaded files which "
+                        + "could not be published are written along with the name of the file, the line number and "
+                        + "the reason.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "mgw-usage-dead-letter in java.io.tmpdir"),
+        @Parameter(name = "usage.publishing.dead.letter.max.lines",
+                description = "Maximum number of lines of a single uploaded file written to the dead letter file. "
+                        + "The further lines which could not be published are only counted.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1000"),
+        @Parameter(name = "usage.publishing.dead.letter.max.size",
+                description = "Size in bytes after which the dead letter file is rolled over. A single rolled over "
+                        + "file is kept.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "104857600"),
+        @Parameter(name = "usage.publishing.expected.streams",
+                description = "Comma separated names of the streams which should be registered by mgwfile sources "
+                        + "before the uploaded files are claimed for publishing.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "org.wso2.apimgt.statistics.request,org.wso2.apimgt.statistics.throttle,"
+                        + "org.wso2.apimgt.statistics.fault"), },
         examples = {
                 @Example(
                         syntax = "@source(type = 'mgwfile', wso2.stream.id = 'org.wso2.apimgt.statistics.request:3.0.0'"
@@ -90,7 +219,6 @@ public class MGWFileSource extends Source {
     private SourceEventListener sourceEventListener;
     private OptionHolder optionHolder;
     private String streamId;
-    private MGWFileReaderTask fileReaderTask;
 
     @Override
     protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
@@ -141,19 +269,12 @@ public class MGWFileSource extends Source {
         try {
             FileDataRetrieverUtil.addStreamDefinition(streamDefinition, streamId);
             MGWFileSourceRegistrationManager.registerEventConsumer(streamId, sourceEventListener);
-            readFileFromDatabase();
         } catch (MGWFileSourceException e) {
             log.error("Error during parsing stream definition for stream " + streamId
-                    + " TimerTask will not be scheduled", e);
+                    + ". Events will not be published to the stream", e);
         }
     }
 
-    private void readFileFromDatabase() {
-        fileReaderTask = new MGWFileReaderTask();
-        Timer readTimer = new Timer();
-        readTimer.schedule(fileReaderTask, 0, Long.parseLong(MGWFileSourceDS.getFileReaderFrequency()));
-    }
-
     /**
      * This method can be called when it is needed to disconnect from the end point.
      */
@@ -175,9 +296,7 @@ public class MGWFileSource extends Source {
      */
     @Override
     public void pause() {
-        if (fileReaderTask != null) {
-            fileReaderTask.setPaused(true);
-        }
+        MGWFileSourceRegistrationManager.pauseEventConsumer(streamId);
     }
 
     /**
@@ -185,9 +304,7 @@ public class MGWFileSource extends Source {
      */
     @Override
     public void resume() {
-        if (fileReaderTask != null) {
-            fileReaderTask.setPaused(false);
-        }
+        MGWFileSourceRegistrationManager.resumeEventConsumer(streamId);
     }
 }
 
@@ -28,12 +28,14 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.TimerTask;
 
 /**
- * Task for cleaning uploaded old usage files in db.
+ * Task for cleaning uploaded old usage files in db. The files are deleted in small batches, each in a transaction of
+ * its own, for at most the configured duration per run. A run deletes a single batch while all the workers of the
+ * {@link MGWFileReaderTask} are busy, so that the cleanup does not compete with publishing but still keeps up with
+ * the retention under sustained load, and the remaining files are deleted by the next run.
  */
-public class MGWFileCleanUpTask extends TimerTask {
+public class MGWFileCleanUpTask implements Runnable {
 
     private static final Log log = LogFactory.getLog(MGWFileCleanUpTask.class);
     private DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
@@ -62,11 +64,32 @@ public class MGWFileCleanUpTask extends TimerTask {
             log.debug("Uploaded API Usage data in the db will be cleaned up to : " +
                     dateFormat.format(lastKeptDate));
         }
+        int batchSize = Integer.parseInt(MGWFileSourceDS.getCleanupBatchSize());
+        long endTime = System.currentTimeMillis() + Long.parseLong(MGWFileSourceDS.getCleanupMaxDuration());
+        long deletedCount = 0;
         try {
-            MGWFileSourceDAO.deleteProcessedOldFiles(lastKeptDate);
+            while (true) {
+                int deleted = MGWFileSourceDAO.deleteProcessedOldFiles(lastKeptDate, batchSize);
+                deletedCount += deleted;
+                if (deleted < batchSize) {
+                    break;
+                }
+                if (MGWFileReaderTask.isSaturated()) {
+                    log.debug("Paused cleaning the uploaded usage data as all the publishing threads are busy.");
+                    break;
+                }
+                if (System.currentTimeMillis() >= endTime) {
+                    log.info("Deleted " + deletedCount + " old uploaded usage files. The remaining files will be "
+                            + "deleted in the next cleanup.");
+                    break;
+                }
+            }
         } catch (MGWFileSourceException e) {
             log.error("Error occurred while cleaning the uploaded usage data.", e);
         }
+        if (log.isDebugEnabled()) {
+            log.debug("Deleted " + deletedCount + " old uploaded usage files.");
+        }
     }
 
 }
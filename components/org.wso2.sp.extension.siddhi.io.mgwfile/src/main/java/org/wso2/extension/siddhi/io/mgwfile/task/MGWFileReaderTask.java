@@ -22,53 +22,213 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileDataRetriever;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileDataRetrieverThreadFactory;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceMetrics;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.TimerTask;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Task for scheduling the usage publishing threads.
+ * Task for scheduling the usage publishing threads. A single instance of this task claims the files for all the
+ * mgwfile sources, see {@link org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceRegistrationManager}. The task
+ * claims at most as many files as there are free worker threads. It polls again as soon as a worker completes a
+ * file, and backs off exponentially up to the configured publishing frequency while there are no files to process.
  */
-public class MGWFileReaderTask extends TimerTask {
+public class MGWFileReaderTask implements Runnable {
 
     private static final Log log = LogFactory.getLog(
             MGWFileReaderTask.class);
     private static int workerThreadCount = Integer.parseInt(MGWFileSourceDS.getWorkerThreadCount());
     private static Executor usagePublisherPool = Executors
             .newFixedThreadPool(workerThreadCount, new MGWFileDataRetrieverThreadFactory("mgwfile-thread"));
-    private boolean isPaused = false;
+    private static Semaphore freeWorkers = new Semaphore(workerThreadCount);
+    private static Queue<MGWFileInfoDTO> completedFiles = new ConcurrentLinkedQueue<>();
+    private static MGWFileSourceMetrics metrics = MGWFileSourceMetrics.getInstance();
 
-    public MGWFileReaderTask() {
+    static {
+        metrics.setWorkerThreadCount(workerThreadCount);
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final long maxPollInterval;
+    private long pollInterval = MGWFileSourceConstants.MIN_POLL_INTERVAL;
+    private ScheduledFuture<?> nextPoll;
+    private volatile boolean isPaused = false;
+    private volatile boolean isStopped = false;
+
+    public MGWFileReaderTask(ScheduledExecutorService scheduler) {
         log.debug("Initializing Uploaded Usage Publisher Executor Task");
+        this.scheduler = scheduler;
+        this.maxPollInterval = Long.parseLong(MGWFileSourceDS.getFileReaderFrequency());
+    }
+
+    /**
+     * Returns whether all the worker threads are busy publishing files.
+     *
+     * @return true if there are no free workers
+     */
+    public static boolean isSaturated() {
+        return freeWorkers.availablePermits() == 0;
     }
 
     public void setPaused(boolean paused) {
+        boolean wasPaused = isPaused;
         isPaused = paused;
+        if (wasPaused && !paused) {
+            schedule(0);
+        }
+    }
+
+    /**
+     * Starts polling for uploaded files.
+     */
+    public void start() {
+        isStopped = false;
+        schedule(0);
+    }
+
+    /**
+     * Stops polling for uploaded files. The files which are already being published are not affected.
+     */
+    public synchronized void stop() {
+        isStopped = true;
+        if (nextPoll != null) {
+            nextPoll.cancel(false);
+            nextPoll = null;
+        }
+    }
+
+    /**
+     * Schedules the next poll after the given delay, unless a poll is already due earlier.
+     *
+     * @param delay delay in milliseconds
+     */
+    private synchronized void schedule(long delay) {
+        if (isStopped) {
+            return;
+        }
+        if (nextPoll != null && !nextPoll.isDone()) {
+            if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            nextPoll.cancel(false);
+        }
+        nextPoll = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void run() {
+        synchronized (this) {
+            // this poll is running, allow the next one to be scheduled
+            nextPoll = null;
+        }
+        if (isStopped) {
+            return;
+        }
+        updateCompletedFiles();
+        if (isPaused) {
+            log.info("Paused publishing micro-gateway API Usage data ");
+            return;
+        }
+        int freeWorkerCount = freeWorkers.availablePermits();
+        if (freeWorkerCount == 0) {
+            metrics.recordSaturatedPoll();
+            // a worker polls again once it completes its file
+            schedule(maxPollInterval);
+            return;
+        }
         try {
-            if (!isPaused) {
-                List<MGWFileInfoDTO> uploadedFileList = MGWFileSourceDAO.getNextFilesToProcess(workerThreadCount);
-                for (MGWFileInfoDTO dto : uploadedFileList) {
-                    if (log.isDebugEnabled()) {
-                        log.info("Scheduled publishing micro-gateway API Usage data for : " + dto.getFileName());
-                    }
-                    Runnable worker = new MGWFileDataRetriever(dto);
-                    usagePublisherPool.execute(worker);
+            long claimStartTime = System.nanoTime();
+            List<MGWFileInfoDTO> uploadedFileList = MGWFileSourceDAO.getNextFilesToProcess(freeWorkerCount);
+            metrics.recordClaimTime(System.nanoTime() - claimStartTime);
+            for (MGWFileInfoDTO dto : uploadedFileList) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Scheduled publishing micro-gateway API Usage data for : " + dto.getFileName());
                 }
+                MGWFileDataRetriever retriever = new MGWFileDataRetriever(dto);
+                freeWorkers.acquireUninterruptibly();
+                usagePublisherPool.execute(new Worker(retriever));
+            }
+            if (uploadedFileList.isEmpty()) {
+                schedule(pollInterval);
+                pollInterval = Math.min(pollInterval * 2, maxPollInterval);
             } else {
-                log.info("Paused publishing micro-gateway API Usage data ");
+                pollInterval = MGWFileSourceConstants.MIN_POLL_INTERVAL;
+                if (uploadedFileList.size() < freeWorkerCount) {
+                    // all the pending files are claimed, start backing off from the next poll
+                    schedule(pollInterval);
+                } else {
+                    schedule(maxPollInterval);
+                }
             }
         } catch (MGWFileSourceException e) {
             log.error("Error occurred while publishing micro-gateway API Usage data.", e);
+            schedule(maxPollInterval);
+        } catch (RuntimeException e) {
+            // an exception would silently stop the polling as the task reschedules itself
+            log.error("Unexpected error occurred while publishing micro-gateway API Usage data.", e);
+            schedule(maxPollInterval);
+        }
+    }
+
+    /**
+     * Marks the files completed by the workers since the last poll as processed, with a single update.
+     */
+    private static synchronized void updateCompletedFiles() {
+        List<MGWFileInfoDTO> files = new ArrayList<>();
+        MGWFileInfoDTO dto;
+        while ((dto = completedFiles.poll()) != null) {
+            files.add(dto);
+        }
+        try {
+            MGWFileSourceDAO.updateCompletion(files);
+        } catch (MGWFileSourceException e) {
+            log.error("Error occurred while updating the completion of files : " + files
+                    + ". Will be retried in the next poll.", e);
+            completedFiles.addAll(files);
+        }
+    }
+
+    /**
+     * Publishes a file in a worker thread and polls for the next files once the file is completed.
+     */
+    private class Worker implements Runnable {
+
+        private final MGWFileDataRetriever retriever;
+
+        private Worker(MGWFileDataRetriever retriever) {
+            this.retriever = retriever;
+        }
+
+        @Override
+        public void run() {
+            metrics.recordWorkerStarted();
+            try {
+                retriever.run();
+            } finally {
+                metrics.recordWorkerCompleted();
+                if (retriever.isCompleted()) {
+                    completedFiles.add(retriever.getInfoDTO());
+                }
+                freeWorkers.release();
+                if (isStopped) {
+                    updateCompletedFiles();
+                } else {
+                    schedule(0);
+                }
+            }
         }
     }
 
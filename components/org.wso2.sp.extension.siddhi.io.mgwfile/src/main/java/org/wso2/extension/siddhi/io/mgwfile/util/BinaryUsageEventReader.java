@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the events of a usage file in the binary usage file format, see {@link BinaryUsageFileFormat}, a block at a
+ * time. The payload attributes are converted to the types of the stream definition, as the text format is. The reader
+ * should be closed to release the decompressor, whether or not the file is read completely.
+ */
+public class BinaryUsageEventReader implements Closeable {
+
+    private final InputStream in;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private long eventCount;
+    private long byteOffset;
+    private final List<Event> events = new ArrayList<>();
+    private final List<MGWFileSourceException> errors = new ArrayList<>();
+    // numbers of the events and of the errors of the current block within the file
+    private long[] eventNumbers = new long[0];
+    private long[] errorNumbers = new long[0];
+
+    /**
+     * Creates a reader over a file, or over the rest of a file whose beginning is already read, for resuming the file
+     * from a checkpoint.
+     *
+     * @param in         content of the file after the given offset
+     * @param eventCount number of events before the given offset
+     * @param byteOffset offset in bytes of the given content within the file, which is 0 or the beginning of a block
+     */
+    public BinaryUsageEventReader(InputStream in, long eventCount, long byteOffset) {
+        this.in = in;
+        this.eventCount = eventCount;
+        this.byteOffset = byteOffset;
+    }
+
+    /**
+     * Reads and decodes the next block of the file.
+     *
+     * @return false if the end of the file is reached
+     * @throws IOException            if an error occurs while reading the underlying stream
+     * @throws MGWFileSourceException if the file is not in the binary format or the block is corrupted
+     */
+    public boolean nextBlock() throws IOException, MGWFileSourceException {
+        events.clear();
+        errors.clear();
+        if (byteOffset == 0) {
+            readHeader();
+        }
+        long length = BinaryUsageFileFormat.readVarLong(in);
+        if (length < 0) {
+            return false;
+        }
+        long compressedLength = BinaryUsageFileFormat.readVarLong(in);
+        if (length > BinaryUsageFileFormat.MAX_BLOCK_LENGTH || compressedLength < 0
+                || compressedLength > BinaryUsageFileFormat.MAX_BLOCK_LENGTH) {
+            throw new MGWFileSourceException("Block at offset " + byteOffset + " is corrupted");
+        }
+        if (compressed.length < compressedLength) {
+            compressed = new byte[(int) compressedLength];
+        }
+        BinaryUsageFileFormat.readFully(in, compressed, (int) compressedLength);
+        byte[] body = new byte[(int) length];
+        try {
+            inflater.reset();
+            inflater.setInput(compressed, 0, (int) compressedLength);
+            if (inflater.inflate(body) != length || !inflater.finished()) {
+                throw new MGWFileSourceException("Block at offset " + byteOffset + " is corrupted");
+            }
+            decodeBlock(ByteBuffer.wrap(body));
+        } catch (DataFormatException | RuntimeException e) {
+            throw new MGWFileSourceException("Block at offset " + byteOffset + " is corrupted", e);
+        }
+        byteOffset += BinaryUsageFileFormat.varLongLength(length)
+                + BinaryUsageFileFormat.varLongLength(compressedLength) + compressedLength;
+        return true;
+    }
+
+    /**
+     * Returns the events of the current block which could be decoded.
+     *
+     * @return events in the order of the file
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the errors of the events of the current block which could not be decoded.
+     *
+     * @return decoding errors
+     */
+    public List<MGWFileSourceException> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of an event of the current block within the file, starting from 1, which takes the place
+     * of the line number of the text format.
+     *
+     * @param index index of the event in {@link #getEvents()}
+     * @return event number
+     */
+    public long getEventNumber(int index) {
+        return eventNumbers[index];
+    }
+
+    /**
+     * Returns the number of the event of an error of the current block within the file, starting from 1.
+     *
+     * @param index index of the error in {@link #getErrors()}
+     * @return event number
+     */
+    public long getErrorEventNumber(int index) {
+        return errorNumbers[index];
+    }
+
+    /**
+     * Returns the number of events of the file up to the end of the current block.
+     *
+     * @return event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the offset in bytes of the end of the current block, from which the file can be resumed.
+     *
+     * @return byte offset of the next block
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * Releases the decompressor. The underlying stream is not closed.
+     */
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    private void readHeader() throws IOException, MGWFileSourceException {
+        byte[] header = new byte[BinaryUsageFileFormat.HEADER_LENGTH];
+        BinaryUsageFileFormat.readFully(in, header, header.length);
+        if (!Arrays.equals(Arrays.copyOf(header, BinaryUsageFileFormat.MAGIC.length), BinaryUsageFileFormat.MAGIC)) {
+            throw new MGWFileSourceException("File is not in the binary usage file format");
+        }
+        if (header[BinaryUsageFileFormat.MAGIC.length] != BinaryUsageFileFormat.VERSION) {
+            throw new MGWFileSourceException("Unsupported binary usage file format version : "
+                    + header[BinaryUsageFileFormat.MAGIC.length]);
+        }
+        byteOffset = header.length;
+    }
+
+    private void decodeBlock(ByteBuffer buffer) {
+        // every entry takes at least a byte, which bounds the counts by the block length
+        int count = BinaryUsageFileFormat.readCount(buffer, buffer.remaining());
+        String[] dictionary = new String[BinaryUsageFileFormat.readCount(buffer, buffer.remaining())];
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = BinaryUsageFileFormat.readCount(buffer, buffer.remaining());
+            dictionary[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        String[] streamIds = new String[BinaryUsageFileFormat.readCount(buffer, buffer.remaining())];
+        for (int i = 0; i < streamIds.length; i++) {
+            streamIds[i] = dictionary[BinaryUsageFileFormat.readCount(buffer, dictionary.length - 1)];
+        }
+        int[] eventStreams = new int[count];
+        int[] streamEventCounts = new int[streamIds.length];
+        for (int i = 0; i < count; i++) {
+            eventStreams[i] = BinaryUsageFileFormat.readCount(buffer, streamIds.length - 1);
+            streamEventCounts[eventStreams[i]]++;
+        }
+        long[] timestamps = new long[count];
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += BinaryUsageFileFormat.readZigZag(buffer);
+            timestamps[i] = timestamp;
+        }
+        Object[][] metaData = readNullableReferences(buffer, count, dictionary);
+        Object[][] correlationData = readNullableReferences(buffer, count, dictionary);
+        Object[][][] payloadColumns = new Object[streamIds.length][][];
+        for (int stream = 0; stream < streamIds.length; stream++) {
+            Object[][] columns = new Object[BinaryUsageFileFormat.readCount(buffer, buffer.remaining())][];
+            for (int attribute = 0; attribute < columns.length; attribute++) {
+                columns[attribute] = readColumn(buffer, streamEventCounts[stream], dictionary);
+            }
+            payloadColumns[stream] = columns;
+        }
+        // the decoders are looked up once per stream of the block rather than once per event
+        PayloadAttributeDecoder[][] streamDecoders = new PayloadAttributeDecoder[streamIds.length][];
+        for (int stream = 0; stream < streamIds.length; stream++) {
+            streamDecoders[stream] = FileDataRetrieverUtil.getPayloadDecoders(streamIds[stream]);
+        }
+        int[] streamPositions = new int[streamIds.length];
+        if (eventNumbers.length < count) {
+            eventNumbers = new long[count];
+            errorNumbers = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int stream = eventStreams[i];
+            eventCount++;
+            try {
+                Object[] payload = createPayload(streamIds[stream], streamDecoders[stream], payloadColumns[stream],
+                        streamPositions[stream]);
+                eventNumbers[events.size()] = eventCount;
+                events.add(new Event(streamIds[stream], timestamps[i], metaData[i], correlationData[i], payload));
+            } catch (MGWFileSourceException e) {
+                errorNumbers[errors.size()] = eventCount;
+                errors.add(e);
+            }
+            streamPositions[stream]++;
+        }
+    }
+
+    private static Object[][] readNullableReferences(ByteBuffer buffer, int count, String[] dictionary) {
+        Object[][] values = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            int reference = BinaryUsageFileFormat.readCount(buffer, dictionary.length);
+            values[i] = reference == 0 ? null : new Object[]{dictionary[reference - 1]};
+        }
+        return values;
+    }
+
+    private static Object[] readColumn(ByteBuffer buffer, int count, String[] dictionary) {
+        int type = buffer.get();
+        byte[] presence = new byte[(count + 7) / 8];
+        buffer.get(presence);
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            if ((presence[i >> 3] & (1 << (i & 7))) == 0) {
+                continue;
+            }
+            switch (type) {
+            case BinaryUsageFileFormat.TYPE_INT:
+                values[i] = (int) BinaryUsageFileFormat.readZigZag(buffer);
+                break;
+            case BinaryUsageFileFormat.TYPE_LONG:
+                values[i] = BinaryUsageFileFormat.readZigZag(buffer);
+                break;
+            case BinaryUsageFileFormat.TYPE_BOOL:
+                values[i] = buffer.get() != 0;
+                break;
+            case BinaryUsageFileFormat.TYPE_FLOAT:
+                values[i] = Float.intBitsToFloat(Integer.reverseBytes(buffer.getInt()));
+                break;
+            case BinaryUsageFileFormat.TYPE_DOUBLE:
+                values[i] = Double.longBitsToDouble(Long.reverseBytes(buffer.getLong()));
+                break;
+            case BinaryUsageFileFormat.TYPE_STRING:
+                values[i] = dictionary[BinaryUsageFileFormat.readCount(buffer, dictionary.length - 1)];
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown column type " + type);
+            }
+        }
+        return values;
+    }
+
+    private Object[] createPayload(String streamId, PayloadAttributeDecoder[] decoders, Object[][] columns,
+                                   int position) throws MGWFileSourceException {
+        if (decoders == null) {
+            return new Object[0];
+        }
+        Object[] payload = new Object[decoders.length];
+        for (int attribute = 0; attribute < columns.length; attribute++) {
+            Object value = columns[attribute][position];
+            if (value == null) {
+                continue;
+            }
+            if (attribute >= decoders.length) {
+                throw new MGWFileSourceException("Payload of event " + eventCount + " has more attributes than the "
+                        + decoders.length + " defined in stream " + streamId);
+            }
+            try {
+                payload[attribute] = convert(decoders[attribute], value);
+            } catch (NumberFormatException e) {
+                throw new MGWFileSourceException("Error while decoding event " + eventCount, e);
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Converts a value to the type of the attribute in the stream definition. Values of other types are decoded
+     * from their string representation, as they would be from the text format.
+     */
+    private static Object convert(PayloadAttributeDecoder decoder, Object value) {
+        switch (decoder) {
+        case INT:
+            if (value instanceof Integer) {
+                return value;
+            }
+            if (value instanceof Long && (Long) value == ((Long) value).intValue()) {
+                return ((Long) value).intValue();
+            }
+            break;
+        case LONG:
+            if (value instanceof Long || value instanceof Integer) {
+                return ((Number) value).longValue();
+            }
+            break;
+        case BOOL:
+            if (value instanceof Boolean) {
+                return value;
+            }
+            break;
+        case FLOAT:
+            if (value instanceof Float) {
+                return value;
+            }
+            break;
+        case DOUBLE:
+            if (value instanceof Double) {
+                return value;
+            }
+            break;
+        default:
+            if (value instanceof String) {
+                return value;
+            }
+        }
+        String string = String.valueOf(value);
+        return decoder.decode(string.toCharArray(), 0, string.length());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and primitive encodings of the binary usage file format, version 2.
+ * <p>
+ * The file starts with the {@link #MAGIC} bytes followed by the {@link #VERSION} byte, and is followed by blocks of
+ * events. Each block is written as its uncompressed length and its compressed length as unsigned varints, followed
+ * by the deflate compressed block body. A block body is self contained, so that a file can be resumed from the
+ * beginning of any block. It consists of
+ * <ul>
+ * <li>the number of events in the block</li>
+ * <li>the dictionary of the block, which holds the stream ids, meta data, correlation data and string attributes of
+ * the events, each as its UTF-8 length followed by its bytes</li>
+ * <li>the stream ids of the block as dictionary indexes</li>
+ * <li>a column with the index of the stream of each event in the stream ids of the block</li>
+ * <li>a column with the difference between the timestamp of each event and the previous event as zigzag varints</li>
+ * <li>columns with the meta data and the correlation data of each event as dictionary indexes plus one, 0 being
+ * null</li>
+ * <li>for each stream of the block, the number of its payload attributes followed by a column for each attribute,
+ * holding the type of the column, a bitmap of the non null values and the non null values of the events of the
+ * stream</li>
+ * </ul>
+ * Integers are written as zigzag varints, floating point numbers as their IEEE 754 bits, booleans as a byte and
+ * strings as dictionary indexes.
+ */
+final class BinaryUsageFileFormat {
+
+    static final byte[] MAGIC = {'M', 'G', 'W', 'U'};
+    static final int VERSION = 2;
+    static final int HEADER_LENGTH = MAGIC.length + 1;
+    // a block larger than this is considered corrupted
+    static final int MAX_BLOCK_LENGTH = 64 * 1024 * 1024;
+
+    static final int TYPE_INT = 1;
+    static final int TYPE_LONG = 2;
+    static final int TYPE_BOOL = 3;
+    static final int TYPE_FLOAT = 4;
+    static final int TYPE_DOUBLE = 5;
+    static final int TYPE_STRING = 6;
+
+    private BinaryUsageFileFormat() {
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeZigZag(OutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static long readZigZag(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a non negative int written as a varint, which should not exceed the given limit.
+     */
+    static int readCount(ByteBuffer buffer, int limit) {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > limit) {
+            throw new IllegalArgumentException("Count " + value + " exceeds the limit " + limit);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a varint from a stream.
+     *
+     * @return value or -1 if the stream ends before the first byte
+     * @throws IOException if the stream ends within the varint
+     */
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Unexpected end of a varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+        int position = 0;
+        while (position < length) {
+            int read = in.read(bytes, position, length - position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the given value written as a varint.
+     */
+    static int varLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
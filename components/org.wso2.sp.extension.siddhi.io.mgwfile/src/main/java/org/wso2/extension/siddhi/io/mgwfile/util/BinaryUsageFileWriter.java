@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes usage events in the binary usage file format, see {@link BinaryUsageFileFormat}. Events are buffered until
+ * a block is full, hence {@link #finish()} should be called after the last event.
+ */
+public class BinaryUsageFileWriter {
+
+    private static final int DEFAULT_BLOCK_EVENT_COUNT = 4096;
+
+    private final OutputStream out;
+    private final int blockEventCount;
+    private final Deflater deflater = new Deflater();
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+
+    // state of the current block
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private final Map<String, Integer> streamIndexes = new HashMap<>();
+    private final List<String> streamIds = new ArrayList<>();
+    private final List<List<Object[]>> streamPayloads = new ArrayList<>();
+    private final ByteArrayOutputStream streamColumn = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream timestampColumn = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream metaDataColumn = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream correlationDataColumn = new ByteArrayOutputStream();
+    private int eventCount;
+    private long previousTimestamp;
+
+    public BinaryUsageFileWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_EVENT_COUNT);
+    }
+
+    public BinaryUsageFileWriter(OutputStream out, int blockEventCount) throws IOException {
+        this.out = out;
+        this.blockEventCount = blockEventCount;
+        out.write(BinaryUsageFileFormat.MAGIC);
+        out.write(BinaryUsageFileFormat.VERSION);
+    }
+
+    /**
+     * Writes an event. Only the first element of the meta data and the correlation data is written, as in the text
+     * format. Payload attributes of other types than int, long, boolean, float, double and string are written as
+     * strings.
+     *
+     * @param event usage event
+     * @throws IOException if a block cannot be written to the underlying stream
+     */
+    public void write(Event event) throws IOException {
+        Integer streamIndex = streamIndexes.get(event.getStreamId());
+        if (streamIndex == null) {
+            streamIndex = streamIds.size();
+            streamIndexes.put(event.getStreamId(), streamIndex);
+            streamIds.add(event.getStreamId());
+            streamPayloads.add(new ArrayList<Object[]>());
+        }
+        BinaryUsageFileFormat.writeVarLong(streamColumn, streamIndex);
+        BinaryUsageFileFormat.writeZigZag(timestampColumn, event.getTimeStamp() - previousTimestamp);
+        previousTimestamp = event.getTimeStamp();
+        BinaryUsageFileFormat.writeVarLong(metaDataColumn, toNullableReference(event.getMetaData()));
+        BinaryUsageFileFormat.writeVarLong(correlationDataColumn, toNullableReference(event.getCorrelationData()));
+        Object[] payload = event.getPayloadData();
+        streamPayloads.get(streamIndex).add(payload == null ? new Object[0] : payload);
+        if (++eventCount == blockEventCount) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the buffered events and flushes the underlying stream. The underlying stream is not closed.
+     *
+     * @throws IOException if the block cannot be written to the underlying stream
+     */
+    public void finish() throws IOException {
+        if (eventCount > 0) {
+            writeBlock();
+        }
+        deflater.end();
+        out.flush();
+    }
+
+    private long toNullableReference(Object[] data) {
+        if (data == null || data.length == 0 || data[0] == null) {
+            return 0;
+        }
+        return reference(String.valueOf(data[0])) + 1;
+    }
+
+    private int reference(String value) {
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            index = dictionaryValues.size();
+            dictionary.put(value, index);
+            dictionaryValues.add(value);
+        }
+        return index;
+    }
+
+    private void writeBlock() throws IOException {
+        ByteArrayOutputStream streams = new ByteArrayOutputStream();
+        BinaryUsageFileFormat.writeVarLong(streams, streamIds.size());
+        for (String streamId : streamIds) {
+            BinaryUsageFileFormat.writeVarLong(streams, reference(streamId));
+        }
+        // payload strings are added to the dictionary, hence the dictionary is written last
+        ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+        for (List<Object[]> payloadList : streamPayloads) {
+            writePayloadColumns(payloads, payloadList);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(streams.size() + payloads.size()
+                + streamColumn.size() + timestampColumn.size() + 2 * metaDataColumn.size());
+        BinaryUsageFileFormat.writeVarLong(body, eventCount);
+        BinaryUsageFileFormat.writeVarLong(body, dictionaryValues.size());
+        for (String value : dictionaryValues) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            BinaryUsageFileFormat.writeVarLong(body, bytes.length);
+            body.write(bytes);
+        }
+        streams.writeTo(body);
+        streamColumn.writeTo(body);
+        timestampColumn.writeTo(body);
+        metaDataColumn.writeTo(body);
+        correlationDataColumn.writeTo(body);
+        payloads.writeTo(body);
+        writeCompressed(body.toByteArray());
+        resetBlock();
+    }
+
+    private void writePayloadColumns(OutputStream target, List<Object[]> payloadList) throws IOException {
+        int attributeCount = 0;
+        for (Object[] payload : payloadList) {
+            attributeCount = Math.max(attributeCount, payload.length);
+        }
+        BinaryUsageFileFormat.writeVarLong(target, attributeCount);
+        byte[] presence = new byte[(payloadList.size() + 7) / 8];
+        for (int attribute = 0; attribute < attributeCount; attribute++) {
+            int type = 0;
+            for (int i = 0; i < payloadList.size(); i++) {
+                Object[] payload = payloadList.get(i);
+                Object value = attribute < payload.length ? payload[attribute] : null;
+                presence[i >> 3] = (byte) (value == null ? presence[i >> 3] & ~(1 << (i & 7))
+                        : presence[i >> 3] | (1 << (i & 7)));
+                if (value != null) {
+                    type = type == 0 ? typeOf(value) : commonType(type, typeOf(value));
+                }
+            }
+            target.write(type == 0 ? BinaryUsageFileFormat.TYPE_STRING : type);
+            target.write(presence);
+            for (Object[] payload : payloadList) {
+                Object value = attribute < payload.length ? payload[attribute] : null;
+                if (value != null) {
+                    writeValue(target, type, value);
+                }
+            }
+        }
+    }
+
+    private void writeValue(OutputStream target, int type, Object value) throws IOException {
+        switch (type) {
+        case BinaryUsageFileFormat.TYPE_INT:
+        case BinaryUsageFileFormat.TYPE_LONG:
+            BinaryUsageFileFormat.writeZigZag(target, ((Number) value).longValue());
+            break;
+        case BinaryUsageFileFormat.TYPE_BOOL:
+            target.write((Boolean) value ? 1 : 0);
+            break;
+        case BinaryUsageFileFormat.TYPE_FLOAT:
+            writeFixed(target, Float.floatToIntBits((Float) value), 4);
+            break;
+        case BinaryUsageFileFormat.TYPE_DOUBLE:
+            writeFixed(target, Double.doubleToLongBits(((Number) value).doubleValue()), 8);
+            break;
+        default:
+            BinaryUsageFileFormat.writeVarLong(target, reference(String.valueOf(value)));
+        }
+    }
+
+    private static void writeFixed(OutputStream target, long bits, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            target.write((int) (bits >>> (8 * i)));
+        }
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof Integer) {
+            return BinaryUsageFileFormat.TYPE_INT;
+        } else if (value instanceof Long) {
+            return BinaryUsageFileFormat.TYPE_LONG;
+        } else if (value instanceof Boolean) {
+            return BinaryUsageFileFormat.TYPE_BOOL;
+        } else if (value instanceof Float) {
+            return BinaryUsageFileFormat.TYPE_FLOAT;
+        } else if (value instanceof Double) {
+            return BinaryUsageFileFormat.TYPE_DOUBLE;
+        }
+        return BinaryUsageFileFormat.TYPE_STRING;
+    }
+
+    /**
+     * Returns the type of a column with values of both types. Integers are widened to longs and floats to doubles,
+     * other mixed columns are written as strings.
+     */
+    private static int commonType(int type, int otherType) {
+        if (type == otherType) {
+            return type;
+        }
+        if (isIntegral(type) && isIntegral(otherType)) {
+            return BinaryUsageFileFormat.TYPE_LONG;
+        }
+        if (isFloatingPoint(type) && isFloatingPoint(otherType)) {
+            return BinaryUsageFileFormat.TYPE_DOUBLE;
+        }
+        return BinaryUsageFileFormat.TYPE_STRING;
+    }
+
+    private static boolean isIntegral(int type) {
+        return type == BinaryUsageFileFormat.TYPE_INT || type == BinaryUsageFileFormat.TYPE_LONG;
+    }
+
+    private static boolean isFloatingPoint(int type) {
+        return type == BinaryUsageFileFormat.TYPE_FLOAT || type == BinaryUsageFileFormat.TYPE_DOUBLE;
+    }
+
+    private void writeCompressed(byte[] body) throws IOException {
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 16);
+        while (!deflater.finished()) {
+            int length = deflater.deflate(deflateBuffer);
+            compressed.write(deflateBuffer, 0, length);
+        }
+        BinaryUsageFileFormat.writeVarLong(out, body.length);
+        BinaryUsageFileFormat.writeVarLong(out, compressed.size());
+        compressed.writeTo(out);
+    }
+
+    private void resetBlock() {
+        dictionary.clear();
+        dictionaryValues.clear();
+        streamIndexes.clear();
+        streamIds.clear();
+        streamPayloads.clear();
+        streamColumn.reset();
+        timestampColumn.reset();
+        metaDataColumn.reset();
+        correlationDataColumn.reset();
+        eventCount = 0;
+        previousTimestamp = 0;
+    }
+}
@@ -18,75 +18,55 @@
 
 package org.wso2.extension.siddhi.io.mgwfile.util;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Attribute;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
-import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Util Class for MGWFileDataRetriever.
  */
 public class FileDataRetrieverUtil {
 
-    private static volatile Map<String, JSONArray> streamDefinitions = new HashMap<>();
+    private static final Map<String, PayloadAttributeDecoder[]> payloadDecoders = new ConcurrentHashMap<>();
 
+    /**
+     * Compiles the payload attributes of the stream definition into decoders, so that the payload of each event can
+     * be decoded without looking up the stream definition.
+     *
+     * @param streamDefinition definition of the stream
+     * @param streamId         stream id
+     * @throws MGWFileSourceException if the stream definition is not available
+     */
     public static void addStreamDefinition(StreamDefinition streamDefinition, String streamId) throws
             MGWFileSourceException {
-        try {
-            String jsonStr = streamDefinition.toString();
-            JSONParser jsonParser = new JSONParser();
-            JSONObject jsonObject = (JSONObject) jsonParser.parse(jsonStr);
-            streamDefinitions.put(streamId, (JSONArray) jsonObject.get("payloadData"));
-        } catch (ParseException e) {
-            throw new MGWFileSourceException("Error during parsing stream definition", e);
+        if (streamDefinition == null) {
+            throw new MGWFileSourceException("Stream definition is not available for stream " + streamId);
         }
-    }
-
-    public static Object createMetaData(String str) {
-        if (str.isEmpty() || "null".equals(str)) {
-            return null;
-        }
-        return new Object[]{str};
-    }
-
-    public static Object[] createPayload(String streamId, String str) throws NumberFormatException {
-
-        JSONArray jsonArray = streamDefinitions.get(streamId);
-        if (jsonArray != null) {
-            String[] strings = str.split(MGWFileSourceConstants.OBJECT_SEPARATOR);
-            Object[] objects = new Object[strings.length];
-            for (int i = 0; i < strings.length; i++) {
-                JSONObject obj = (JSONObject) jsonArray.get(i);
-                objects[i] = getPayloadObject(AttributeType.valueOf(obj.get("type").toString()), strings[i].trim());
+        List<Attribute> payloadData = streamDefinition.getPayloadData();
+        PayloadAttributeDecoder[] decoders;
+        if (payloadData == null) {
+            decoders = new PayloadAttributeDecoder[0];
+        } else {
+            decoders = new PayloadAttributeDecoder[payloadData.size()];
+            for (int i = 0; i < decoders.length; i++) {
+                decoders[i] = PayloadAttributeDecoder.of(payloadData.get(i).getType());
             }
-            return objects;
         }
-        return new Object[0];
+        payloadDecoders.put(streamId, decoders);
     }
 
-    public static Object getPayloadObject(AttributeType type, String string) throws NumberFormatException {
-        if (string == null || string.isEmpty()) {
-            return null;
-        }
-        switch (type) {
-        case STRING:
-            return string;
-        case INT:
-            return Integer.parseInt(string);
-        case LONG:
-            return Long.parseLong(string);
-        case BOOL:
-            return Boolean.parseBoolean(string);
-        default:
-            return string;
-        }
+    /**
+     * Returns the payload attribute decoders of the given stream, compiled when its definition was added.
+     *
+     * @param streamId stream id
+     * @return payload attribute decoders or null if the stream definition is not added
+     */
+    public static PayloadAttributeDecoder[] getPayloadDecoders(String streamId) {
+        return payloadDecoders.get(streamId);
     }
 
 }
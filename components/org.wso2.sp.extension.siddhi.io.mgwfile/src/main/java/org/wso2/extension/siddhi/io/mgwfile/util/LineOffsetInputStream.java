@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes of a UTF-8 encoded usage file as they are read by the decoder of its characters, and records the
+ * offset after each new line. A new line byte is never a part of the encoding of another character, and is decoded
+ * to a single new line character even after malformed bytes, so the n-th line read from the decoded characters ends
+ * at the n-th recorded offset, however far the decoder reads ahead and whatever bytes it replaces.
+ */
+public class LineOffsetInputStream extends FilterInputStream {
+
+    private long position;
+    // offsets after the new lines which are read, but not yet taken, as a ring buffer
+    private long[] lineEnds = new long[1024];
+    private int first;
+    private int count;
+
+    /**
+     * @param in       content of the file after the given offset
+     * @param position offset in bytes of the given content within the file
+     */
+    public LineOffsetInputStream(InputStream in, long position) {
+        super(in);
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            position++;
+            if (b == '\n') {
+                addLineEnd(position);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = in.read(bytes, offset, length);
+        for (int i = 0; i < read; i++) {
+            if (bytes[offset + i] == '\n') {
+                addLineEnd(position + i + 1);
+            }
+        }
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // the skipped bytes are read, so that their new lines are recorded
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark is not supported");
+    }
+
+    private void addLineEnd(long lineEnd) {
+        if (count == lineEnds.length) {
+            long[] expanded = new long[lineEnds.length * 2];
+            int tail = lineEnds.length - first;
+            System.arraycopy(lineEnds, first, expanded, 0, tail);
+            System.arraycopy(lineEnds, 0, expanded, tail, first);
+            lineEnds = expanded;
+            first = 0;
+        }
+        lineEnds[(first + count) % lineEnds.length] = lineEnd;
+        count++;
+    }
+
+    /**
+     * Takes the offset after the next new line, which is where the file is resumed from after that line.
+     *
+     * @return byte offset within the file
+     * @throws IllegalStateException if the decoded characters have more new lines than the bytes read
+     */
+    public long nextLineEnd() {
+        if (count == 0) {
+            throw new IllegalStateException("No new line is read at offset " + position);
+        }
+        long lineEnd = lineEnds[first];
+        first = (first + 1) % lineEnds.length;
+        count--;
+        return lineEnd;
+    }
+
+    /**
+     * Returns the number of bytes read, which is the end offset of the file once it is read completely.
+     *
+     * @return byte offset within the file
+     */
+    public long getPosition() {
+        return position;
+    }
+}
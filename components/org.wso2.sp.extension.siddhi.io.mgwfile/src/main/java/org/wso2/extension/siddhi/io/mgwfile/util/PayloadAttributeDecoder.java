@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+
+/**
+ * Decodes a payload attribute of a usage event from a trimmed, non-empty range of characters. The decoders of a
+ * stream are resolved once from its stream definition by {@link FileDataRetrieverUtil#addStreamDefinition}.
+ */
+public enum PayloadAttributeDecoder {
+
+    INT {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            return parseInt(chars, start, end);
+        }
+    },
+    LONG {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            return parseLong(chars, start, end);
+        }
+    },
+    BOOL {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            if (end - start != TRUE_VALUE.length) {
+                return false;
+            }
+            for (int i = 0; i < TRUE_VALUE.length; i++) {
+                if (Character.toLowerCase(chars[start + i]) != TRUE_VALUE[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    },
+    FLOAT {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            return Float.parseFloat(new String(chars, start, end - start));
+        }
+    },
+    DOUBLE {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            return Double.parseDouble(new String(chars, start, end - start));
+        }
+    },
+    STRING {
+        @Override
+        public Object decode(char[] chars, int start, int end) {
+            return new String(chars, start, end - start);
+        }
+    };
+
+    private static final char[] TRUE_VALUE = "true".toCharArray();
+
+    /**
+     * Decodes the attribute value in the given range.
+     *
+     * @param chars characters containing the value
+     * @param start index of the first character of the value
+     * @param end   index after the last character of the value
+     * @return decoded value
+     * @throws NumberFormatException if a numeric value cannot be parsed
+     */
+    public abstract Object decode(char[] chars, int start, int end);
+
+    /**
+     * Returns the decoder of the given attribute type.
+     *
+     * @param type attribute type in the stream definition
+     * @return decoder of the type
+     */
+    public static PayloadAttributeDecoder of(AttributeType type) {
+        switch (type) {
+        case INT:
+            return INT;
+        case LONG:
+            return LONG;
+        case BOOL:
+            return BOOL;
+        case FLOAT:
+            return FLOAT;
+        case DOUBLE:
+            return DOUBLE;
+        default:
+            return STRING;
+        }
+    }
+
+    static int parseInt(char[] chars, int start, int end) {
+        long value = parseLong(chars, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormatException(chars, start, end);
+        }
+        return (int) value;
+    }
+
+    static long parseLong(char[] chars, int start, int end) {
+        if (start >= end) {
+            throw numberFormatException(chars, start, end);
+        }
+        int i = start;
+        boolean negative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            if (++i == end) {
+                throw numberFormatException(chars, start, end);
+            }
+        }
+        // accumulate negatively to be able to represent Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw numberFormatException(chars, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(chars, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static NumberFormatException numberFormatException(char[] chars, int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(chars, start, end - start) + "\"");
+    }
+}
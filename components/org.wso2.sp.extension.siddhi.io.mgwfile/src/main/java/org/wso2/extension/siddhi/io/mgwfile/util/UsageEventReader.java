@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the events persisted in the uploaded usage file. Lines are read into a reusable character buffer and the
+ * event, key-value and object separators of a line are located in a single pass, so that the typed attributes are
+ * decoded straight from the buffer instead of splitting the line into intermediate strings.
+ */
+public class UsageEventReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int FIELD_COUNT = 5;
+    private static final int STREAM_ID_FIELD = 0;
+    private static final int TIMESTAMP_FIELD = 1;
+    private static final int META_DATA_FIELD = 2;
+    private static final int CORRELATION_DATA_FIELD = 3;
+    private static final int PAYLOAD_DATA_FIELD = 4;
+
+    private static final char[] EVENT_SEPARATOR = MGWFileSourceConstants.EVENT_SEPARATOR.toCharArray();
+    private static final char[] KEY_VALUE_SEPARATOR = MGWFileSourceConstants.KEY_VALUE_SEPARATOR.toCharArray();
+    private static final char[] OBJECT_SEPARATOR = MGWFileSourceConstants.OBJECT_SEPARATOR.toCharArray();
+    private static final char[] NULL_VALUE = "null".toCharArray();
+
+    private final Reader reader;
+    private final LineOffsetInputStream lineOffsets;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfStream;
+    private long byteOffset;
+
+    private int lineStart;
+    private int lineEnd;
+    private long lineNumber;
+    private final int[] valueStarts = new int[FIELD_COUNT];
+    private final int[] valueEnds = new int[FIELD_COUNT];
+    private boolean lineParsed;
+    private String streamId;
+    private PayloadAttributeDecoder[] decoders;
+
+    public UsageEventReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public UsageEventReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.lineOffsets = null;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Creates a reader over the UTF-8 encoded content of a file, which knows the byte offset of each line, so that
+     * the file can be resumed after it. The content may be the rest of a file whose beginning is already read, for
+     * resuming the file from a checkpoint.
+     *
+     * @param content    content of the file after the given offset
+     * @param lineNumber number of lines before the given offset
+     * @param byteOffset offset in bytes of the given content within the file
+     */
+    public UsageEventReader(InputStream content, long lineNumber, long byteOffset) {
+        this(new LineOffsetInputStream(content, byteOffset), lineNumber, DEFAULT_BUFFER_SIZE);
+    }
+
+    UsageEventReader(LineOffsetInputStream content, long lineNumber, int bufferSize) {
+        this.reader = new InputStreamReader(content, StandardCharsets.UTF_8);
+        this.lineOffsets = content;
+        this.buffer = new char[bufferSize];
+        this.lineNumber = lineNumber;
+        this.byteOffset = content.getPosition();
+    }
+
+    /**
+     * Creates a reader over a chunk of the file which is already in memory. The given characters are used as the
+     * buffer of this reader without copying, hence they should not be modified while being read.
+     *
+     * @param chunk  characters of a whole number of lines
+     * @param length number of valid characters in the chunk
+     */
+    public UsageEventReader(char[] chunk, int length) {
+        this.reader = null;
+        this.lineOffsets = null;
+        this.buffer = chunk;
+        this.limit = length;
+        this.endOfStream = true;
+    }
+
+    /**
+     * Moves to the next line of the file.
+     *
+     * @return false if the end of the file is reached
+     * @throws IOException if an error occurs while reading the underlying stream
+     */
+    public boolean nextLine() throws IOException {
+        lineParsed = false;
+        while (true) {
+            for (int i = position; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    setLine(position, i);
+                    position = i + 1;
+                    if (lineOffsets != null) {
+                        byteOffset = lineOffsets.nextLineEnd();
+                    }
+                    return true;
+                }
+            }
+            if (endOfStream) {
+                if (position < limit) {
+                    setLine(position, limit);
+                    position = limit;
+                    if (lineOffsets != null) {
+                        // the last line has no new line, and ends with the file
+                        byteOffset = lineOffsets.getPosition();
+                    }
+                    return true;
+                }
+                return false;
+            }
+            fill();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        lineStart = start;
+        lineEnd = end;
+        lineNumber++;
+    }
+
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            // a single line does not fit into the buffer
+            char[] expanded = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, expanded, 0, remaining);
+            buffer = expanded;
+        }
+        position = 0;
+        limit = remaining;
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Returns the number of the current line, starting from 1.
+     *
+     * @return line number
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the offset in bytes of the end of the current line within the file, which is where the file is resumed
+     * from after the current line. The offset is counted from the bytes of the file which are read, rather than
+     * computed from the decoded characters, so it holds for malformed bytes as well.
+     *
+     * @return byte offset of the next line
+     * @throws IllegalStateException if this reader is not created over the bytes of the file
+     */
+    public long getByteOffset() {
+        if (lineOffsets == null) {
+            throw new IllegalStateException("Byte offsets are only known when reading the bytes of the file");
+        }
+        return byteOffset;
+    }
+
+    /**
+     * Returns the content of the current line. Only meant to be used for error reporting.
+     *
+     * @return current line
+     */
+    public String getLine() {
+        return new String(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    /**
+     * Locates the event fields of the current line.
+     *
+     * @return stream id of the event in the current line
+     * @throws MGWFileSourceException if the line does not match the expected event format
+     */
+    public String parseLine() throws MGWFileSourceException {
+        int fieldStart = lineStart;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (fieldStart > lineEnd) {
+                throw new MGWFileSourceException("Expected " + FIELD_COUNT + " fields, but found " + field);
+            }
+            int fieldEnd = indexOf(EVENT_SEPARATOR, fieldStart, lineEnd);
+            if (fieldEnd < 0) {
+                fieldEnd = lineEnd;
+            }
+            int keyValueSeparator = indexOf(KEY_VALUE_SEPARATOR, fieldStart, fieldEnd);
+            if (keyValueSeparator < 0) {
+                throw new MGWFileSourceException("Key value separator is missing in field " + field);
+            }
+            valueStarts[field] = keyValueSeparator + KEY_VALUE_SEPARATOR.length;
+            valueEnds[field] = fieldEnd;
+            fieldStart = fieldEnd + EVENT_SEPARATOR.length;
+        }
+        if (valueStarts[STREAM_ID_FIELD] == valueEnds[STREAM_ID_FIELD]) {
+            throw new MGWFileSourceException("Stream id is empty");
+        }
+        String lineStreamId = toStreamId(valueStarts[STREAM_ID_FIELD], valueEnds[STREAM_ID_FIELD]);
+        if (lineStreamId != streamId || decoders == null) {
+            streamId = lineStreamId;
+            decoders = FileDataRetrieverUtil.getPayloadDecoders(streamId);
+        }
+        lineParsed = true;
+        return streamId;
+    }
+
+    /**
+     * Decodes the event in the current line. {@link #parseLine()} should be called before this. Missing payload
+     * values are decoded as null, and empty values after the attributes of the stream, such as those of a trailing
+     * object separator, are ignored.
+     *
+     * @return decoded {@link Event}
+     * @throws MGWFileSourceException if an attribute cannot be decoded to its type in the stream definition, or the
+     *                                payload has more non empty values than the attributes of the stream
+     */
+    public Event createEvent() throws MGWFileSourceException {
+        if (!lineParsed) {
+            throw new MGWFileSourceException("Line " + lineNumber + " is not parsed");
+        }
+        try {
+            long timeStamp = PayloadAttributeDecoder.parseLong(buffer, valueStarts[TIMESTAMP_FIELD],
+                    valueEnds[TIMESTAMP_FIELD]);
+            return new Event(streamId, timeStamp,
+                    createMetaData(valueStarts[META_DATA_FIELD], valueEnds[META_DATA_FIELD]),
+                    createMetaData(valueStarts[CORRELATION_DATA_FIELD], valueEnds[CORRELATION_DATA_FIELD]),
+                    createPayload(valueStarts[PAYLOAD_DATA_FIELD], valueEnds[PAYLOAD_DATA_FIELD]));
+        } catch (NumberFormatException e) {
+            throw new MGWFileSourceException("Error while decoding the event in line " + lineNumber, e);
+        }
+    }
+
+    /**
+     * Reuses the stream id of the previous line when it is the same, as consecutive lines mostly belong to the same
+     * stream.
+     */
+    private String toStreamId(int start, int end) {
+        if (streamId != null && streamId.length() == end - start) {
+            boolean same = true;
+            for (int i = start; i < end; i++) {
+                if (buffer[i] != streamId.charAt(i - start)) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return streamId;
+            }
+        }
+        return new String(buffer, start, end - start);
+    }
+
+    private Object[] createMetaData(int start, int end) {
+        if (start == end || regionEquals(NULL_VALUE, start, end)) {
+            return null;
+        }
+        return new Object[]{new String(buffer, start, end - start)};
+    }
+
+    private Object[] createPayload(int start, int end) throws MGWFileSourceException {
+        if (decoders == null) {
+            return new Object[0];
+        }
+        Object[] payload = new Object[decoders.length];
+        int valueStart = start;
+        int index = 0;
+        while (valueStart <= end) {
+            int valueEnd = indexOf(OBJECT_SEPARATOR, valueStart, end);
+            if (valueEnd < 0) {
+                valueEnd = end;
+            }
+            if (index == decoders.length) {
+                if (!isBlank(valueStart, valueEnd)) {
+                    throw new MGWFileSourceException("Payload of line " + lineNumber + " has more attributes than the "
+                            + decoders.length + " defined in stream " + streamId);
+                }
+                valueStart = valueEnd + OBJECT_SEPARATOR.length;
+                continue;
+            }
+            payload[index] = decode(decoders[index], valueStart, valueEnd);
+            index++;
+            valueStart = valueEnd + OBJECT_SEPARATOR.length;
+        }
+        return payload;
+    }
+
+    private Object decode(PayloadAttributeDecoder decoder, int start, int end) {
+        while (start < end && buffer[start] <= ' ') {
+            start++;
+        }
+        while (end > start && buffer[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        return decoder.decode(buffer, start, end);
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char[] separator, int from, int to) {
+        int last = to - separator.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer[i] == separator[0] && regionEquals(separator, i, i + separator.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(char[] expected, int start, int end) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Converts usage archives in the text format to the binary usage file format. The lines are decoded by
+ * {@link UsageEventReader} with the stream definitions, as they are when the text format is published, hence the
+ * streams of the archive should be registered before it is converted.
+ */
+public final class UsageFileConverter {
+
+    private static final Log log = LogFactory.getLog(UsageFileConverter.class);
+
+    private UsageFileConverter() {
+    }
+
+    /**
+     * Converts a usage archive in the text format to an archive in the binary format.
+     *
+     * @param textArchive   path of the archive to convert
+     * @param binaryArchive path of the converted archive
+     * @return number of converted events
+     * @throws IOException            if an archive cannot be read or written
+     * @throws MGWFileSourceException if the archive to convert is not a usage archive
+     */
+    public static long convert(Path textArchive, Path binaryArchive) throws IOException, MGWFileSourceException {
+        long eventCount;
+        try (InputStream in = Files.newInputStream(textArchive);
+             OutputStream out = Files.newOutputStream(binaryArchive)) {
+            eventCount = convert(in, out);
+        }
+        log.info("Converted " + eventCount + " events of usage archive " + textArchive + " of "
+                + Files.size(textArchive) + " bytes to " + binaryArchive + " of " + Files.size(binaryArchive)
+                + " bytes.");
+        return eventCount;
+    }
+
+    /**
+     * Converts a usage archive in the text format to an archive in the binary format. Lines which cannot be decoded
+     * are skipped, as they are when the text format is published. The given streams are not closed.
+     *
+     * @param textArchive   archive to convert
+     * @param binaryArchive converted archive
+     * @return number of converted events
+     * @throws IOException            if an archive cannot be read or written
+     * @throws MGWFileSourceException if the archive to convert is not a usage archive
+     */
+    public static long convert(InputStream textArchive, OutputStream binaryArchive)
+            throws IOException, MGWFileSourceException {
+        ZipInputStream zipInputStream = new ZipInputStream(textArchive);
+        ZipEntry zipEntry = zipInputStream.getNextEntry();
+        if (zipEntry == null || !MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME
+                .equals(new File(zipEntry.getName()).getName())) {
+            throw new MGWFileSourceException("Archive does not contain "
+                    + MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME);
+        }
+        ZipOutputStream zipOutputStream = new ZipOutputStream(binaryArchive);
+        // the blocks are already compressed
+        zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+        zipOutputStream.putNextEntry(new ZipEntry(MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME));
+        BinaryUsageFileWriter writer = new BinaryUsageFileWriter(zipOutputStream);
+        UsageEventReader reader = new UsageEventReader(zipInputStream, 0, 0);
+        long eventCount = 0;
+        while (reader.nextLine()) {
+            try {
+                reader.parseLine();
+                writer.write(reader.createEvent());
+                eventCount++;
+            } catch (MGWFileSourceException e) {
+                log.warn("Skipped line number : " + reader.getLineNumber() + " which cannot be decoded. "
+                        + e.getMessage());
+            }
+        }
+        writer.finish();
+        zipOutputStream.closeEntry();
+        zipOutputStream.finish();
+        return eventCount;
+    }
+}
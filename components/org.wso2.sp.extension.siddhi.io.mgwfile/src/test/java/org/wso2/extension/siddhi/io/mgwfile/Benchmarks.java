@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the operations of the benchmarks of the module. The benchmarks are the TestNG classes named *Benchmark,
+ * which are not run with the tests, but on demand, for example with mvn test -Dtest=UsageEventReaderBenchmark. An
+ * operation is run benchmark.warmup.runs times before it is timed for benchmark.measured.runs runs, and the time of
+ * the fastest run is reported.
+ */
+public final class Benchmarks {
+
+    private static final Log log = LogFactory.getLog(Benchmarks.class);
+    private static final int WARMUP_RUNS = Integer.getInteger("benchmark.warmup.runs", 5);
+    private static final int MEASURED_RUNS = Integer.getInteger("benchmark.measured.runs", 10);
+
+    // the results of the operations are added up, so that the JIT cannot drop the work of the operations
+    private static volatile long sink;
+
+    /**
+     * An operation to time.
+     */
+    public interface Operation {
+
+        /**
+         * @return any value computed from the result of the operation
+         * @throws Exception if the operation fails
+         */
+        long run() throws Exception;
+    }
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Times an operation and reports its throughput.
+     *
+     * @param name       name of the operation in the report
+     * @param operations number of operations, such as events, done in a run
+     * @param operation  operation to time
+     * @return time of the fastest run in nanoseconds
+     * @throws Exception if the operation fails
+     */
+    public static long measure(String name, long operations, Operation operation) throws Exception {
+        long result = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            result += operation.run();
+        }
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            result += operation.run();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        sink += result;
+        log.info(String.format("%s: %.2f ms per run, %.0f operations per second, %.1f ns per operation", name,
+                fastest / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                operations * (double) TimeUnit.SECONDS.toNanos(1) / fastest, fastest / (double) operations));
+        return fastest;
+    }
+
+    /**
+     * Reports how many times faster an operation is than its baseline.
+     *
+     * @param name          name of the comparison in the report
+     * @param baselineNanos time of the baseline
+     * @param nanos         time of the operation
+     */
+    public static void compare(String name, long baselineNanos, long nanos) {
+        log.info(String.format("%s: %.2f times the throughput of the baseline", name, baselineNanos / (double) nanos));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+import org.wso2.extension.siddhi.io.mgwfile.util.UsageEventReader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how parsing a single usage file with {@link MGWFileChunkPipeline} scales with the number of parser
+ * threads, from one thread up to the number of available processors, against reading the file line by line.
+ */
+public class MGWFileChunkPipelineBenchmark {
+
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.scaling:3.0.0";
+    private static final int LINE_COUNT = Integer.getInteger("benchmark.lines", 300000);
+
+    private byte[] content;
+
+    @BeforeClass
+    public void createFile() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.scaling", "3.0.0");
+        streamDefinition.addPayloadData("apiName", AttributeType.STRING);
+        streamDefinition.addPayloadData("apiContext", AttributeType.STRING);
+        streamDefinition.addPayloadData("applicationName", AttributeType.STRING);
+        streamDefinition.addPayloadData("responseCode", AttributeType.INT);
+        streamDefinition.addPayloadData("responseTime", AttributeType.LONG);
+        streamDefinition.addPayloadData("requestTimestamp", AttributeType.LONG);
+        streamDefinition.addPayloadData("cacheHit", AttributeType.BOOL);
+        streamDefinition.addPayloadData("userAgent", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            file.append("streamId-KS-").append(STREAM_ID)
+                    .append("-ES-timeStamp-KS-").append(1588000000000L + i)
+                    .append("-ES-metaData-KS-null-ES-correlationData-KS-null-ES-payloadData-KS-PizzaShackAPI-OS-")
+                    .append("/pizzashack/1.0.0-OS-DefaultApplication-OS-").append(200 + i % 5).append("-OS-")
+                    .append(i % 1000).append("-OS-").append(1588000000000L + i).append("-OS-").append(i % 2 == 0)
+                    .append("-OS-Mozilla/5.0 (X11; Linux x86_64)\n");
+        }
+        content = file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @AfterClass
+    public void clearThreadCount() {
+        System.clearProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        long sequentialNanos = Benchmarks.measure("Line by line", LINE_COUNT, this::readSequentially);
+        List<Integer> threadCounts = new ArrayList<>();
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threadCount = 1; threadCount < processors; threadCount *= 2) {
+            threadCounts.add(threadCount);
+        }
+        threadCounts.add(processors);
+        for (int threadCount : threadCounts) {
+            System.setProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY, String.valueOf(threadCount));
+            MGWFileSourceDS sourceDS = new MGWFileSourceDS();
+            sourceDS.start(null);
+            try {
+                String name = "Pipeline with " + threadCount
+                        + (threadCount == 1 ? " parser thread" : " parser threads");
+                Benchmarks.compare(name, sequentialNanos, Benchmarks.measure(name, LINE_COUNT, this::readPipelined));
+            } finally {
+                sourceDS.stop();
+            }
+        }
+    }
+
+    private long readSequentially() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new ByteArrayInputStream(content), 0, 0);
+        long result = 0;
+        while (reader.nextLine()) {
+            reader.parseLine();
+            result += reader.createEvent().getPayloadData().length;
+        }
+        return result;
+    }
+
+    private long readPipelined() throws Exception {
+        long result = 0;
+        try (MGWFileChunkPipeline pipeline = new MGWFileChunkPipeline(new ByteArrayInputStream(content), 0, 0)) {
+            MGWFileChunkPipeline.ParsedChunk chunk;
+            while ((chunk = pipeline.nextChunk()) != null) {
+                for (int i = 0; i < chunk.getEvents().size(); i++) {
+                    result += chunk.getEvents().get(i).getPayloadData().length;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+import org.wso2.extension.siddhi.io.mgwfile.util.UsageEventReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that {@link MGWFileChunkPipeline} parses a usage file the same way as reading it line by line, including the
+ * line numbers of the events and the errors, and the byte offsets of the chunks.
+ */
+public class MGWFileChunkPipelineTest {
+
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.pipeline:3.0.0";
+    private static final int LINE_COUNT = 30000;
+
+    private final List<String> lines = new ArrayList<>();
+    private MGWFileSourceDS sourceDS;
+
+    @BeforeClass
+    public void startComponent() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.pipeline", "3.0.0");
+        streamDefinition.addPayloadData("apiName", AttributeType.STRING);
+        streamDefinition.addPayloadData("responseCode", AttributeType.INT);
+        streamDefinition.addPayloadData("userAgent", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+        System.setProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY, "3");
+        sourceDS = new MGWFileSourceDS();
+        sourceDS.start(null);
+        for (int i = 1; i <= LINE_COUNT; i++) {
+            lines.add(line(i));
+        }
+    }
+
+    @AfterClass
+    public void stopComponent() throws Exception {
+        sourceDS.stop();
+        System.clearProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY);
+    }
+
+    @Test
+    public void testChunksMatchSequentialReading() throws Exception {
+        assertSameAsSequentialReading(0);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        assertSameAsSequentialReading(12345);
+    }
+
+    @Test
+    public void testCloseWaitsForReader() throws Exception {
+        SlowInputStream reader = new SlowInputStream();
+        MGWFileChunkPipeline pipeline = new MGWFileChunkPipeline(reader, 0, 0);
+        Thread.sleep(200);
+        pipeline.close();
+        Assert.assertFalse(reader.reading, "The file is still read after the pipeline is closed");
+        int reads = reader.reads;
+        Thread.sleep(200);
+        Assert.assertEquals(reader.reads, reads, "The file is still read after the pipeline is closed");
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        SlowInputStream reader = new SlowInputStream();
+        MGWFileChunkPipeline pipeline = new MGWFileChunkPipeline(reader, 0, 0);
+        Thread.sleep(200);
+        MGWFileChunkPipeline.shutdown();
+        try {
+            pipeline.nextChunk();
+            Assert.fail("A chunk is returned after the pipeline threads are stopped");
+        } catch (IOException | MGWFileSourceException e) {
+            // reading the file is stopped
+        } finally {
+            pipeline.close();
+        }
+        // the threads are created again by the next pipeline
+        assertSameAsSequentialReading(LINE_COUNT - 10);
+    }
+
+    private void assertSameAsSequentialReading(int startLine) throws Exception {
+        StringBuilder skipped = new StringBuilder();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            (i < startLine ? skipped : content).append(lines.get(i));
+        }
+        // the file does not end with a new line
+        content.setLength(content.length() - 1);
+        long startOffset = encode(skipped.toString()).length;
+        byte[] contentBytes = encode(content.toString());
+        Map<Long, Long> lineOffsets = new HashMap<>();
+        long lineNumber = startLine;
+        for (int i = 0; i < contentBytes.length; i++) {
+            if (contentBytes[i] == '\n') {
+                lineOffsets.put(++lineNumber, startOffset + i + 1);
+            }
+        }
+        lineOffsets.put(++lineNumber, startOffset + contentBytes.length);
+
+        UsageEventReader sequentialReader = new UsageEventReader(new ByteArrayInputStream(contentBytes), startLine,
+                startOffset);
+        List<Event> expectedEvents = new ArrayList<>();
+        List<Long> expectedLines = new ArrayList<>();
+        List<Long> expectedErrors = new ArrayList<>();
+        while (sequentialReader.nextLine()) {
+            Assert.assertEquals(Long.valueOf(sequentialReader.getByteOffset()),
+                    lineOffsets.get(sequentialReader.getLineNumber()));
+            try {
+                sequentialReader.parseLine();
+                expectedEvents.add(sequentialReader.createEvent());
+                expectedLines.add(sequentialReader.getLineNumber());
+            } catch (MGWFileSourceException e) {
+                expectedErrors.add(sequentialReader.getLineNumber());
+            }
+        }
+
+        List<Event> events = new ArrayList<>();
+        List<Long> eventLines = new ArrayList<>();
+        List<Long> errors = new ArrayList<>();
+        int chunkCount = 0;
+        long lastLine = startLine;
+        try (MGWFileChunkPipeline pipeline = new MGWFileChunkPipeline(new ByteArrayInputStream(contentBytes),
+                startLine, startOffset)) {
+            MGWFileChunkPipeline.ParsedChunk chunk;
+            while ((chunk = pipeline.nextChunk()) != null) {
+                chunkCount++;
+                events.addAll(chunk.getEvents());
+                for (int i = 0; i < chunk.getEvents().size(); i++) {
+                    eventLines.add(chunk.getEventLineNumber(i));
+                }
+                for (MGWFileChunkPipeline.LineError error : chunk.getErrors()) {
+                    errors.add(chunk.getFileLineNumber(error.getLineNumber()));
+                    Assert.assertEquals(error.getLine(), lines.get((int) chunk.getFileLineNumber(
+                            error.getLineNumber()) - 1).trim());
+                }
+                lastLine = chunk.getLastFileLineNumber();
+                Assert.assertEquals(Long.valueOf(chunk.getEndByteOffset()), lineOffsets.get(lastLine),
+                        "Unexpected byte offset at line " + lastLine);
+            }
+        }
+        if (startLine == 0) {
+            Assert.assertTrue(chunkCount > 1, "The file is not split into chunks");
+        }
+        Assert.assertEquals(lastLine, LINE_COUNT);
+        Assert.assertEquals(errors, expectedErrors);
+        Assert.assertEquals(eventLines, expectedLines);
+        Assert.assertEquals(events.size(), expectedEvents.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            Event expected = expectedEvents.get(i);
+            Assert.assertEquals(event.getStreamId(), expected.getStreamId());
+            Assert.assertEquals(event.getTimeStamp(), expected.getTimeStamp());
+            Assert.assertEquals(event.getMetaData(), expected.getMetaData());
+            Assert.assertEquals(event.getPayloadData(), expected.getPayloadData(), "Unexpected event at " + i);
+        }
+    }
+
+    private static String line(int number) {
+        if (number % 97 == 0) {
+            return "not a usage event\n";
+        }
+        String responseCode = number % 89 == 0 ? "OK" : String.valueOf(200 + number % 5);
+        // multi byte characters, malformed bytes and CRLF line endings shift the byte offsets from the character
+        // offsets
+        return "streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-" + (1588000000000L + number)
+                + "-ES-metaData-KS-meta" + number + "-ES-correlationData-KS-null-ES-payloadData-KS-Caf\u00e9API"
+                + number + "-OS-" + responseCode + "-OS-\u4e2d\u6587 agent " + number
+                + (number % 50 == 0 ? "\ufffd" : "") + (number % 3 == 0 ? "\r\n" : "\n");
+    }
+
+    /**
+     * Encodes the content of a usage file, where each replacement character is encoded as a malformed byte, which is
+     * decoded back to a replacement character.
+     */
+    private static byte[] encode(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            if (i + 2 < bytes.length && bytes[i] == (byte) 0xEF && bytes[i + 1] == (byte) 0xBF
+                    && bytes[i + 2] == (byte) 0xBD) {
+                encoded.write(0xFF);
+                i += 2;
+            } else {
+                encoded.write(bytes[i]);
+            }
+        }
+        return encoded.toByteArray();
+    }
+
+    /**
+     * An endless usage file which is read slowly, as a file read from a remote database.
+     */
+    private static class SlowInputStream extends InputStream {
+
+        private final byte[] line = encode(line(1));
+        private volatile boolean reading;
+        private volatile int reads;
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            read(buffer, 0, 1);
+            return buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            reading = true;
+            try {
+                Thread.sleep(20);
+                int count = Math.min(length, line.length);
+                System.arraycopy(line, 0, buffer, offset, count);
+                reads++;
+                return count;
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while reading");
+            } finally {
+                reading = false;
+            }
+        }
+    }
+}
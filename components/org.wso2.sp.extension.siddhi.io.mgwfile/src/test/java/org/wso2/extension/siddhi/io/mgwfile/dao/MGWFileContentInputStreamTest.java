@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that {@link MGWFileContentInputStream} reads the content of a BLOB in bounded chunks.
+ */
+public class MGWFileContentInputStreamTest {
+
+    private static final long CONTENT_LENGTH = 64L * 1024 * 1024 + 123;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Test
+    public void testReadInBoundedChunks() throws Exception {
+        List<String> calls = new ArrayList<>();
+        ContentBlob content = new ContentBlob();
+        MGWFileContentInputStream inputStream = new MGWFileContentInputStream(content.blob, CHUNK_SIZE,
+                stub(Connection.class, "connection", calls), stub(PreparedStatement.class, "statement", calls),
+                stub(ResultSet.class, "resultSet", calls));
+        Assert.assertEquals(inputStream.length(), CONTENT_LENGTH);
+
+        byte[] buffer = new byte[10000];
+        long position = 0;
+        // a single byte read followed by bulk reads which do not align with the chunks
+        Assert.assertEquals(inputStream.read(), expectedByte(position++));
+        int read;
+        while ((read = inputStream.read(buffer, 0, buffer.length)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != (byte) expectedByte(position)) {
+                    Assert.fail("Unexpected content at " + position);
+                }
+                position++;
+            }
+        }
+        Assert.assertEquals(read, -1);
+        Assert.assertEquals(position, CONTENT_LENGTH);
+        Assert.assertEquals(content.largestChunk, CHUNK_SIZE, "The content is not read in chunks");
+        Assert.assertEquals(content.chunks, (CONTENT_LENGTH + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        inputStream.close();
+        Assert.assertTrue(content.freed, "The BLOB is not freed");
+        Assert.assertTrue(calls.contains("connection.commit"));
+        Assert.assertTrue(calls.contains("connection.close"));
+        Assert.assertTrue(calls.contains("statement.close"));
+        Assert.assertTrue(calls.contains("resultSet.close"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws Exception {
+        List<String> calls = new ArrayList<>();
+        InputStream inputStream = new MGWFileContentInputStream(new ContentBlob().blob, CHUNK_SIZE,
+                stub(Connection.class, "connection", calls), stub(PreparedStatement.class, "statement", calls),
+                stub(ResultSet.class, "resultSet", calls));
+        inputStream.close();
+        inputStream.read(new byte[10], 0, 10);
+    }
+
+    private static int expectedByte(long position) {
+        return (int) (position * 31 % 251);
+    }
+
+    private static <T> T stub(Class<T> type, String name, List<String> calls) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            calls.add(name + "." + method.getName());
+            return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+        }));
+    }
+
+    /**
+     * A BLOB whose content is generated on each read, so that the test does not hold the content in memory either.
+     */
+    private static class ContentBlob {
+
+        private final Blob blob;
+        private long largestChunk;
+        private long chunks;
+        private boolean freed;
+
+        private ContentBlob() {
+            blob = (Blob) Proxy.newProxyInstance(Blob.class.getClassLoader(), new Class[]{Blob.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "length":
+                                return CONTENT_LENGTH;
+                            case "getBytes":
+                                return getBytes((Long) args[0], (Integer) args[1]);
+                            case "free":
+                                freed = true;
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private byte[] getBytes(long position, int length) {
+            largestChunk = Math.max(largestChunk, length);
+            chunks++;
+            int size = (int) Math.min(length, CONTENT_LENGTH - position + 1);
+            byte[] bytes = new byte[size];
+            for (int i = 0; i < size; i++) {
+                bytes[i] = (byte) expectedByte(position - 1 + i);
+            }
+            return bytes;
+        }
+    }
+}
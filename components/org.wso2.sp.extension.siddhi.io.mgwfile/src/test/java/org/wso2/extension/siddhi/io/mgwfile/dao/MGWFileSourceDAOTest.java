@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
+
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests that {@link MGWFileSourceDAO#getFileContent(MGWFileInfoDTO)} releases the database connection of the content
+ * once the content is spilled to a temporary file, and when spilling the content fails.
+ */
+public class MGWFileSourceDAOTest {
+
+    private static final byte[] CONTENT = "usage file content".getBytes();
+
+    private final List<String> calls = new ArrayList<>();
+    private SourceComponent sourceDS;
+
+    @AfterMethod
+    public void stopComponent() throws Exception {
+        MGWFileSourceDBUtil.setDataSource(null);
+        if (sourceDS != null) {
+            sourceDS.deactivate();
+            sourceDS = null;
+        }
+        System.clearProperty(MGWFileSourceConstants.CONTENT_SPILL_THRESHOLD_PROPERTY);
+        System.clearProperty(MGWFileSourceConstants.CONTENT_SPILL_DIRECTORY_PROPERTY);
+        calls.clear();
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        Path spillDirectory = Files.createTempDirectory("mgw-spill-test");
+        startComponent(spillDirectory);
+        InputStream content = MGWFileSourceDAO.getFileContent(new MGWFileInfoDTO("upload.zip", 0L));
+        try {
+            assertConnectionReleased();
+            byte[] read = new byte[CONTENT.length + 1];
+            Assert.assertEquals(content.read(read), CONTENT.length);
+            Assert.assertEquals(Arrays.copyOf(read, CONTENT.length), CONTENT);
+        } finally {
+            content.close();
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            Assert.assertEquals(files.count(), 0, "The spilled file is not deleted");
+        }
+        Files.delete(spillDirectory);
+    }
+
+    @Test
+    public void testConnectionReleasedWhenSpillFails() throws Exception {
+        Path missingDirectory = Files.createTempDirectory("mgw-spill-test");
+        Files.delete(missingDirectory);
+        startComponent(missingDirectory);
+        try {
+            MGWFileSourceDAO.getFileContent(new MGWFileInfoDTO("upload.zip", 0L));
+            Assert.fail("The content is returned although it could not be spilled");
+        } catch (MGWFileSourceException e) {
+            // the temporary file cannot be created
+        }
+        assertConnectionReleased();
+    }
+
+    private void startComponent(Path spillDirectory) throws Exception {
+        System.setProperty(MGWFileSourceConstants.CONTENT_SPILL_THRESHOLD_PROPERTY, "0");
+        System.setProperty(MGWFileSourceConstants.CONTENT_SPILL_DIRECTORY_PROPERTY, spillDirectory.toString());
+        sourceDS = new SourceComponent();
+        sourceDS.activate();
+        MGWFileSourceDBUtil.setDataSource(new HikariDataSource() {
+            @Override
+            public Connection getConnection() {
+                return connection();
+            }
+        });
+    }
+
+    private void assertConnectionReleased() {
+        Assert.assertTrue(calls.contains("connection.close"), "The connection is not released");
+        Assert.assertTrue(calls.contains("blob.free"), "The BLOB is not freed");
+        Assert.assertTrue(calls.contains("resultSet.close"));
+        Assert.assertTrue(calls.contains("statement.close"));
+    }
+
+    private Connection connection() {
+        DatabaseMetaData metaData = stub(DatabaseMetaData.class, "metaData", (name, args) -> {
+            switch (name) {
+                case "getDriverName":
+                    return "H2 JDBC Driver";
+                case "getDatabaseProductName":
+                    return "H2";
+                default:
+                    return null;
+            }
+        });
+        Blob blob = stub(Blob.class, "blob", (name, args) -> {
+            switch (name) {
+                case "length":
+                    return (long) CONTENT.length;
+                case "getBytes":
+                    long position = (Long) args[0];
+                    return Arrays.copyOfRange(CONTENT, (int) position - 1,
+                            (int) Math.min(CONTENT.length, position - 1 + (Integer) args[1]));
+                default:
+                    return null;
+            }
+        });
+        ResultSet resultSet = stub(ResultSet.class, "resultSet", (name, args) -> {
+            switch (name) {
+                case "next":
+                    return true;
+                case "getBlob":
+                    return blob;
+                default:
+                    return null;
+            }
+        });
+        PreparedStatement statement = stub(PreparedStatement.class, "statement",
+                (name, args) -> "executeQuery".equals(name) ? resultSet : null);
+        return stub(Connection.class, "connection", (name, args) -> {
+            switch (name) {
+                case "getMetaData":
+                    return metaData;
+                case "prepareStatement":
+                    return statement;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private <T> T stub(Class<T> type, String stubName, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            calls.add(stubName + "." + method.getName());
+            Object result = answer.answer(method.getName(), args);
+            if (result == null && method.getReturnType() == boolean.class) {
+                return Boolean.FALSE;
+            }
+            return result;
+        }));
+    }
+
+    /**
+     * Starts and stops the component from outside of its package.
+     */
+    private static class SourceComponent extends MGWFileSourceDS {
+
+        private void activate() throws Exception {
+            start(null);
+        }
+
+        private void deactivate() throws Exception {
+            stop();
+        }
+    }
+
+    /**
+     * Result of a call to a stubbed JDBC object.
+     */
+    private interface Answer {
+
+        Object answer(String method, Object[] args);
+    }
+}
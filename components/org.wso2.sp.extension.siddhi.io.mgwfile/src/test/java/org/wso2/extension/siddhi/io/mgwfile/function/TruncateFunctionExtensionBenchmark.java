@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.function;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.extension.siddhi.io.mgwfile.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the per event cost of truncating attributes with apim:truncate and with the
+ * ifThenElse(str:length(attribute) > length, str:substr(attribute, 0, length), attribute) expression it replaced, in
+ * a query truncating three attributes as the event receiver does. The cost of each is the time over a query which
+ * selects the attributes as they are.
+ */
+public class TruncateFunctionExtensionBenchmark {
+
+    private static final Log log = LogFactory.getLog(TruncateFunctionExtensionBenchmark.class);
+    private static final int EVENT_COUNT = Integer.getInteger("benchmark.events", 100000);
+    private static final String STREAM_DEFINITION = "define stream RequestStream (apiMethod string, "
+            + "apiHostname string, username string); ";
+    private static final String PASS_THROUGH = "apiMethod, apiHostname, username";
+    private static final String TRUNCATE = "apim:truncate(apiMethod, 20) as apiMethod, "
+            + "apim:truncate(apiHostname, 200) as apiHostname, apim:truncate(username, 150) as username";
+    private static final String CHAINED = chained("apiMethod", 20) + ", " + chained("apiHostname", 200) + ", "
+            + chained("username", 150);
+
+    private final List<Object[]> events = new ArrayList<>();
+    private SiddhiManager siddhiManager;
+    private long received;
+
+    @BeforeClass
+    public void createEvents() {
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("apim:truncate", TruncateFunctionExtension.class);
+        StringBuilder longHostname = new StringBuilder();
+        while (longHostname.length() <= 200) {
+            longHostname.append("gateway.example.com.");
+        }
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            // most of the values are not truncated
+            events.add(new Object[]{
+                    i % 10 == 0 ? "GET /pizzashack/1.0.0/menu/" + i : (i % 2 == 0 ? "GET" : "POST"),
+                    i % 100 == 0 ? longHostname.toString() + i : "gateway.example.com",
+                    "user" + i % 500 + "@carbon.super"});
+        }
+    }
+
+    @AfterClass
+    public void shutdown() {
+        siddhiManager.shutdown();
+    }
+
+    @Test
+    public void testSameOutput() throws Exception {
+        List<Object[]> expected = new ArrayList<>();
+        SiddhiAppRuntime chained = createRuntime(CHAINED, expected);
+        List<Object[]> output = new ArrayList<>();
+        SiddhiAppRuntime truncate = createRuntime(TRUNCATE, output);
+        try {
+            send(chained);
+            send(truncate);
+        } finally {
+            chained.shutdown();
+            truncate.shutdown();
+        }
+        Assert.assertEquals(output.size(), EVENT_COUNT);
+        Assert.assertEquals(output.size(), expected.size());
+        for (int i = 0; i < output.size(); i++) {
+            Assert.assertEquals(output.get(i), expected.get(i), "Unexpected event at " + i);
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        long passThroughNanos = measure("Pass through", PASS_THROUGH);
+        long truncateNanos = measure("apim:truncate", TRUNCATE);
+        long chainedNanos = measure("ifThenElse(str:length, str:substr)", CHAINED);
+        log.info(String.format("Per event cost of truncating three attributes: apim:truncate %.1f ns, "
+                        + "ifThenElse(str:length, str:substr) %.1f ns",
+                (truncateNanos - passThroughNanos) / (double) EVENT_COUNT,
+                (chainedNanos - passThroughNanos) / (double) EVENT_COUNT));
+        Benchmarks.compare("apim:truncate", chainedNanos, truncateNanos);
+    }
+
+    private long measure(String name, String selection) throws Exception {
+        SiddhiAppRuntime runtime = createRuntime(selection, null);
+        try {
+            return Benchmarks.measure(name, EVENT_COUNT, () -> send(runtime));
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    private SiddhiAppRuntime createRuntime(String selection, List<Object[]> output) {
+        SiddhiAppRuntime runtime = siddhiManager.createSiddhiAppRuntime(STREAM_DEFINITION
+                + "from RequestStream select " + selection + " insert into Request;");
+        runtime.addCallback("Request", new StreamCallback() {
+            @Override
+            public void receive(Event[] outputEvents) {
+                for (Event event : outputEvents) {
+                    received += ((String) event.getData()[0]).length();
+                    if (output != null) {
+                        output.add(event.getData());
+                    }
+                }
+            }
+        });
+        runtime.start();
+        return runtime;
+    }
+
+    /**
+     * Sends the events to a runtime, whose query processes them in the sending thread.
+     */
+    private long send(SiddhiAppRuntime runtime) throws InterruptedException {
+        InputHandler inputHandler = runtime.getInputHandler("RequestStream");
+        for (Object[] event : events) {
+            inputHandler.send(event);
+        }
+        return received;
+    }
+
+    private static String chained(String attribute, int length) {
+        return "ifThenElse(str:length(" + attribute + ") > " + length + ", str:substr(" + attribute + ", 0, "
+                + length + "), " + attribute + ") as " + attribute;
+    }
+}
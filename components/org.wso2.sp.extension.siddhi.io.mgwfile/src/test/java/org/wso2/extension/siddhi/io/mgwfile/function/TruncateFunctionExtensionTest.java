@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.function;
+
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests truncating strings with {@link TruncateFunctionExtension}.
+ */
+public class TruncateFunctionExtensionTest {
+
+    @Test
+    public void testNull() {
+        Assert.assertNull(truncate(null, 5));
+    }
+
+    @Test
+    public void testNotLongerThanLength() {
+        String value = "GET /";
+        Assert.assertSame(truncate(value, 5), value);
+        Assert.assertSame(truncate(value, 6), value);
+        Assert.assertSame(truncate("", 0), "");
+    }
+
+    @Test
+    public void testLongerThanLength() {
+        Assert.assertEquals(truncate("GET /pizzashack/1.0.0/menu", 5), "GET /");
+        Assert.assertEquals(truncate("GET /", 0), "");
+    }
+
+    @Test(expectedExceptions = SiddhiAppValidationException.class)
+    public void testMissingLength() {
+        new TruncateFunctionExtension().init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor("GET /", Attribute.Type.STRING)}, null, null);
+    }
+
+    @Test(expectedExceptions = SiddhiAppValidationException.class)
+    public void testNotStringAttribute() {
+        new TruncateFunctionExtension().init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor(200, Attribute.Type.INT),
+                new ConstantExpressionExecutor(5, Attribute.Type.INT)}, null, null);
+    }
+
+    @Test(expectedExceptions = SiddhiAppValidationException.class)
+    public void testNotIntLength() {
+        new TruncateFunctionExtension().init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor("GET /", Attribute.Type.STRING),
+                new ConstantExpressionExecutor(5L, Attribute.Type.LONG)}, null, null);
+    }
+
+    @Test(expectedExceptions = SiddhiAppValidationException.class)
+    public void testNotConstantLength() {
+        new TruncateFunctionExtension().init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor("GET /", Attribute.Type.STRING),
+                new TruncateFunctionExtension()}, null, null);
+    }
+
+    @Test(expectedExceptions = SiddhiAppValidationException.class)
+    public void testNegativeLength() {
+        new TruncateFunctionExtension().init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor("GET /", Attribute.Type.STRING),
+                new ConstantExpressionExecutor(-1, Attribute.Type.INT)}, null, null);
+    }
+
+    private static Object truncate(String value, int length) {
+        TruncateFunctionExtension function = new TruncateFunctionExtension();
+        function.init(new ExpressionExecutor[]{
+                new ConstantExpressionExecutor(value, Attribute.Type.STRING),
+                new ConstantExpressionExecutor(length, Attribute.Type.INT)}, null, null);
+        return function.execute(new Object[]{value, length}, null);
+    }
+}
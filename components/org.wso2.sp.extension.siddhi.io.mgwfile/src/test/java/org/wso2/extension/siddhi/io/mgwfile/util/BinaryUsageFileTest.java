@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests writing usage events with {@link BinaryUsageFileWriter} and reading them back with
+ * {@link BinaryUsageEventReader}.
+ */
+public class BinaryUsageFileTest {
+
+    private static final String REQUEST_STREAM_ID = "org.wso2.apimgt.statistics.binary.request:3.0.0";
+    private static final String FAULT_STREAM_ID = "org.wso2.apimgt.statistics.binary.fault:3.0.0";
+    private static final int BLOCK_EVENT_COUNT = 10;
+
+    @BeforeClass
+    public void addStreamDefinitions() throws Exception {
+        StreamDefinition request = new StreamDefinition("org.wso2.apimgt.statistics.binary.request", "3.0.0");
+        request.addPayloadData("apiName", AttributeType.STRING);
+        request.addPayloadData("responseCode", AttributeType.INT);
+        request.addPayloadData("responseTime", AttributeType.LONG);
+        request.addPayloadData("cacheHit", AttributeType.BOOL);
+        request.addPayloadData("latency", AttributeType.FLOAT);
+        request.addPayloadData("cost", AttributeType.DOUBLE);
+        FileDataRetrieverUtil.addStreamDefinition(request, REQUEST_STREAM_ID);
+        StreamDefinition fault = new StreamDefinition("org.wso2.apimgt.statistics.binary.fault", "3.0.0");
+        fault.addPayloadData("errorCode", AttributeType.STRING);
+        fault.addPayloadData("errorMessage", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(fault, FAULT_STREAM_ID);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Event> written = createEvents(35);
+        byte[] file = write(written);
+        List<Event> read = new ArrayList<>();
+        List<Long> blockOffsets = new ArrayList<>();
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file), 0, 0)) {
+            while (reader.nextBlock()) {
+                Assert.assertTrue(reader.getErrors().isEmpty(), reader.getErrors().toString());
+                for (int i = 0; i < reader.getEvents().size(); i++) {
+                    Assert.assertEquals(reader.getEventNumber(i), read.size() + i + 1);
+                }
+                read.addAll(reader.getEvents());
+                Assert.assertEquals(reader.getEventCount(), read.size());
+                blockOffsets.add(reader.getByteOffset());
+            }
+        }
+        assertEvents(read, written);
+        Assert.assertEquals(blockOffsets.size(), 4);
+        Assert.assertEquals(blockOffsets.get(blockOffsets.size() - 1).longValue(), file.length);
+
+        // resume after the second block, as from a checkpoint
+        long offset = blockOffsets.get(1);
+        read.clear();
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file, (int) offset,
+                file.length - (int) offset), 2 * BLOCK_EVENT_COUNT, offset)) {
+            while (reader.nextBlock()) {
+                read.addAll(reader.getEvents());
+            }
+            Assert.assertEquals(reader.getEventCount(), written.size());
+        }
+        assertEvents(read, written.subList(2 * BLOCK_EVENT_COUNT, written.size()));
+    }
+
+    @Test
+    public void testUndecodableEvent() throws Exception {
+        List<Event> written = createEvents(3);
+        // a string which is not a number in place of the response code
+        written.get(1).getPayloadData()[1] = "OK";
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(write(written)), 0,
+                0)) {
+            Assert.assertTrue(reader.nextBlock());
+            Assert.assertEquals(reader.getErrors().size(), 1);
+            Assert.assertEquals(reader.getErrorEventNumber(0), 2);
+            Assert.assertEquals(reader.getEvents().size(), 2);
+            Assert.assertEquals(reader.getEventNumber(0), 1);
+            Assert.assertEquals(reader.getEventNumber(1), 3);
+            Assert.assertEquals(reader.getEventCount(), 3);
+            Assert.assertFalse(reader.nextBlock());
+        }
+    }
+
+    @Test
+    public void testCorruptedBlock() throws Exception {
+        byte[] file = write(createEvents(25));
+        long secondBlock;
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file), 0, 0)) {
+            reader.nextBlock();
+            secondBlock = reader.getByteOffset();
+        }
+        // a byte in the middle of the compressed data of the second block
+        file[(int) secondBlock + 10] ^= 0x5A;
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file), 0, 0)) {
+            Assert.assertTrue(reader.nextBlock());
+            Assert.assertEquals(reader.getEvents().size(), BLOCK_EVENT_COUNT);
+            try {
+                reader.nextBlock();
+                Assert.fail("Corrupted block is read");
+            } catch (MGWFileSourceException e) {
+                Assert.assertEquals(e.getMessage(), "Block at offset " + secondBlock + " is corrupted");
+            }
+        }
+    }
+
+    @Test(expectedExceptions = MGWFileSourceException.class,
+            expectedExceptionsMessageRegExp = "Block at offset .* is corrupted")
+    public void testCorruptedBlockLength() throws Exception {
+        byte[] file = write(createEvents(5));
+        // the length of the first block, right after the header, beyond the maximum block length
+        byte[] corrupted = new byte[file.length + 4];
+        System.arraycopy(file, 0, corrupted, 0, BinaryUsageFileFormat.HEADER_LENGTH);
+        Arrays.fill(corrupted, BinaryUsageFileFormat.HEADER_LENGTH, BinaryUsageFileFormat.HEADER_LENGTH + 4,
+                (byte) 0xFF);
+        System.arraycopy(file, BinaryUsageFileFormat.HEADER_LENGTH, corrupted, BinaryUsageFileFormat.HEADER_LENGTH
+                + 4, file.length - BinaryUsageFileFormat.HEADER_LENGTH);
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(corrupted), 0, 0)) {
+            reader.nextBlock();
+        }
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncatedFile() throws Exception {
+        byte[] file = write(createEvents(5));
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file, 0,
+                file.length - 3), 0, 0)) {
+            reader.nextBlock();
+        }
+    }
+
+    @Test(expectedExceptions = MGWFileSourceException.class,
+            expectedExceptionsMessageRegExp = "File is not in the binary usage file format")
+    public void testNotBinaryFormat() throws Exception {
+        byte[] file = "streamId-KS-org.wso2.apimgt.statistics.binary.request:3.0.0-ES-timeStamp-KS-1"
+                .getBytes("UTF-8");
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(new ByteArrayInputStream(file), 0, 0)) {
+            reader.nextBlock();
+        }
+    }
+
+    private static byte[] write(List<Event> events) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryUsageFileWriter writer = new BinaryUsageFileWriter(out, BLOCK_EVENT_COUNT);
+        for (Event event : events) {
+            writer.write(event);
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static List<Event> createEvents(int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long timestamp = 1588000000000L + i * 37 - (i % 4 == 0 ? 1000 : 0);
+            if (i % 7 == 3) {
+                events.add(new Event(FAULT_STREAM_ID, timestamp, new Object[]{"meta" + i}, null,
+                        new Object[]{"E" + i, i % 2 == 0 ? null : "Backend failure " + i}));
+            } else {
+                events.add(new Event(REQUEST_STREAM_ID, timestamp, i % 3 == 0 ? null : new Object[]{"meta"},
+                        new Object[]{"correlation" + i % 2}, new Object[]{"Pizza\u00e9API" + i % 3, 200 + i % 5,
+                        i * 1000000007L, i % 2 == 0, i == 5 ? null : i / 4f, i * -1.25}));
+            }
+        }
+        return events;
+    }
+
+    private static void assertEvents(List<Event> actual, List<Event> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            Event event = actual.get(i);
+            Event expectedEvent = expected.get(i);
+            Assert.assertEquals(event.getStreamId(), expectedEvent.getStreamId());
+            Assert.assertEquals(event.getTimeStamp(), expectedEvent.getTimeStamp());
+            Assert.assertEquals(event.getMetaData(), expectedEvent.getMetaData());
+            Assert.assertEquals(event.getCorrelationData(), expectedEvent.getCorrelationData());
+            Assert.assertEquals(event.getPayloadData(), expectedEvent.getPayloadData(), "Unexpected event at " + i);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.Benchmarks;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the throughput of {@link UsageEventReader} with the split based parsing of the usage files it replaced.
+ * The split based parser is kept here as it was, except that the types of the payload attributes are taken from an
+ * array instead of the JSON of the stream definition, which makes it faster than it was.
+ */
+public class UsageEventReaderBenchmark {
+
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.benchmark:3.0.0";
+    private static final int LINE_COUNT = Integer.getInteger("benchmark.lines", 100000);
+    private static final AttributeType[] PAYLOAD_TYPES = {
+            AttributeType.STRING, AttributeType.STRING, AttributeType.STRING, AttributeType.STRING,
+            AttributeType.STRING, AttributeType.STRING, AttributeType.INT, AttributeType.LONG, AttributeType.LONG,
+            AttributeType.BOOL, AttributeType.STRING, AttributeType.STRING
+    };
+
+    private byte[] content;
+
+    @BeforeClass
+    public void createFile() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.benchmark", "3.0.0");
+        for (int i = 0; i < PAYLOAD_TYPES.length; i++) {
+            streamDefinition.addPayloadData("attribute" + i, PAYLOAD_TYPES[i]);
+        }
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            file.append("streamId-KS-").append(STREAM_ID)
+                    .append("-ES-timeStamp-KS-").append(1588000000000L + i)
+                    .append("-ES-metaData-KS-null-ES-correlationData-KS-null-ES-payloadData-KS-")
+                    .append("PizzaShackAPI-OS-/pizzashack/1.0.0-OS-1.0.0-OS-admin-OS-carbon.super-OS-")
+                    .append("DefaultApplication-OS-").append(200 + i % 5).append("-OS-").append(i % 1000)
+                    .append("-OS-").append(1588000000000L + i).append("-OS-").append(i % 2 == 0)
+                    .append("-OS-Mozilla/5.0 (X11; Linux x86_64)-OS-10.100.1.").append(i % 256).append('\n');
+        }
+        content = file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSameEvents() throws Exception {
+        List<Event> expected = new ArrayList<>();
+        splitParse(expected);
+        List<Event> events = new ArrayList<>();
+        readerParse(events);
+        Assert.assertEquals(events.size(), expected.size());
+        for (int i = 0; i < events.size(); i++) {
+            Assert.assertEquals(events.get(i).getStreamId(), expected.get(i).getStreamId());
+            Assert.assertEquals(events.get(i).getTimeStamp(), expected.get(i).getTimeStamp());
+            Assert.assertEquals(events.get(i).getMetaData(), expected.get(i).getMetaData());
+            Assert.assertEquals(events.get(i).getCorrelationData(), expected.get(i).getCorrelationData());
+            Assert.assertEquals(events.get(i).getPayloadData(), expected.get(i).getPayloadData());
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        long splitNanos = Benchmarks.measure("Split based parser", LINE_COUNT, () -> splitParse(null));
+        long readerNanos = Benchmarks.measure("UsageEventReader", LINE_COUNT, () -> readerParse(null));
+        Benchmarks.compare("UsageEventReader", splitNanos, readerNanos);
+    }
+
+    private long splitParse(List<Event> events) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content),
+                StandardCharsets.UTF_8));
+        long result = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            String[] elements = line.split(MGWFileSourceConstants.EVENT_SEPARATOR);
+            String streamId = elements[0].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+            String timeStamp = elements[1].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+            String metaData = elements[2].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+            String correlationData = elements[3].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+            String payloadData = elements[4].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+            Event event = new Event(streamId, Long.parseLong(timeStamp), createMetaData(metaData),
+                    createMetaData(correlationData), createPayload(payloadData));
+            result += event.getPayloadData().length;
+            if (events != null) {
+                events.add(event);
+            }
+        }
+        return result;
+    }
+
+    private long readerParse(List<Event> events) throws Exception {
+        UsageEventReader reader = new UsageEventReader(new ByteArrayInputStream(content), 0, 0);
+        long result = 0;
+        while (reader.nextLine()) {
+            reader.parseLine();
+            Event event = reader.createEvent();
+            result += event.getPayloadData().length;
+            if (events != null) {
+                events.add(event);
+            }
+        }
+        return result;
+    }
+
+    private static Object[] createMetaData(String value) {
+        if (value.isEmpty() || "null".equals(value)) {
+            return null;
+        }
+        return new Object[]{value};
+    }
+
+    private static Object[] createPayload(String payloadData) {
+        String[] values = payloadData.split(MGWFileSourceConstants.OBJECT_SEPARATOR);
+        Object[] payload = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            switch (PAYLOAD_TYPES[i]) {
+            case INT:
+                payload[i] = Integer.parseInt(value);
+                break;
+            case LONG:
+                payload[i] = Long.parseLong(value);
+                break;
+            case BOOL:
+                payload[i] = Boolean.parseBoolean(value);
+                break;
+            default:
+                payload[i] = value;
+            }
+        }
+        return payload;
+    }
+}
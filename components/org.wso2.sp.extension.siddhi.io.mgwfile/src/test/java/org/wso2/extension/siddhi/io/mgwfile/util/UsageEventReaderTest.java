@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests parsing the lines of usage files with {@link UsageEventReader}.
+ */
+public class UsageEventReaderTest {
+
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.reader:3.0.0";
+
+    @BeforeClass
+    public void addStreamDefinition() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.reader", "3.0.0");
+        streamDefinition.addPayloadData("apiName", AttributeType.STRING);
+        streamDefinition.addPayloadData("responseCode", AttributeType.INT);
+        streamDefinition.addPayloadData("responseTime", AttributeType.LONG);
+        streamDefinition.addPayloadData("cacheHit", AttributeType.BOOL);
+        streamDefinition.addPayloadData("userAgent", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+    }
+
+    @Test
+    public void testSeparators() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("meta", "correlation", "Pizza-API-O-S-OS- 200 -OS-25-OS-true-OS-Mozilla/5.0-KS")));
+        Assert.assertTrue(reader.nextLine());
+        Assert.assertEquals(reader.parseLine(), STREAM_ID);
+        Event event = reader.createEvent();
+        Assert.assertEquals(event.getStreamId(), STREAM_ID);
+        Assert.assertEquals(event.getTimeStamp(), 1588000000000L);
+        Assert.assertEquals(event.getMetaData(), new Object[]{"meta"});
+        Assert.assertEquals(event.getCorrelationData(), new Object[]{"correlation"});
+        Assert.assertEquals(event.getPayloadData(), new Object[]{"Pizza-API-O-S", 200, 25L, true, "Mozilla/5.0-KS"});
+        Assert.assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void testNullAndEmptyMetaData() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("null", "", "PizzaAPI-OS-200-OS-25-OS-false-OS-curl")));
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Event event = reader.createEvent();
+        Assert.assertNull(event.getMetaData());
+        Assert.assertNull(event.getCorrelationData());
+        Assert.assertEquals(event.getPayloadData(), new Object[]{"PizzaAPI", 200, 25L, false, "curl"});
+    }
+
+    @Test
+    public void testTrailingEmptyPayloadValues() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-") + "\n"
+                        + line("null", "null", "PizzaAPI-OS--OS--OS--OS-")));
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData(), new Object[]{"PizzaAPI", 200, 25L, true, null});
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData(), new Object[]{"PizzaAPI", null, null, null, null});
+    }
+
+    @Test
+    public void testEmptyPayloadValuesAfterAttributes() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl-OS-") + "\n"
+                        + line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl-OS- -OS-")));
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData(), new Object[]{"PizzaAPI", 200, 25L, true, "curl"});
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData(), new Object[]{"PizzaAPI", 200, 25L, true, "curl"});
+    }
+
+    @Test(expectedExceptions = MGWFileSourceException.class)
+    public void testMorePayloadValuesThanAttributes() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl-OS-extra")));
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        reader.createEvent();
+    }
+
+    @Test(expectedExceptions = MGWFileSourceException.class)
+    public void testMissingFields() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                "streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-1588000000000"));
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+    }
+
+    @Test
+    public void testCrLfLineEndings() throws Exception {
+        String first = line("meta", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl");
+        String second = line("null", "correlation", "PizzaAPI-OS-500-OS-30-OS-false-OS-wget");
+        UsageEventReader reader = reader(first + "\r\n" + second + "\r\n", 1024);
+        Assert.assertTrue(reader.nextLine());
+        Assert.assertEquals(reader.getLine(), first);
+        Assert.assertEquals(reader.getByteOffset(), first.length() + 2);
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData()[4], "curl");
+        Assert.assertTrue(reader.nextLine());
+        Assert.assertEquals(reader.getLine(), second);
+        reader.parseLine();
+        Event event = reader.createEvent();
+        Assert.assertEquals(event.getCorrelationData(), new Object[]{"correlation"});
+        Assert.assertEquals(event.getPayloadData()[4], "wget");
+        Assert.assertEquals(reader.getLineNumber(), 2);
+        Assert.assertEquals(reader.getByteOffset(), first.length() + second.length() + 4);
+        Assert.assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void testLinesLongerThanBuffer() throws Exception {
+        StringBuilder userAgent = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            userAgent.append("agent").append(i);
+        }
+        String content = line("meta", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-" + userAgent) + "\n"
+                + line("null", "null", "PizzaAPI-OS-404-OS-2-OS-false-OS-curl") + "\n";
+        UsageEventReader reader = reader(content, 16);
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData()[4], userAgent.toString());
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData(), new Object[]{"PizzaAPI", 404, 2L, false, "curl"});
+        Assert.assertFalse(reader.nextLine());
+        Assert.assertEquals(reader.getByteOffset(), content.length());
+    }
+
+    @Test
+    public void testByteOffsetOfMultiByteCharacters() throws Exception {
+        String[] lines = {
+                line("null", "null", "Caf\u00e9API-OS-200-OS-25-OS-true-OS-curl"),
+                line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-\u20ac\u20ac\u20ac"),
+                line("null", "null", "Emoji\ud83d\ude00API-OS-200-OS-25-OS-true-OS-\ud83c\udf55")
+        };
+        String content = String.join("\n", lines) + "\n";
+        // a small buffer discards the characters of the previous lines while reading the next ones
+        UsageEventReader reader = reader(content, 8);
+        long expectedOffset = 0;
+        for (String line : lines) {
+            Assert.assertTrue(reader.nextLine());
+            expectedOffset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            Assert.assertEquals(reader.getByteOffset(), expectedOffset);
+        }
+        Assert.assertFalse(reader.nextLine());
+
+        // resume from the checkpoint after the first line
+        long firstLineOffset = lines[0].getBytes(StandardCharsets.UTF_8).length + 1;
+        byte[] rest = Arrays.copyOfRange(content.getBytes(StandardCharsets.UTF_8), (int) firstLineOffset,
+                content.getBytes(StandardCharsets.UTF_8).length);
+        UsageEventReader resumed = new UsageEventReader(new ByteArrayInputStream(rest), 1, firstLineOffset);
+        Assert.assertTrue(resumed.nextLine());
+        Assert.assertEquals(resumed.getLineNumber(), 2);
+        resumed.parseLine();
+        Assert.assertEquals(resumed.createEvent().getPayloadData()[4], "\u20ac\u20ac\u20ac");
+        Assert.assertTrue(resumed.nextLine());
+        resumed.parseLine();
+        Assert.assertEquals(resumed.createEvent().getPayloadData()[0], "Emoji\ud83d\ude00API");
+        Assert.assertEquals(resumed.getByteOffset(), content.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testByteOffsetOfMalformedBytes() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // a byte order mark, which is decoded to a character of the first line
+        file.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        file.write((line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl") + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        // a stray byte and a surrogate encoded on its own, which are decoded to replacement characters
+        file.write(line("null", "null", "PizzaAPI-OS-201-OS-26-OS-true-OS-").getBytes(StandardCharsets.UTF_8));
+        file.write(new byte[]{(byte) 0xFF, (byte) 0xED, (byte) 0xA0, (byte) 0xBD, '\n'});
+        file.write((line("null", "null", "PizzaAPI-OS-202-OS-27-OS-false-OS-wget") + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        byte[] content = file.toByteArray();
+
+        UsageEventReader reader = reader(content, 8);
+        int lineEnd = -1;
+        while ((lineEnd = indexOf(content, '\n', lineEnd + 1)) >= 0) {
+            Assert.assertTrue(reader.nextLine());
+            Assert.assertEquals(reader.getByteOffset(), lineEnd + 1);
+        }
+        Assert.assertFalse(reader.nextLine());
+        Assert.assertEquals(reader.getLineNumber(), 3);
+
+        // resume from the checkpoint after the malformed line
+        int secondLineOffset = indexOf(content, '\n', indexOf(content, '\n', 0) + 1) + 1;
+        UsageEventReader resumed = new UsageEventReader(new ByteArrayInputStream(content, secondLineOffset,
+                content.length - secondLineOffset), 2, secondLineOffset);
+        Assert.assertTrue(resumed.nextLine());
+        Assert.assertEquals(resumed.getLineNumber(), 3);
+        resumed.parseLine();
+        Assert.assertEquals(resumed.createEvent().getPayloadData(), new Object[]{"PizzaAPI", 202, 27L, false, "wget"});
+        Assert.assertEquals(resumed.getByteOffset(), content.length);
+        Assert.assertFalse(resumed.nextLine());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testByteOffsetOfCharacters() throws Exception {
+        UsageEventReader reader = new UsageEventReader(new StringReader(
+                line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl")));
+        Assert.assertTrue(reader.nextLine());
+        reader.getByteOffset();
+    }
+
+    @Test
+    public void testChunkReader() throws Exception {
+        String content = line("null", "null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl") + "\n"
+                + line("null", "null", "PizzaAPI-OS-201-OS-26-OS-true-OS-curl");
+        char[] chunk = content.toCharArray();
+        UsageEventReader reader = new UsageEventReader(chunk, chunk.length);
+        Assert.assertTrue(reader.nextLine());
+        Assert.assertTrue(reader.nextLine());
+        reader.parseLine();
+        Assert.assertEquals(reader.createEvent().getPayloadData()[1], 201);
+        Assert.assertFalse(reader.nextLine());
+        Assert.assertEquals(reader.getLineNumber(), 2);
+    }
+
+    private static UsageEventReader reader(String content, int bufferSize) {
+        return reader(content.getBytes(StandardCharsets.UTF_8), bufferSize);
+    }
+
+    private static UsageEventReader reader(byte[] content, int bufferSize) {
+        return new UsageEventReader(new LineOffsetInputStream(new ByteArrayInputStream(content), 0), 0, bufferSize);
+    }
+
+    private static int indexOf(byte[] bytes, int b, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String line(String metaData, String correlationData, String payloadData) {
+        return "streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-1588000000000-ES-metaData-KS-" + metaData
+                + "-ES-correlationData-KS-" + correlationData + "-ES-payloadData-KS-" + payloadData;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.Benchmarks;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares a usage archive in the text format with the same archive converted to the binary format by
+ * {@link UsageFileConverter}. The uploaded archive is stored as it is, in the FILE_CONTENT column or in the content
+ * store, so the size of the archive is both its size on the wire and in the database. The events are decoded from
+ * the archives, so the decoding throughput includes inflating the archives.
+ */
+public class UsageFileConverterBenchmark {
+
+    private static final Log log = LogFactory.getLog(UsageFileConverterBenchmark.class);
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.conversion:3.0.0";
+    private static final int LINE_COUNT = Integer.getInteger("benchmark.lines", 100000);
+
+    private byte[] textArchive;
+    private byte[] binaryArchive;
+
+    @BeforeClass
+    public void createArchives() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.conversion", "3.0.0");
+        streamDefinition.addPayloadData("apiName", AttributeType.STRING);
+        streamDefinition.addPayloadData("apiContext", AttributeType.STRING);
+        streamDefinition.addPayloadData("apiVersion", AttributeType.STRING);
+        streamDefinition.addPayloadData("userId", AttributeType.STRING);
+        streamDefinition.addPayloadData("tenantDomain", AttributeType.STRING);
+        streamDefinition.addPayloadData("applicationName", AttributeType.STRING);
+        streamDefinition.addPayloadData("responseCode", AttributeType.INT);
+        streamDefinition.addPayloadData("responseTime", AttributeType.LONG);
+        streamDefinition.addPayloadData("requestTimestamp", AttributeType.LONG);
+        streamDefinition.addPayloadData("cacheHit", AttributeType.BOOL);
+        streamDefinition.addPayloadData("userAgent", AttributeType.STRING);
+        streamDefinition.addPayloadData("clientIp", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            file.append("streamId-KS-").append(STREAM_ID)
+                    .append("-ES-timeStamp-KS-").append(1588000000000L + i)
+                    .append("-ES-metaData-KS-null-ES-correlationData-KS-null-ES-payloadData-KS-")
+                    .append("PizzaShackAPI-OS-/pizzashack/1.0.0-OS-1.0.0-OS-admin-OS-carbon.super-OS-")
+                    .append("DefaultApplication-OS-").append(200 + i % 5).append("-OS-").append(i % 1000)
+                    .append("-OS-").append(1588000000000L + i).append("-OS-").append(i % 2 == 0)
+                    .append("-OS-Mozilla/5.0 (X11; Linux x86_64)-OS-10.100.1.").append(i % 256).append('\n');
+        }
+        byte[] content = file.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+            zipOutputStream.putNextEntry(new ZipEntry(MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME));
+            zipOutputStream.write(content);
+        }
+        textArchive = archive.toByteArray();
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        Assert.assertEquals(UsageFileConverter.convert(new ByteArrayInputStream(textArchive), converted), LINE_COUNT);
+        binaryArchive = converted.toByteArray();
+
+        log.info(String.format("Text archive: %d bytes, %.1f bytes per event, %d bytes inflated", textArchive.length,
+                textArchive.length / (double) LINE_COUNT, content.length));
+        log.info(String.format("Binary archive: %d bytes, %.1f bytes per event, %.2f times smaller than the text "
+                        + "archive", binaryArchive.length, binaryArchive.length / (double) LINE_COUNT,
+                textArchive.length / (double) binaryArchive.length));
+    }
+
+    @Test
+    public void testSameEventCount() throws Exception {
+        Assert.assertEquals(decodeText(), decodeBinary());
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        long textNanos = Benchmarks.measure("Text archive", LINE_COUNT, this::decodeText);
+        long binaryNanos = Benchmarks.measure("Binary archive", LINE_COUNT, this::decodeBinary);
+        Benchmarks.compare("Binary archive", textNanos, binaryNanos);
+    }
+
+    private long decodeText() throws Exception {
+        UsageEventReader reader = new UsageEventReader(openEntry(textArchive), 0, 0);
+        long result = 0;
+        while (reader.nextLine()) {
+            reader.parseLine();
+            result += reader.createEvent().getPayloadData().length;
+        }
+        return result;
+    }
+
+    private long decodeBinary() throws Exception {
+        long result = 0;
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(openEntry(binaryArchive), 0, 0)) {
+            while (reader.nextBlock()) {
+                for (int i = 0; i < reader.getEvents().size(); i++) {
+                    result += reader.getEvents().get(i).getPayloadData().length;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ZipInputStream openEntry(byte[] archive) throws IOException {
+        ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive));
+        zipInputStream.getNextEntry();
+        return zipInputStream;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests converting usage archives in the text format to the binary format with {@link UsageFileConverter}.
+ */
+public class UsageFileConverterTest {
+
+    private static final String STREAM_ID = "org.wso2.apimgt.statistics.converter:3.0.0";
+
+    @BeforeClass
+    public void addStreamDefinition() throws Exception {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.apimgt.statistics.converter", "3.0.0");
+        streamDefinition.addPayloadData("apiName", AttributeType.STRING);
+        streamDefinition.addPayloadData("responseCode", AttributeType.INT);
+        streamDefinition.addPayloadData("responseTime", AttributeType.LONG);
+        streamDefinition.addPayloadData("cacheHit", AttributeType.BOOL);
+        streamDefinition.addPayloadData("userAgent", AttributeType.STRING);
+        FileDataRetrieverUtil.addStreamDefinition(streamDefinition, STREAM_ID);
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        String content = line("meta", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl") + "\n"
+                + "not a usage event\n"
+                + line("null", "Caf\u00e9API-OS-500-OS-30-OS-false-OS-007") + "\r\n"
+                + line("null", "PizzaAPI-OS-OK-OS-30-OS-false-OS-wget") + "\n"
+                + line("null", "PizzaAPI-OS-404-OS-2-OS-false-OS-");
+        ByteArrayOutputStream binaryArchive = new ByteArrayOutputStream();
+        long eventCount = UsageFileConverter.convert(new ByteArrayInputStream(archive(content)), binaryArchive);
+        Assert.assertEquals(eventCount, 3);
+
+        List<Event> events = new ArrayList<>();
+        ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(binaryArchive.toByteArray()));
+        Assert.assertEquals(zipInputStream.getNextEntry().getName(), MGWFileSourceConstants.API_USAGE_BINARY_FILE_NAME);
+        try (BinaryUsageEventReader reader = new BinaryUsageEventReader(zipInputStream, 0, 0)) {
+            while (reader.nextBlock()) {
+                Assert.assertTrue(reader.getErrors().isEmpty(), reader.getErrors().toString());
+                events.addAll(reader.getEvents());
+            }
+        }
+        Assert.assertEquals(events.size(), 3);
+        Assert.assertEquals(events.get(0).getStreamId(), STREAM_ID);
+        Assert.assertEquals(events.get(0).getTimeStamp(), 1588000000000L);
+        Assert.assertEquals(events.get(0).getMetaData(), new Object[]{"meta"});
+        Assert.assertNull(events.get(0).getCorrelationData());
+        Assert.assertEquals(events.get(0).getPayloadData(), new Object[]{"PizzaAPI", 200, 25L, true, "curl"});
+        // the values are typed by the stream definition, so a string attribute which looks like a number is kept
+        Assert.assertEquals(events.get(1).getPayloadData(), new Object[]{"Caf\u00e9API", 500, 30L, false, "007"});
+        Assert.assertEquals(events.get(2).getPayloadData(), new Object[]{"PizzaAPI", 404, 2L, false, null});
+    }
+
+    @Test(expectedExceptions = MGWFileSourceException.class)
+    public void testConvertOtherArchive() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+            zipOutputStream.putNextEntry(new ZipEntry("other.dat"));
+            zipOutputStream.write(line("null", "PizzaAPI-OS-200-OS-25-OS-true-OS-curl")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        UsageFileConverter.convert(new ByteArrayInputStream(archive.toByteArray()), new ByteArrayOutputStream());
+    }
+
+    private static byte[] archive(String content) throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+            zipOutputStream.putNextEntry(new ZipEntry(MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME));
+            zipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return archive.toByteArray();
+    }
+
+    private static String line(String metaData, String payloadData) {
+        return "streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-1588000000000-ES-metaData-KS-" + metaData
+                + "-ES-correlationData-KS-null-ES-payloadData-KS-" + payloadData;
+    }
+}
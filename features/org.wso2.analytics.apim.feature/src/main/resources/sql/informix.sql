@@ -4,5 +4,17 @@ CREATE TABLE IF NOT EXISTS AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP,
    FILE_PROCESSED tinyint DEFAULT 0,
    FILE_CONTENT MEDIUMBLOB DEFAULT NULL,
+   CONTENT_REF varchar(64) DEFAULT NULL,
+   CONTENT_DIGEST varchar(64) DEFAULT NULL,
+   FILE_SIZE BIGINT DEFAULT NULL,
+   LEASE_OWNER varchar(255) DEFAULT NULL,
+   LEASE_EXPIRY BIGINT DEFAULT 0,
+   PROCESSED_LINES BIGINT DEFAULT 0,
+   PROCESSED_OFFSET BIGINT DEFAULT 0,
+   PROCESSING_ATTEMPTS INTEGER DEFAULT 0,
    PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS IDX_AUF_CONTENT_DIGEST ON AM_USAGE_UPLOADED_FILES (CONTENT_DIGEST);
+
+CREATE INDEX IF NOT EXISTS IDX_AUF_PROCESSED_TIMESTAMP ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
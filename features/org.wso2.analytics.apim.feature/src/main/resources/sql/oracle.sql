@@ -4,5 +4,17 @@ CREATE TABLE AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP(0) DEFAULT SYSTIMESTAMP,
    FILE_PROCESSED number(3) DEFAULT 0,
    FILE_CONTENT BLOB DEFAULT NULL,
+   CONTENT_REF varchar2(64) DEFAULT NULL,
+   CONTENT_DIGEST varchar2(64) DEFAULT NULL,
+   FILE_SIZE number(19) DEFAULT NULL,
+   LEASE_OWNER varchar2(255) DEFAULT NULL,
+   LEASE_EXPIRY number(19) DEFAULT 0,
+   PROCESSED_LINES number(19) DEFAULT 0,
+   PROCESSED_OFFSET number(19) DEFAULT 0,
+   PROCESSING_ATTEMPTS number(10) DEFAULT 0,
    PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IDX_AUF_CONTENT_DIGEST ON AM_USAGE_UPLOADED_FILES (CONTENT_DIGEST);
+
+CREATE INDEX IDX_AUF_PROCESSED_TIMESTAMP ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);